@@ -3,12 +3,10 @@ package edu.vanderbilt.cs.live6;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
-import java.util.stream.Stream.Builder;
 
 public class ArrayPrecisionTree<T extends Collection<?>> implements PrecisionTree<T> {
     private final int resolution;
@@ -24,22 +22,22 @@ public class ArrayPrecisionTree<T extends Collection<?>> implements PrecisionTre
         treeNodeFactory = supplier;
     }
 
+    /**
+     * The stream walks a view of the range lazily, so a short-circuiting operation
+     * (e.g., anyMatch or limit) stops at the first buckets that it needs. It must be
+     * consumed before the tree is updated.
+     */
     @Override
     public Stream<T> itemsWithinRange(String locationCodePrefix, int precision) {
-        Builder<T> streamBuilder = Stream.builder();
         BigInteger startIndex = rangeStartIndex(locationCodePrefix, precision)
             .subtract(BigInteger.ONE);
         BigInteger endIndex = rangeEndIndex(startIndex, precision);
 
-        Map.Entry<BigInteger, T> nextEntry = precisionTree.higherEntry(startIndex);
-
-        while(nextEntry != null && nextEntry.getKey().compareTo(endIndex) <= 0) {
-            if (!nextEntry.getValue().isEmpty()) {
-                streamBuilder.accept(nextEntry.getValue());
-            }
-            nextEntry = precisionTree.higherEntry(nextEntry.getKey());
-        }
-        return streamBuilder.build();
+        return precisionTree
+            .subMap(startIndex, false, endIndex, true)
+            .values()
+            .stream()
+            .filter(items -> !items.isEmpty());
     }
 
     @Override
@@ -0,0 +1,20 @@
+package edu.vanderbilt.cs.live6;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts data items of type T to and from bytes so that they can be written to files.
+ *
+ * encode() writes the item at the buffer's position and advances it. If the item does not
+ * fit in the remaining space it may throw a BufferOverflowException, in which case the
+ * caller retries with a larger buffer. decode() must read back exactly the bytes written
+ * by encode().
+ *
+ * @param <T>
+ */
+public interface Codec<T> {
+
+    public void encode(T data, ByteBuffer buffer);
+
+    public T decode(ByteBuffer buffer);
+}
@@ -0,0 +1,44 @@
+package edu.vanderbilt.cs.live6;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Converts positions into the '0' / '1' bit strings used to order items by geohash.
+ * Codes of equal length sort lexicographically in the same order as the geohashes
+ * that they represent, and all codes sharing a prefix are contiguous in that order.
+ */
+public class LocationCode {
+
+    public static String of(GeoHashFactory geoHashFactory, Position pos, int precision) {
+        Iterator<Boolean> geohashIterator = geoHashFactory
+            .with(pos.getLatitude(), pos.getLongitude(), precision)
+            .iterator();
+        StringBuilder geohashString = new StringBuilder();
+        while(geohashIterator.hasNext()) {
+            geohashString.append(geohashIterator.next().booleanValue() ? '1' : '0');
+        }
+        return geohashString.toString();
+    }
+
+    /**
+     * Groups the items by the location code of their cell at cellBits bits of precision.
+     */
+    public static <T> NavigableMap<String, List<DataAndPosition<T>>> groupByCell(
+        GeoHashFactory geoHashFactory,
+        Collection<DataAndPosition<T>> items,
+        int cellBits
+    ) {
+        NavigableMap<String, List<DataAndPosition<T>>> cells = new TreeMap<>();
+        for(DataAndPosition<T> item : items) {
+            cells
+                .computeIfAbsent(of(geoHashFactory, item, cellBits), code -> new ArrayList<>())
+                .add(item);
+        }
+        return cells;
+    }
+}
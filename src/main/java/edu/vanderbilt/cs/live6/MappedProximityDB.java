@@ -0,0 +1,410 @@
+package edu.vanderbilt.cs.live6;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * A ProximityDB whose contents are read from a memory-mapped snapshot file.
+ *
+ * A snapshot stores every data item of a database grouped into buckets by location
+ * code. The file holds a header, the sorted bucket codes (packed bits), the file offset
+ * and item count of every bucket, and then the items themselves (latitude, longitude,
+ * and the data written by a Codec):
+ *
+ * [header][codes][bucket offsets][bucket counts][items ...]
+ *
+ * open() maps the file without reading it, so a database of any size is queryable right
+ * away; the OS faults pages in as queries touch them. Items are decoded on each query.
+ *
+ * The mapped file is never modified. Inserts go to an in-memory overlay database, and
+ * deleting items from the file marks their buckets as deleted; queries merge the file
+ * and the overlay.
+ *
+ * The item region is mapped in segments of SEGMENT_BYTES, and a bucket never spans two
+ * segments, so a single bucket must fit in one segment.
+ *
+ * The snapshot is the starting state of the database: baseClone() returns a database
+ * over the same mapping with no updates applied, so histories replay from the snapshot
+ * rather than from nothing. copy() shares the mapping and copies the updates.
+ * emptyClone() returns an empty in-memory database with the same settings.
+ */
+public class MappedProximityDB<T> implements ProximityDB<T> {
+    private static final int MAGIC = 0x50445342;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + Long.BYTES;
+    static final long SEGMENT_BYTES = 1L << 30;
+
+    private final GeoHashFactory geoHashFactory;
+    private final int resolution;
+    private final Codec<T> codec;
+    private final int bucketCount;
+    private final int codeBytes;
+    private final MappedByteBuffer codes;
+    private final MappedByteBuffer offsets;
+    private final MappedByteBuffer counts;
+    private final List<MappedByteBuffer> segments;
+    private final long itemsStart;
+    private final BitSet deletedBuckets;
+    private final ProximityDB<T> overlay;
+
+    private MappedProximityDB(
+        FileChannel channel,
+        GeoHashFactory hashFactory,
+        Codec<T> dataCodec
+    ) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_BYTES
+            || header.getInt() != MAGIC
+            || header.getInt() != FORMAT_VERSION) {
+            throw new IOException("Not a proximity DB snapshot");
+        }
+        resolution = header.getInt();
+        bucketCount = header.getInt();
+        itemsStart = header.getLong();
+        codeBytes = codeBytes(resolution);
+
+        if ((long)bucketCount * Long.BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Too many buckets to map the snapshot index");
+        }
+        long position = HEADER_BYTES;
+        codes = map(channel, position, (long)bucketCount * codeBytes);
+        position += (long)bucketCount * codeBytes;
+        offsets = map(channel, position, (long)bucketCount * Long.BYTES);
+        position += (long)bucketCount * Long.BYTES;
+        counts = map(channel, position, (long)bucketCount * Integer.BYTES);
+
+        segments = new ArrayList<>();
+        long size = channel.size();
+        for(long start = itemsStart; start < size; start += SEGMENT_BYTES) {
+            segments.add(map(channel, start, Math.min(SEGMENT_BYTES, size - start)));
+        }
+
+        geoHashFactory = hashFactory;
+        codec = dataCodec;
+        deletedBuckets = new BitSet(bucketCount);
+        overlay = new ProximityDBFactory().create(hashFactory, resolution);
+    }
+
+    /**
+     * Creates a database over the same mapping as the source with the provided updates.
+     */
+    private MappedProximityDB(
+        MappedProximityDB<T> source,
+        BitSet deletedBuckets,
+        ProximityDB<T> overlay
+    ) {
+        geoHashFactory = source.geoHashFactory;
+        resolution = source.resolution;
+        codec = source.codec;
+        bucketCount = source.bucketCount;
+        codeBytes = source.codeBytes;
+        codes = source.codes;
+        offsets = source.offsets;
+        counts = source.counts;
+        segments = source.segments;
+        itemsStart = source.itemsStart;
+        this.deletedBuckets = deletedBuckets;
+        this.overlay = overlay;
+    }
+
+    /**
+     * Writes every data item in the database to a snapshot file at the provided path.
+     *
+     * @param resolution - the number of bits of precision used by the database
+     */
+    public static <T> void snapshot(
+        ProximityDB<T> proximityDB,
+        int resolution,
+        GeoHashFactory hashFactory,
+        Codec<T> dataCodec,
+        Path path
+    ) throws IOException {
+        TreeMap<String, List<DataAndPosition<T>>> buckets = new TreeMap<>();
+        for(DataAndPosition<T> item : proximityDB.nearby(Position.with(0, 0), 0)) {
+            buckets
+                .computeIfAbsent(
+                    LocationCode.of(hashFactory, item, resolution), code -> new ArrayList<>()
+                )
+                .add(item);
+        }
+
+        int codeBytes = codeBytes(resolution);
+        long indexBytes = (long)buckets.size() * (codeBytes + Long.BYTES + Integer.BYTES);
+        long itemsStart = HEADER_BYTES + indexBytes;
+        ByteBuffer index = ByteBuffer.allocate((int)indexBytes);
+        ByteBuffer bucketOffsets = ByteBuffer.allocate(buckets.size() * Long.BYTES);
+        ByteBuffer bucketCounts = ByteBuffer.allocate(buckets.size() * Integer.BYTES);
+        ByteBuffer itemBuffer = ByteBuffer.allocate(64 * 1024);
+
+        try(FileChannel channel = FileChannel
+            .open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            )) {
+            long position = itemsStart;
+            for(Map.Entry<String, List<DataAndPosition<T>>> bucket : buckets.entrySet()) {
+                index.put(packCode(bucket.getKey(), codeBytes));
+
+                itemBuffer = encodeBucket(bucket.getValue(), dataCodec, itemBuffer);
+                long segmentEnd = itemsStart
+                    + ((position - itemsStart) / SEGMENT_BYTES + 1) * SEGMENT_BYTES;
+                if (position + itemBuffer.remaining() > segmentEnd) {
+                    if (itemBuffer.remaining() > SEGMENT_BYTES) {
+                        throw new IOException("Bucket too large for a snapshot segment");
+                    }
+                    position = segmentEnd;
+                }
+                bucketOffsets.putLong(position);
+                bucketCounts.putInt(bucket.getValue().size());
+                while(itemBuffer.hasRemaining()) {
+                    position += channel.write(itemBuffer, position);
+                }
+            }
+
+            index.put(bucketOffsets.array());
+            index.put(bucketCounts.array());
+            index.flip();
+            channel.write(index, HEADER_BYTES);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putInt(resolution);
+            header.putInt(buckets.size());
+            header.putLong(itemsStart);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Opens a snapshot file written by snapshot(). The returned database only reads the
+     * parts of the file that its queries touch.
+     */
+    public static <T> MappedProximityDB<T> open(
+        Path path,
+        GeoHashFactory hashFactory,
+        Codec<T> dataCodec
+    ) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedProximityDB<>(channel, hashFactory, dataCodec);
+        }
+    }
+
+    @Override
+    public void insert(DataAndPosition<T> data) {
+        overlay.insert(data);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> delete(Position pos) {
+        return delete(pos, resolution);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> delete(Position pos, int bitsOfPrecision) {
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        int start = lowerBound(prefix);
+        int end = upperBound(prefix);
+        List<DataAndPosition<T>> deletions = new ArrayList<>();
+        collect(start, end, deletions);
+        deletedBuckets.set(start, end);
+        deletions.addAll(overlay.delete(pos, bitsOfPrecision));
+        return deletions;
+    }
+
+    @Override
+    public boolean contains(Position pos, int bitsOfPrecision) {
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        return deletedBuckets.nextClearBit(lowerBound(prefix)) < upperBound(prefix)
+            || overlay.contains(pos, bitsOfPrecision);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> itemsAt(Position pos) {
+        return nearby(pos, resolution);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> nearby(Position pos, int bitsOfPrecision) {
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        List<DataAndPosition<T>> items = new ArrayList<>();
+        collect(lowerBound(prefix), upperBound(prefix), items);
+        items.addAll(overlay.nearby(pos, bitsOfPrecision));
+        return items;
+    }
+
+    @Override
+    public NavigableMap<String, List<DataAndPosition<T>>> nearbyByCell(
+        Position pos,
+        int bitsOfPrecision,
+        int cellBits
+    ) {
+        return LocationCode
+            .groupByCell(geoHashFactory, nearby(pos, bitsOfPrecision), cellBits);
+    }
+
+    /**
+     * Only updates go to the overlay, so the overlay's queries see every insert.
+     */
+    @Override
+    public StandingQuery registerStandingQuery(
+        Position pos,
+        int bitsOfPrecision,
+        Consumer<DataAndPosition<T>> callback,
+        Executor executor
+    ) {
+        return overlay.registerStandingQuery(pos, bitsOfPrecision, callback, executor);
+    }
+
+    @Override
+    public ProximityDB<T> emptyClone() {
+        return overlay.emptyClone();
+    }
+
+    /**
+     * Returns the snapshot as it was opened, without this database's updates.
+     */
+    @Override
+    public ProximityDB<T> baseClone() {
+        return new MappedProximityDB<>(this, new BitSet(bucketCount), overlay.emptyClone());
+    }
+
+    @Override
+    public ProximityDB<T> copy() {
+        return new MappedProximityDB<>(this, (BitSet)deletedBuckets.clone(), overlay.copy());
+    }
+
+    private void collect(int startBucket, int endBucket, List<DataAndPosition<T>> items) {
+        for(int bucket = deletedBuckets.nextClearBit(startBucket);
+            bucket < endBucket;
+            bucket = deletedBuckets.nextClearBit(bucket + 1)) {
+            long offset = offsets.getLong(indexOf(bucket, Long.BYTES, offsets)) - itemsStart;
+            ByteBuffer segment = segments.get((int)(offset / SEGMENT_BYTES)).duplicate();
+            segment.position((int)(offset % SEGMENT_BYTES));
+            for(int i = counts.getInt(indexOf(bucket, Integer.BYTES, counts)); i > 0; i--) {
+                double lat = segment.getDouble();
+                double lon = segment.getDouble();
+                items.add(DataAndPosition.with(lat, lon, codec.decode(segment)));
+            }
+        }
+    }
+
+    /**
+     * @Return the first bucket whose code is not less than the prefix
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = bucketCount;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToPrefix(mid, prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @Return the first bucket whose code is greater than every code with the prefix
+     */
+    private int upperBound(String prefix) {
+        int low = 0;
+        int high = bucketCount;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToPrefix(mid, prefix) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the first prefix.length() bits of the bucket's code with the prefix.
+     */
+    private int compareToPrefix(int bucket, String prefix) {
+        int base = indexOf(bucket, codeBytes, codes);
+        for(int i = 0; i < prefix.length(); i++) {
+            int bit = (codes.get(base + i / 8) >>> (7 - i % 8)) & 1;
+            int prefixBit = prefix.charAt(i) == '1' ? 1 : 0;
+            if (bit != prefixBit) {
+                return bit - prefixBit;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @Return the byte index of the bucket's entry in an index region whose entries are
+     *         entryBytes long
+     */
+    private static int indexOf(int bucket, int entryBytes, ByteBuffer region) {
+        long index = (long)bucket * entryBytes;
+        if (bucket < 0 || index + entryBytes > region.limit()) {
+            throw new IndexOutOfBoundsException("No bucket " + bucket + " in the snapshot");
+        }
+        return (int)index;
+    }
+
+    private static <T> ByteBuffer encodeBucket(
+        List<DataAndPosition<T>> items,
+        Codec<T> dataCodec,
+        ByteBuffer buffer
+    ) {
+        while(true) {
+            buffer.clear();
+            try {
+                for(DataAndPosition<T> item : items) {
+                    buffer.putDouble(item.getLatitude());
+                    buffer.putDouble(item.getLongitude());
+                    dataCodec.encode(item.getData(), buffer);
+                }
+                buffer.flip();
+                return buffer;
+            } catch(BufferOverflowException overflow) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    private static byte[] packCode(String code, int codeBytes) {
+        byte[] packed = new byte[codeBytes];
+        for(int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '1') {
+                packed[i / 8] |= 1 << (7 - i % 8);
+            }
+        }
+        return packed;
+    }
+
+    private static int codeBytes(int resolution) {
+        return Math.max(1, (resolution + 7) / 8);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size)
+        throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+}
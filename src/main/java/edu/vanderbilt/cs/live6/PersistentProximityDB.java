@@ -0,0 +1,256 @@
+package edu.vanderbilt.cs.live6;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * A ProximityDB backed by an immutable binary trie over geohash bits.
+ *
+ * Every update copies only the nodes on the path from the root to the location that
+ * changed and produces a new root; all other nodes are shared with the previous
+ * version. Because no node is ever modified, copy() is O(1) and a copy is unaffected
+ * by later updates to either database.
+ *
+ * See: https://en.wikipedia.org/wiki/Persistent_data_structure#Trees
+ */
+public class PersistentProximityDB<T> implements ProximityDB<T> {
+    private final GeoHashFactory geoHashFactory;
+    private final int resolution;
+    private final StandingQueries<T> standingQueries;
+    private Node<T> root;
+
+    public PersistentProximityDB(GeoHashFactory hashFactory, int precision) {
+        this(hashFactory, precision, null);
+    }
+
+    private PersistentProximityDB(
+        GeoHashFactory hashFactory,
+        int precision,
+        Node<T> rootNode
+    ) {
+        geoHashFactory = hashFactory;
+        resolution = precision;
+        root = rootNode;
+        standingQueries = new StandingQueries<>(hashFactory);
+    }
+
+    /**
+     * Returns a database holding the current version of this one. The copy shares all
+     * of its nodes with this database and costs O(1).
+     */
+    public PersistentProximityDB<T> copy() {
+        return new PersistentProximityDB<>(geoHashFactory, resolution, root);
+    }
+
+    @Override
+    public void insert(DataAndPosition<T> data) {
+        root = insert(root, LocationCode.of(geoHashFactory, data, resolution), 0, data);
+        standingQueries.inserted(data);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> delete(Position pos) {
+        return delete(pos, resolution);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> delete(Position pos, int bitsOfPrecision) {
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        List<DataAndPosition<T>> deletions = new ArrayList<>();
+        collect(find(prefix), deletions);
+        if (!deletions.isEmpty()) {
+            root = clear(root, prefix, 0);
+        }
+        return deletions;
+    }
+
+    @Override
+    public boolean remove(DataAndPosition<T> data) {
+        String code = LocationCode.of(geoHashFactory, data, resolution);
+        Node<T> node = find(code);
+        if (node == null || node.items.stream().noneMatch(item -> item == data)) {
+            return false;
+        }
+        root = remove(root, code, 0, data);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Position pos, int bitsOfPrecision) {
+        return find(LocationCode.of(geoHashFactory, pos, bitsOfPrecision)) != null;
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> itemsAt(Position pos) {
+        return nearby(pos, resolution);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> nearby(Position pos, int bitsOfPrecision) {
+        List<DataAndPosition<T>> items = new ArrayList<>();
+        collect(find(LocationCode.of(geoHashFactory, pos, bitsOfPrecision)), items);
+        return items;
+    }
+
+    /**
+     * Walks down the trie to the cells, so no item has to be hashed.
+     */
+    @Override
+    public NavigableMap<String, List<DataAndPosition<T>>> nearbyByCell(
+        Position pos,
+        int bitsOfPrecision,
+        int cellBits
+    ) {
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        NavigableMap<String, List<DataAndPosition<T>>> cells = new TreeMap<>();
+        collectCells(find(prefix), new StringBuilder(prefix), cellBits, cells);
+        return cells;
+    }
+
+    @Override
+    public StandingQuery registerStandingQuery(
+        Position pos,
+        int bitsOfPrecision,
+        Consumer<DataAndPosition<T>> callback,
+        Executor executor
+    ) {
+        return standingQueries.register(pos, bitsOfPrecision, callback, executor);
+    }
+
+    @Override
+    public ProximityDB<T> emptyClone() {
+        return new PersistentProximityDB<>(geoHashFactory, resolution);
+    }
+
+    private Node<T> find(String locationCodePrefix) {
+        Node<T> node = root;
+        for(int depth = 0; node != null && depth < locationCodePrefix.length(); depth++) {
+            node = node.child(locationCodePrefix.charAt(depth));
+        }
+        return node;
+    }
+
+    private Node<T> insert(Node<T> node, String code, int depth, DataAndPosition<T> data) {
+        if (node == null) {
+            node = Node.empty();
+        }
+        if (depth == code.length()) {
+            return node.withItem(data);
+        }
+        char bit = code.charAt(depth);
+        return node.withChild(bit, insert(node.child(bit), code, depth + 1, data));
+    }
+
+    /**
+     * @Return a copy of the node without the subtree at the provided prefix, or null if
+     *             nothing would be left in it
+     */
+    private Node<T> clear(Node<T> node, String prefix, int depth) {
+        if (node == null || depth == prefix.length()) {
+            return null;
+        }
+        char bit = prefix.charAt(depth);
+        Node<T> result = node.withChild(bit, clear(node.child(bit), prefix, depth + 1));
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * @Return a copy of the node without the item at the provided location code, or
+     *             null if nothing would be left in it
+     */
+    private Node<T> remove(Node<T> node, String code, int depth, DataAndPosition<T> data) {
+        Node<T> result;
+        if (depth == code.length()) {
+            result = node.withoutItem(data);
+        } else {
+            char bit = code.charAt(depth);
+            result = node.withChild(bit, remove(node.child(bit), code, depth + 1, data));
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+    private void collectCells(
+        Node<T> node,
+        StringBuilder code,
+        int cellBits,
+        NavigableMap<String, List<DataAndPosition<T>>> cells
+    ) {
+        if (node == null) {
+            return;
+        }
+        if (code.length() >= cellBits) {
+            List<DataAndPosition<T>> items = new ArrayList<>();
+            collect(node, items);
+            cells.put(code.substring(0, cellBits), items);
+            return;
+        }
+        code.append('0');
+        collectCells(node.zero, code, cellBits, cells);
+        code.setCharAt(code.length() - 1, '1');
+        collectCells(node.one, code, cellBits, cells);
+        code.setLength(code.length() - 1);
+    }
+
+    private void collect(Node<T> node, List<DataAndPosition<T>> items) {
+        if (node == null) {
+            return;
+        }
+        items.addAll(node.items);
+        collect(node.zero, items);
+        collect(node.one, items);
+    }
+
+    private static final class Node<T> {
+        private final Node<T> zero;
+        private final Node<T> one;
+        private final List<DataAndPosition<T>> items;
+
+        private Node(Node<T> zero, Node<T> one, List<DataAndPosition<T>> items) {
+            this.zero = zero;
+            this.one = one;
+            this.items = items;
+        }
+
+        private static <T> Node<T> empty() {
+            return new Node<>(null, null, Collections.emptyList());
+        }
+
+        private Node<T> child(char bit) {
+            return bit == '1' ? one : zero;
+        }
+
+        private Node<T> withChild(char bit, Node<T> child) {
+            return bit == '1'
+                ? new Node<>(zero, child, items)
+                : new Node<>(child, one, items);
+        }
+
+        private Node<T> withItem(DataAndPosition<T> item) {
+            List<DataAndPosition<T>> newItems = new ArrayList<>(items.size() + 1);
+            newItems.addAll(items);
+            newItems.add(item);
+            return new Node<>(zero, one, Collections.unmodifiableList(newItems));
+        }
+
+        private Node<T> withoutItem(DataAndPosition<T> item) {
+            List<DataAndPosition<T>> newItems = new ArrayList<>(items);
+            for(int i = 0; i < newItems.size(); i++) {
+                if (newItems.get(i) == item) {
+                    newItems.remove(i);
+                    break;
+                }
+            }
+            return new Node<>(zero, one, Collections.unmodifiableList(newItems));
+        }
+
+        private boolean isEmpty() {
+            return zero == null && one == null && items.isEmpty();
+        }
+    }
+}
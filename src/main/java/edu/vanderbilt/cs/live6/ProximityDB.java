@@ -2,6 +2,11 @@ package edu.vanderbilt.cs.live6;
 
 
 import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -66,6 +71,71 @@ public interface ProximityDB<T> {
      */
     public Collection<DataAndPosition<T>> nearby(Position pos, int bitsOfPrecision);
 
+    /**
+     * Returns the same data items as nearby(pos, bitsOfPrecision) as a stream.
+     * Implementations may walk their buckets lazily, so that short-circuiting operations
+     * (e.g., findFirst or limit) only visit the buckets that they need. The stream must
+     * be consumed before the database is updated.
+     *
+     */
+    public default Stream<DataAndPosition<T>> nearbyStream(
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        return nearby(pos, bitsOfPrecision).stream();
+    }
+
+    /**
+     * Returns the same data items as nearby(pos, bitsOfPrecision), grouped by the
+     * location code of their cell at cellBits bits of precision and ordered by code.
+     *
+     * Implementations that do not know their geohash factory do not support this.
+     *
+     */
+    public default NavigableMap<String, List<DataAndPosition<T>>> nearbyByCell(
+        Position pos,
+        int bitsOfPrecision,
+        int cellBits
+    ) {
+        throw new UnsupportedOperationException("nearbyByCell is not supported");
+    }
+
+    /**
+     * Registers a callback that is notified of every data item inserted later that
+     * matches the provided latitude and longitude up to the specified number of bits of
+     * precision in its geohash. The callback runs on the common pool, never on the
+     * inserting thread.
+     *
+     * Standing queries are not carried over to clones or copies.
+     *
+     */
+    public default StandingQuery registerStandingQuery(
+        Position pos,
+        int bitsOfPrecision,
+        Consumer<DataAndPosition<T>> callback
+    ) {
+        return registerStandingQuery(
+            pos, bitsOfPrecision, callback, ForkJoinPool.commonPool()
+        );
+    }
+
+    /**
+     * Like registerStandingQuery(pos, bitsOfPrecision, callback), with the callback run
+     * on the provided executor. A same-thread executor such as Runnable::run is allowed:
+     * the callback then runs synchronously inside the insert, before it returns.
+     *
+     * Implementations that do not know their geohash factory do not support this.
+     *
+     */
+    public default StandingQuery registerStandingQuery(
+        Position pos,
+        int bitsOfPrecision,
+        Consumer<DataAndPosition<T>> callback,
+        Executor executor
+    ) {
+        throw new UnsupportedOperationException("Standing queries are not supported");
+    }
+
     /**
      * Returns an empty instance of the DB with the same settings (e.g., bits, hash
      * factory, etc.) as this instance. However, the clone will contain no data.
@@ -73,4 +143,54 @@ public interface ProximityDB<T> {
      * @return
      */
     public ProximityDB<T> emptyClone();
+
+    /**
+     * Returns a new instance of the DB with the same settings, holding the data items
+     * this instance started with, before any updates were applied to it. Most databases
+     * start with no data, so by default this is emptyClone().
+     *
+     * @return
+     */
+    public default ProximityDB<T> baseClone() {
+        return emptyClone();
+    }
+
+    /**
+     * Returns an independent instance of the DB with the same settings and the same data
+     * items as this instance. Later changes to either instance do not affect the other.
+     *
+     * @return
+     */
+    public default ProximityDB<T> copy() {
+        ProximityDB<T> copy = emptyClone();
+        nearby(Position.with(0, 0), 0).forEach(copy::insert);
+        return copy;
+    }
+
+    /**
+     * Returns the items that delete(pos) would remove, those at the same location as pos
+     * at this database's resolution, without removing them.
+     */
+    public default Collection<DataAndPosition<T>> itemsAt(Position pos) {
+        return copy().delete(pos);
+    }
+
+    /**
+     * Removes one data item, the same instance that was inserted, and leaves any other
+     * items at its location in place.
+     *
+     * Returns true if the item was in the database.
+     *
+     */
+    public default boolean remove(DataAndPosition<T> data) {
+        boolean found = false;
+        for(DataAndPosition<T> item : delete(data)) {
+            if (!found && item == data) {
+                found = true;
+            } else {
+                insert(item);
+            }
+        }
+        return found;
+    }
 }
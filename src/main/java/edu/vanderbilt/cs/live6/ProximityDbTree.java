@@ -3,14 +3,19 @@ package edu.vanderbilt.cs.live6;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ProximityDbTree<T> implements ProximityDB<T> {
     private final int resolution;
     private final GeoHashFactory geoHashFactory;
     private final PrecisionTree<Collection<GeohashEntry<T>>> geoTree;
     private final PrecisionTreeFactory<Collection<GeohashEntry<T>>> precisionTreeFactory;
+    private final StandingQueries<T> standingQueries;
 
     public ProximityDbTree(
         PrecisionTreeFactory<Collection<GeohashEntry<T>>> treeFactory,
@@ -21,6 +26,7 @@ public class ProximityDbTree<T> implements ProximityDB<T> {
         geoHashFactory = hashFactory;
         precisionTreeFactory = treeFactory;
         geoTree = treeFactory.with(precision);
+        standingQueries = new StandingQueries<>(hashFactory);
     }
 
     @Override
@@ -34,6 +40,7 @@ public class ProximityDbTree<T> implements ProximityDB<T> {
                         .with(data.getLatitude(), data.getLongitude(), resolution)
                 )
             );
+        standingQueries.inserted(data);
     }
 
     @Override
@@ -65,6 +72,19 @@ public class ProximityDbTree<T> implements ProximityDB<T> {
         return deletedEntries;
     }
 
+    @Override
+    public boolean remove(DataAndPosition<T> data) {
+        Iterator<GeohashEntry<T>> entries =
+            geoTree.itemsAtLocation(treeLocationCode(data, resolution)).iterator();
+        while(entries.hasNext()) {
+            if (entries.next().getDataAndPosition() == data) {
+                entries.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean contains(Position pos, int bitsOfPrecision) {
         return geoTree
@@ -72,15 +92,44 @@ public class ProximityDbTree<T> implements ProximityDB<T> {
             .anyMatch(set -> !set.isEmpty());
     }
 
+    @Override
+    public Collection<DataAndPosition<T>> itemsAt(Position pos) {
+        return nearby(pos, resolution);
+    }
+
     @Override
     public Collection<DataAndPosition<T>> nearby(Position pos, int bitsOfPrecision) {
+        return nearbyStream(pos, bitsOfPrecision).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<DataAndPosition<T>> nearbyStream(Position pos, int bitsOfPrecision) {
         return geoTree
             .itemsWithinRange(treeLocationCode(pos, bitsOfPrecision), bitsOfPrecision)
             .filter(Objects::nonNull)
             .filter(x -> !x.isEmpty())
             .flatMap(Collection::stream)
-            .map(GeohashEntry::getDataAndPosition)
-            .collect(Collectors.toList());
+            .map(GeohashEntry::getDataAndPosition);
+    }
+
+    @Override
+    public NavigableMap<String, List<DataAndPosition<T>>> nearbyByCell(
+        Position pos,
+        int bitsOfPrecision,
+        int cellBits
+    ) {
+        return LocationCode
+            .groupByCell(geoHashFactory, nearby(pos, bitsOfPrecision), cellBits);
+    }
+
+    @Override
+    public StandingQuery registerStandingQuery(
+        Position pos,
+        int bitsOfPrecision,
+        Consumer<DataAndPosition<T>> callback,
+        Executor executor
+    ) {
+        return standingQueries.register(pos, bitsOfPrecision, callback, executor);
     }
 
     @Override
@@ -88,14 +137,23 @@ public class ProximityDbTree<T> implements ProximityDB<T> {
         return new ProximityDbTree<>(precisionTreeFactory, geoHashFactory, resolution);
     }
 
+    /**
+     * Walks the whole tree directly rather than hashing a position for a zero bit
+     * nearby() query.
+     */
+    @Override
+    public ProximityDB<T> copy() {
+        ProximityDB<T> copy = emptyClone();
+        geoTree
+            .itemsWithinRange("", 0)
+            .filter(Objects::nonNull)
+            .flatMap(Collection::stream)
+            .map(GeohashEntry::getDataAndPosition)
+            .forEach(copy::insert);
+        return copy;
+    }
+
     private String treeLocationCode(Position pos, int precision) {
-        Iterator<Boolean> geohashIterator = geoHashFactory
-            .with(pos.getLatitude(), pos.getLongitude(), precision)
-            .iterator();
-        StringBuilder geohashString = new StringBuilder();
-        while(geohashIterator.hasNext()) {
-            geohashString.append(geohashIterator.next().booleanValue() ? '1' : '0');
-        }
-        return geohashString.toString();
+        return LocationCode.of(geoHashFactory, pos, precision);
     }
 }
@@ -0,0 +1,181 @@
+package edu.vanderbilt.cs.live6;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A ProximityDB split into 2^partitionBits independent shards by the leading
+ * partitionBits bits of each item's geohash. Every item lives in exactly one shard, so
+ * updates at different prefixes never touch the same shard and the shards can be
+ * filled from different threads.
+ *
+ * Queries and range deletes with at least partitionBits bits of precision go to a
+ * single shard; coarser ones visit every shard that their prefix covers.
+ */
+public class ShardedProximityDB<T> implements ProximityDB<T> {
+    private final GeoHashFactory geoHashFactory;
+    private final int partitionBits;
+    private final List<ProximityDB<T>> shards;
+    private final StandingQueries<T> standingQueries;
+
+    /**
+     * @param template - an empty database whose emptyClone() creates each shard
+     */
+    public ShardedProximityDB(
+        GeoHashFactory hashFactory,
+        int bits,
+        ProximityDB<T> template
+    ) {
+        this(hashFactory, bits, new ArrayList<>(1 << bits));
+        for(int i = 0; i < 1 << bits; i++) {
+            shards.add(template.emptyClone());
+        }
+    }
+
+    private ShardedProximityDB(
+        GeoHashFactory hashFactory,
+        int bits,
+        List<ProximityDB<T>> shardList
+    ) {
+        geoHashFactory = hashFactory;
+        partitionBits = bits;
+        shards = shardList;
+        standingQueries = new StandingQueries<>(hashFactory);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public ProximityDB<T> getShard(int index) {
+        return shards.get(index);
+    }
+
+    /**
+     * @return the index of the shard holding the items at the position
+     */
+    public int shardIndex(Position pos) {
+        if (partitionBits == 0) {
+            return 0;
+        }
+        return Integer.parseInt(LocationCode.of(geoHashFactory, pos, partitionBits), 2);
+    }
+
+    /**
+     * @Return the index of the first shard that the prefix covers; the prefix covers
+     *             shardSpan(bitsOfPrecision) consecutive shards
+     */
+    public int firstShard(Position pos, int bitsOfPrecision) {
+        if (bitsOfPrecision >= partitionBits) {
+            return shardIndex(pos);
+        }
+        if (bitsOfPrecision == 0) {
+            return 0;
+        }
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        return Integer.parseInt(prefix, 2) << (partitionBits - bitsOfPrecision);
+    }
+
+    public int shardSpan(int bitsOfPrecision) {
+        return bitsOfPrecision >= partitionBits ? 1 : 1 << (partitionBits - bitsOfPrecision);
+    }
+
+    @Override
+    public void insert(DataAndPosition<T> data) {
+        shards.get(shardIndex(data)).insert(data);
+        standingQueries.inserted(data);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> delete(Position pos) {
+        return shards.get(shardIndex(pos)).delete(pos);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> delete(Position pos, int bitsOfPrecision) {
+        List<DataAndPosition<T>> deletions = new ArrayList<>();
+        int first = firstShard(pos, bitsOfPrecision);
+        for(int i = first; i < first + shardSpan(bitsOfPrecision); i++) {
+            deletions.addAll(shards.get(i).delete(pos, bitsOfPrecision));
+        }
+        return deletions;
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> itemsAt(Position pos) {
+        return shards.get(shardIndex(pos)).itemsAt(pos);
+    }
+
+    @Override
+    public boolean remove(DataAndPosition<T> data) {
+        return shards.get(shardIndex(data)).remove(data);
+    }
+
+    @Override
+    public boolean contains(Position pos, int bitsOfPrecision) {
+        int first = firstShard(pos, bitsOfPrecision);
+        for(int i = first; i < first + shardSpan(bitsOfPrecision); i++) {
+            if (shards.get(i).contains(pos, bitsOfPrecision)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> nearby(Position pos, int bitsOfPrecision) {
+        List<DataAndPosition<T>> items = new ArrayList<>();
+        int first = firstShard(pos, bitsOfPrecision);
+        for(int i = first; i < first + shardSpan(bitsOfPrecision); i++) {
+            items.addAll(shards.get(i).nearby(pos, bitsOfPrecision));
+        }
+        return items;
+    }
+
+    @Override
+    public Stream<DataAndPosition<T>> nearbyStream(Position pos, int bitsOfPrecision) {
+        int first = firstShard(pos, bitsOfPrecision);
+        return IntStream
+            .range(first, first + shardSpan(bitsOfPrecision))
+            .boxed()
+            .flatMap(i -> shards.get(i).nearbyStream(pos, bitsOfPrecision));
+    }
+
+    @Override
+    public NavigableMap<String, List<DataAndPosition<T>>> nearbyByCell(
+        Position pos,
+        int bitsOfPrecision,
+        int cellBits
+    ) {
+        return LocationCode
+            .groupByCell(geoHashFactory, nearby(pos, bitsOfPrecision), cellBits);
+    }
+
+    @Override
+    public StandingQuery registerStandingQuery(
+        Position pos,
+        int bitsOfPrecision,
+        Consumer<DataAndPosition<T>> callback,
+        Executor executor
+    ) {
+        return standingQueries.register(pos, bitsOfPrecision, callback, executor);
+    }
+
+    @Override
+    public ProximityDB<T> emptyClone() {
+        return new ShardedProximityDB<>(geoHashFactory, partitionBits, shards.get(0));
+    }
+
+    @Override
+    public ProximityDB<T> copy() {
+        List<ProximityDB<T>> copies = new ArrayList<>(shards.size());
+        shards.forEach(shard -> copies.add(shard.copy()));
+        return new ShardedProximityDB<>(geoHashFactory, partitionBits, copies);
+    }
+}
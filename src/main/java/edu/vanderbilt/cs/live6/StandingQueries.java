@@ -0,0 +1,115 @@
+package edu.vanderbilt.cs.live6;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * The standing queries registered with a ProximityDB, kept in a binary trie over the
+ * bits of their geohash prefixes. An inserted item's geohash is walked down the trie
+ * once, collecting the queries at every node on the way, so matching an insert costs
+ * O(bits) no matter how many queries are registered.
+ *
+ * Callbacks run on the executor given at registration. With a thread pool they never run
+ * on the thread that inserted the item; a same-thread executor such as Runnable::run is
+ * also allowed, in which case the callback runs inside insert() while this object's
+ * lock is held, so it must be quick and must not register or cancel standing queries.
+ *
+ * @param <T>
+ */
+public class StandingQueries<T> {
+    private final GeoHashFactory geoHashFactory;
+    private final Node root;
+    private int depth;
+
+    public StandingQueries(GeoHashFactory hashFactory) {
+        geoHashFactory = hashFactory;
+        root = new Node();
+        depth = 0;
+    }
+
+    public synchronized StandingQuery register(
+        Position pos,
+        int bitsOfPrecision,
+        Consumer<DataAndPosition<T>> callback,
+        Executor executor
+    ) {
+        GeoHash prefix =
+            geoHashFactory.with(pos.getLatitude(), pos.getLongitude(), bitsOfPrecision);
+        Node node = root;
+        for(boolean bit : prefix) {
+            node = node.child(bit);
+        }
+        Registration registration = new Registration(node, callback, executor);
+        node.registrations.add(registration);
+        depth = Math.max(depth, bitsOfPrecision);
+        return registration;
+    }
+
+    /**
+     * Dispatches the item to every query whose prefix it is within.
+     */
+    public synchronized void inserted(DataAndPosition<T> data) {
+        if (root.isEmpty()) {
+            return;
+        }
+        Iterator<Boolean> bits = geoHashFactory
+            .with(data.getLatitude(), data.getLongitude(), depth)
+            .iterator();
+        Node node = root;
+        while(node != null) {
+            node.registrations.forEach(registration -> registration.dispatch(data));
+            node = bits.hasNext() ? node.get(bits.next()) : null;
+        }
+    }
+
+    private final class Node {
+        private final List<Registration> registrations = new ArrayList<>(1);
+        private Node zero;
+        private Node one;
+
+        private Node get(boolean bit) {
+            return bit ? one : zero;
+        }
+
+        private Node child(boolean bit) {
+            if (bit) {
+                return one == null ? (one = new Node()) : one;
+            }
+            return zero == null ? (zero = new Node()) : zero;
+        }
+
+        private boolean isEmpty() {
+            return zero == null && one == null && registrations.isEmpty();
+        }
+    }
+
+    private final class Registration implements StandingQuery {
+        private final Node node;
+        private final Consumer<DataAndPosition<T>> callback;
+        private final Executor executor;
+
+        private Registration(
+            Node queryNode,
+            Consumer<DataAndPosition<T>> queryCallback,
+            Executor queryExecutor
+        ) {
+            node = queryNode;
+            callback = queryCallback;
+            executor = queryExecutor;
+        }
+
+        private void dispatch(DataAndPosition<T> data) {
+            executor.execute(() -> callback.accept(data));
+        }
+
+        @Override
+        public void cancel() {
+            synchronized(StandingQueries.this) {
+                node.registrations.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package edu.vanderbilt.cs.live6;
+
+/**
+ * A query registered with ProximityDB.registerStandingQuery(...) whose callback is
+ * notified of every item inserted within its geohash prefix until it is cancelled.
+ */
+public interface StandingQuery {
+
+    /**
+     * Stops notifying the callback of later inserts. Notifications that were already
+     * dispatched may still be delivered.
+     */
+    public void cancel();
+}
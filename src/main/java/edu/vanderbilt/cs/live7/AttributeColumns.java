@@ -0,0 +1,440 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.TreeMap;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.LocationCode;
+import edu.vanderbilt.cs.live6.Position;
+
+/**
+ * Stores the values of a fixed set of numeric attributes in primitive columns.
+ *
+ * Rows are kept sorted by the geohash location code of the item that they belong to,
+ * so every item matching a location-code prefix occupies one contiguous run of rows.
+ * Aggregating a declared attribute over a prefix range is therefore a binary search
+ * followed by a scan over double[]s, with no AttributesStrategy calls.
+ *
+ * The rows are split into chunks of at most CHUNK_ROWS rows, each with its own
+ * columns, and a full chunk is split in two. An insert only shifts the rows of one
+ * chunk, so it costs O(log n + CHUNK_ROWS) rather than O(n).
+ *
+ * Items that do not have a declared attribute, or whose value for it is not a Number,
+ * store NaN and are skipped by the aggregates.
+ *
+ * The columns are kept consistent with the database by registering them as an
+ * UpdateObserver.
+ *
+ * @param <T>
+ */
+public class AttributeColumns<T> implements UpdateObserver<T> {
+    static final int CHUNK_ROWS = 256;
+
+    private final GeoHashFactory geoHashFactory;
+    private final int resolution;
+    private final AttributesStrategy<T> attributesStrategy;
+    private final Map<String, Integer> columnIndices;
+    private final List<Chunk> chunks;
+    private int rows;
+
+    public AttributeColumns(
+        GeoHashFactory hashFactory,
+        int bits,
+        AttributesStrategy<T> strategy,
+        Set<String> numericAttributes
+    ) {
+        geoHashFactory = hashFactory;
+        resolution = bits;
+        attributesStrategy = strategy;
+        columnIndices = new HashMap<>();
+        for(String name : numericAttributes) {
+            columnIndices.put(name, columnIndices.size());
+        }
+        chunks = new ArrayList<>();
+        rows = 0;
+    }
+
+    public boolean hasColumn(String attributeName) {
+        return columnIndices.containsKey(attributeName);
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    @Override
+    public void inserted(DataAndPosition<T> data) {
+        double[] values = valuesOf(data);
+        String code = LocationCode.of(geoHashFactory, data, resolution);
+        if (chunks.isEmpty()) {
+            Chunk first = new Chunk(columnIndices.size());
+            first.insert(0, code, values);
+            chunks.add(first);
+            rows++;
+            return;
+        }
+
+        int index = Math.max(0, chunkAfter(code) - 1);
+        Chunk chunk = chunks.get(index);
+        int row = chunk.upperBound(code);
+        if (chunk.rows == CHUNK_ROWS) {
+            Chunk upperHalf = chunk.split();
+            chunks.add(index + 1, upperHalf);
+            if (row > chunk.rows) {
+                row -= chunk.rows;
+                chunk = upperHalf;
+            }
+        }
+        chunk.insert(row, code, values);
+        rows++;
+    }
+
+    @Override
+    public void deleted(Position pos, Collection<DataAndPosition<T>> removed) {
+        removeRange(LocationCode.of(geoHashFactory, pos, resolution));
+    }
+
+    @Override
+    public void deletedRange(
+        Position pos,
+        int bitsOfPrecision,
+        Collection<DataAndPosition<T>> removed
+    ) {
+        removeRange(LocationCode.of(geoHashFactory, pos, bitsOfPrecision));
+    }
+
+    /**
+     * Rows are not tied to items, so any row at the item's location with the item's
+     * values is removed; the aggregates cannot tell the two apart.
+     */
+    @Override
+    public void removed(DataAndPosition<T> data) {
+        double[] values = valuesOf(data);
+        String code = LocationCode.of(geoHashFactory, data, resolution);
+        for(Run run : runsWithin(code)) {
+            for(int row = run.from; row < run.to; row++) {
+                if (run.chunk.hasValues(row, values)) {
+                    run.chunk.remove(row, row + 1);
+                    rows--;
+                    dropEmptyChunks();
+                    return;
+                }
+            }
+        }
+    }
+
+    public OptionalDouble average(String attributeName, Position pos, int bitsOfPrecision) {
+        int column = columnIndices.get(attributeName);
+        double sum = 0;
+        long count = 0;
+        for(Run run : runsWithin(LocationCode.of(geoHashFactory, pos, bitsOfPrecision))) {
+            double[] values = run.chunk.columns[column];
+            for(int row = run.from; row < run.to; row++) {
+                if (!Double.isNaN(values[row])) {
+                    sum += values[row];
+                    count++;
+                }
+            }
+        }
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(sum / count);
+    }
+
+    public OptionalDouble min(String attributeName, Position pos, int bitsOfPrecision) {
+        int column = columnIndices.get(attributeName);
+        double min = Double.POSITIVE_INFINITY;
+        boolean found = false;
+        for(Run run : runsWithin(LocationCode.of(geoHashFactory, pos, bitsOfPrecision))) {
+            double[] values = run.chunk.columns[column];
+            for(int row = run.from; row < run.to; row++) {
+                if (!Double.isNaN(values[row])) {
+                    min = Math.min(min, values[row]);
+                    found = true;
+                }
+            }
+        }
+        return found ? OptionalDouble.of(min) : OptionalDouble.empty();
+    }
+
+    public OptionalDouble max(String attributeName, Position pos, int bitsOfPrecision) {
+        int column = columnIndices.get(attributeName);
+        double max = Double.NEGATIVE_INFINITY;
+        boolean found = false;
+        for(Run run : runsWithin(LocationCode.of(geoHashFactory, pos, bitsOfPrecision))) {
+            double[] values = run.chunk.columns[column];
+            for(int row = run.from; row < run.to; row++) {
+                if (!Double.isNaN(values[row])) {
+                    max = Math.max(max, values[row]);
+                    found = true;
+                }
+            }
+        }
+        return found ? OptionalDouble.of(max) : OptionalDouble.empty();
+    }
+
+    /**
+     * Summarizes the attribute per cell of cellBits bits within the region in a single
+     * scan. The region's rows are in location-code order, so the rows of a cell are
+     * contiguous and a new cell starts whenever the code prefix changes.
+     *
+     * @throws IllegalArgumentException unless regionBits <= cellBits <= getResolution()
+     */
+    public NavigableMap<String, CellSummary> aggregateByCell(
+        String attributeName,
+        Position pos,
+        int regionBits,
+        int cellBits
+    ) {
+        if (cellBits < regionBits || cellBits > resolution) {
+            throw new IllegalArgumentException(
+                "cellBits must be between regionBits and the columns' resolution ("
+                    + resolution + ")"
+            );
+        }
+        int column = columnIndices.get(attributeName);
+        NavigableMap<String, CellSummary> cells = new TreeMap<>();
+        CellSummary cell = null;
+        for(Run run : runsWithin(LocationCode.of(geoHashFactory, pos, regionBits))) {
+            double[] values = run.chunk.columns[column];
+            String[] codes = run.chunk.codes;
+            for(int row = run.from; row < run.to; row++) {
+                if (Double.isNaN(values[row])) {
+                    continue;
+                }
+                if (cell == null || !codes[row].startsWith(cell.getLocationCode())) {
+                    cell = new CellSummary(codes[row].substring(0, cellBits));
+                    cells.put(cell.getLocationCode(), cell);
+                }
+                cell.add(values[row]);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * @return a new array with the attribute's values within the prefix range, in
+     *         geohash order
+     */
+    public double[] values(String attributeName, Position pos, int bitsOfPrecision) {
+        int column = columnIndices.get(attributeName);
+        List<Run> runs = runsWithin(LocationCode.of(geoHashFactory, pos, bitsOfPrecision));
+        double[] values = new double[runs.stream().mapToInt(run -> run.to - run.from).sum()];
+        int count = 0;
+        for(Run run : runs) {
+            double[] chunkValues = run.chunk.columns[column];
+            for(int row = run.from; row < run.to; row++) {
+                if (!Double.isNaN(chunkValues[row])) {
+                    values[count++] = chunkValues[row];
+                }
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private double[] valuesOf(DataAndPosition<T> data) {
+        double[] values = new double[columnIndices.size()];
+        Arrays.fill(values, Double.NaN);
+        for(Attribute<?> attribute : attributesStrategy.getAttributes(data.getData())) {
+            Integer column = columnIndices.get(attribute.getName());
+            if (column != null && attribute.getValue() instanceof Number) {
+                values[column] = ((Number)attribute.getValue()).doubleValue();
+            }
+        }
+        return values;
+    }
+
+    private void removeRange(String prefix) {
+        List<Run> runs = runsWithin(prefix);
+        for(Run run : runs) {
+            run.chunk.remove(run.from, run.to);
+            rows -= run.to - run.from;
+        }
+        if (!runs.isEmpty()) {
+            dropEmptyChunks();
+        }
+    }
+
+    private void dropEmptyChunks() {
+        chunks.removeIf(chunk -> chunk.rows == 0);
+    }
+
+    /**
+     * @Return the rows whose location code starts with the prefix, as one run per chunk
+     *             in location-code order
+     */
+    private List<Run> runsWithin(String prefix) {
+        List<Run> runs = new ArrayList<>();
+        for(int index = firstChunkNotBefore(prefix); index < chunks.size(); index++) {
+            Chunk chunk = chunks.get(index);
+            int from = chunk.lowerBound(prefix);
+            int to = chunk.upperBound(prefix);
+            if (from < to) {
+                runs.add(new Run(chunk, from, to));
+            }
+            if (to < chunk.rows) {
+                break;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * @Return the first chunk whose last location code is not less than the prefix
+     */
+    private int firstChunkNotBefore(String prefix) {
+        int low = 0;
+        int high = chunks.size();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            Chunk chunk = chunks.get(mid);
+            if (chunk.codes[chunk.rows - 1].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @Return the first chunk whose first location code is greater than the code
+     */
+    private int chunkAfter(String code) {
+        int low = 0;
+        int high = chunks.size();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if (chunks.get(mid).codes[0].compareTo(code) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The rows [from, to) of one chunk.
+     */
+    private static class Run {
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        private Run(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Up to CHUNK_ROWS rows sorted by location code. Every code in a chunk is less than
+     * or equal to every code in the chunks after it.
+     */
+    private static class Chunk {
+        private final String[] codes;
+        private final double[][] columns;
+        private int rows;
+
+        private Chunk(int columnCount) {
+            codes = new String[CHUNK_ROWS];
+            columns = new double[columnCount][CHUNK_ROWS];
+            rows = 0;
+        }
+
+        private void insert(int row, String code, double[] values) {
+            System.arraycopy(codes, row, codes, row + 1, rows - row);
+            codes[row] = code;
+            for(int column = 0; column < columns.length; column++) {
+                System.arraycopy(columns[column], row, columns[column], row + 1, rows - row);
+                columns[column][row] = values[column];
+            }
+            rows++;
+        }
+
+        private void remove(int from, int to) {
+            System.arraycopy(codes, to, codes, from, rows - to);
+            Arrays.fill(codes, rows - (to - from), rows, null);
+            for(double[] column : columns) {
+                System.arraycopy(column, to, column, from, rows - to);
+            }
+            rows -= to - from;
+        }
+
+        /**
+         * Moves the upper half of the rows into a new chunk.
+         */
+        private Chunk split() {
+            Chunk upperHalf = new Chunk(columns.length);
+            int half = rows / 2;
+            upperHalf.rows = rows - half;
+            System.arraycopy(codes, half, upperHalf.codes, 0, upperHalf.rows);
+            Arrays.fill(codes, half, rows, null);
+            for(int column = 0; column < columns.length; column++) {
+                double[] upperColumn = upperHalf.columns[column];
+                System.arraycopy(columns[column], half, upperColumn, 0, upperHalf.rows);
+            }
+            rows = half;
+            return upperHalf;
+        }
+
+        private boolean hasValues(int row, double[] values) {
+            for(int column = 0; column < columns.length; column++) {
+                if (Double.compare(columns[column][row], values[column]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @Return the first row whose location code is not less than the prefix (the
+         *             start of the prefix range)
+         */
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = rows;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if (codes[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @Return the first row whose location code is greater than the prefix and does
+         *             not start with it (the end of the prefix range)
+         */
+        private int upperBound(String prefix) {
+            int low = 0;
+            int high = rows;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                String code = codes[mid];
+                if (code.compareTo(prefix) <= 0 || code.startsWith(prefix)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+
+/**
+ * Maps the values of a single attribute to the items that have them.
+ *
+ * A hash index answers equality predicates. A sorted index answers range predicates
+ * (and equality) but only indexes values of its declared Comparable type, so that all
+ * of its keys can be compared to one another.
+ *
+ * Items are tracked by identity together with their location code, which lets the
+ * index side of a query be narrowed to a spatial prefix without consulting the tree.
+ *
+ * @param <T>
+ */
+class AttributeIndex<T> {
+    private final Class<?> sortedType;
+    private final Map<Object, Map<DataAndPosition<T>, IndexEntry<T>>> entriesByValue;
+    private final Map<DataAndPosition<T>, Object> valuesByItem;
+
+    private AttributeIndex(
+        Class<?> valueType,
+        Map<Object, Map<DataAndPosition<T>, IndexEntry<T>>> valueMap
+    ) {
+        sortedType = valueType;
+        entriesByValue = valueMap;
+        valuesByItem = new IdentityHashMap<>();
+    }
+
+    static <T> AttributeIndex<T> hashIndex() {
+        return new AttributeIndex<>(null, new HashMap<>());
+    }
+
+    static <T> AttributeIndex<T> sortedIndex(Class<? extends Comparable<?>> valueType) {
+        return new AttributeIndex<>(valueType, new TreeMap<>());
+    }
+
+    void add(DataAndPosition<T> item, String locationCode, Object value) {
+        if (sortedType != null && !sortedType.isInstance(value)) {
+            return;
+        }
+        entriesByValue
+            .computeIfAbsent(value, v -> new IdentityHashMap<>())
+            .computeIfAbsent(item, i -> new IndexEntry<>(item, locationCode))
+            .copies++;
+        valuesByItem.put(item, value);
+    }
+
+    void remove(DataAndPosition<T> item) {
+        if (!valuesByItem.containsKey(item)) {
+            return;
+        }
+        Object value = valuesByItem.remove(item);
+        Map<DataAndPosition<T>, IndexEntry<T>> entries = entriesByValue.get(value);
+        entries.remove(item);
+        if (entries.isEmpty()) {
+            entriesByValue.remove(value);
+        }
+    }
+
+    /**
+     * @Return the number of indexed items matching the predicate, or -1 if this index
+     *             cannot answer it
+     */
+    long count(ValuePredicate<?> predicate) {
+        Stream<Map<DataAndPosition<T>, IndexEntry<T>>> buckets = matchingBuckets(predicate);
+        if (buckets == null) {
+            return -1;
+        }
+        return buckets
+            .flatMap(bucket -> bucket.values().stream())
+            .mapToLong(entry -> entry.copies)
+            .sum();
+    }
+
+    /**
+     * @Assume count(predicate) >= 0
+     */
+    Stream<IndexEntry<T>> candidates(ValuePredicate<?> predicate) {
+        return matchingBuckets(predicate).flatMap(bucket -> bucket.values().stream());
+    }
+
+    private Stream<Map<DataAndPosition<T>, IndexEntry<T>>> matchingBuckets(
+        ValuePredicate<?> predicate
+    ) {
+        switch(predicate.getKind()) {
+            case EQUAL:
+                Object value = predicate.getValue();
+                if (sortedType != null && !sortedType.isInstance(value)) {
+                    return null;
+                }
+                return entriesByValue.containsKey(value)
+                    ? Stream.of(entriesByValue.get(value))
+                    : Stream.empty();
+            case RANGE:
+                if (sortedType == null
+                    || !isSortedType(predicate.getLower())
+                    || !isSortedType(predicate.getUpper())) {
+                    return null;
+                }
+                return rangeOf(predicate).values().stream();
+            default:
+                return null;
+        }
+    }
+
+    private boolean isSortedType(Object bound) {
+        return bound == null || sortedType.isInstance(bound);
+    }
+
+    private NavigableMap<Object, Map<DataAndPosition<T>, IndexEntry<T>>> rangeOf(
+        ValuePredicate<?> predicate
+    ) {
+        NavigableMap<Object, Map<DataAndPosition<T>, IndexEntry<T>>> range =
+            (NavigableMap<Object, Map<DataAndPosition<T>, IndexEntry<T>>>)entriesByValue;
+        if (predicate.getLower() != null) {
+            range = range.tailMap(predicate.getLower(), predicate.isLowerInclusive());
+        }
+        if (predicate.getUpper() != null) {
+            range = range.headMap(predicate.getUpper(), predicate.isUpperInclusive());
+        }
+        return range;
+    }
+
+    static class IndexEntry<T> {
+        private final DataAndPosition<T> item;
+        private final String locationCode;
+        private int copies;
+
+        private IndexEntry(DataAndPosition<T> item, String locationCode) {
+            this.item = item;
+            this.locationCode = locationCode;
+        }
+
+        boolean isWithin(String locationCodePrefix) {
+            return locationCode.startsWith(locationCodePrefix);
+        }
+
+        Stream<DataAndPosition<T>> items() {
+            return Collections.nCopies(copies, item).stream();
+        }
+    }
+}
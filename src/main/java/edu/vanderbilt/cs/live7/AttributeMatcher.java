@@ -2,6 +2,10 @@ package edu.vanderbilt.cs.live7;
 
 public interface AttributeMatcher<T> {
 
+    public static <T> NamedAttributeMatcher<T> named(String attributeName) {
+        return new NamedAttributeMatcher<>(attributeName);
+    }
+
     public boolean matches(Attribute<T> attr);
 
 }
@@ -0,0 +1,128 @@
+package edu.vanderbilt.cs.live7;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Builds AttributesStrategies for plain Java objects from their getters, instead of
+ * writing one by hand for each type:
+ *
+ * AttributesStrategy<Building> strategy = AttributesStrategies.forClass(Building.class);
+ *
+ * Every public, non-static, no-argument getX() or isX() method, except getClass() and
+ * the bridge methods the compiler adds for covariant overrides, becomes an attribute
+ * named x with its first letter lower-cased (e.g., getSizeInSquareFeet() becomes
+ * "sizeInSquareFeet"). Primitive values are boxed.
+ *
+ * The getters are found with reflection once, when the strategy is built, and each is
+ * bound with LambdaMetafactory into a Function (and, for numeric getters, a
+ * ToDoubleFunction). Extracting an attribute is then an ordinary interface call that
+ * the JIT can inline like a hand-written strategy, rather than a Method.invoke.
+ */
+public class AttributesStrategies {
+
+    private AttributesStrategies() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the class or one of its getters cannot be
+     *             accessed from this package
+     */
+    public static <T> GeneratedAttributesStrategy<T> forClass(Class<T> type) {
+        List<Method> getters = Arrays
+            .stream(type.getMethods())
+            .filter(AttributesStrategies::isGetter)
+            .sorted(Comparator.comparing(AttributesStrategies::propertyName))
+            .collect(Collectors.toList());
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        int count = getters.size();
+        String[] names = new String[count];
+        Class<?>[] types = new Class<?>[count];
+        List<Function<T, Object>> accessors = new ArrayList<>(count);
+        List<ToDoubleFunction<T>> doubleAccessors = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            Method getter = getters.get(i);
+            names[i] = propertyName(getter);
+            types[i] = MethodType.methodType(getter.getReturnType()).wrap().returnType();
+            try {
+                MethodHandle handle = lookup.unreflect(getter);
+                accessors
+                    .add(bind(lookup, handle, Function.class, "apply", Object.class));
+                doubleAccessors.add(
+                    isNumeric(getter.getReturnType())
+                        ? bind(
+                            lookup, handle, ToDoubleFunction.class, "applyAsDouble",
+                            double.class
+                        )
+                        : null
+                );
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("Cannot bind " + getter, e);
+            }
+        }
+        return new GeneratedAttributesStrategy<>(
+            names, types, accessors, doubleAccessors
+        );
+    }
+
+    /**
+     * Creates an instance of the functional interface whose single method, with the
+     * erased signature (Object) -> samReturn, calls the getter.
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> F bind(
+        MethodHandles.Lookup lookup,
+        MethodHandle getter,
+        Class<?> functionalInterface,
+        String methodName,
+        Class<?> samReturn
+    ) throws Throwable {
+        Class<?> declaringType = getter.type().parameterType(0);
+        Class<?> returnType = samReturn == double.class
+            ? double.class
+            : getter.type().wrap().returnType();
+        CallSite site = LambdaMetafactory
+            .metafactory(
+                lookup, methodName, MethodType.methodType(functionalInterface),
+                MethodType.methodType(samReturn, Object.class), getter,
+                MethodType.methodType(returnType, declaringType)
+            );
+        return (F)site.getTarget().invoke();
+    }
+
+    private static boolean isGetter(Method method) {
+        String name = method.getName();
+        return !Modifier.isStatic(method.getModifiers())
+            && !method.isBridge()
+            && method.getParameterCount() == 0
+            && method.getReturnType() != void.class
+            && !name.equals("getClass")
+            && (name.startsWith("get") && name.length() > 3
+                || name.startsWith("is") && name.length() > 2
+                    && method.getReturnType() == boolean.class);
+    }
+
+    private static String propertyName(Method getter) {
+        String name = getter.getName();
+        String property = name.substring(name.startsWith("is") ? 2 : 3);
+        return Character.toLowerCase(property.charAt(0)) + property.substring(1);
+    }
+
+    private static boolean isNumeric(Class<?> type) {
+        return type == double.class || type == float.class || type == long.class
+            || type == int.class || type == short.class || type == byte.class;
+    }
+}
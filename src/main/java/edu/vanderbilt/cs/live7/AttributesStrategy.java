@@ -1,6 +1,7 @@
 package edu.vanderbilt.cs.live7;
 
 import java.util.Collection;
+import java.util.stream.Stream;
 
 /**
  * Given a data item of type T, returns the attributes of this
@@ -22,4 +23,38 @@ import java.util.Collection;
 public interface AttributesStrategy<T> {
 
     public Collection<Attribute> getAttributes(T data);
+
+    /**
+     * Returns the first attribute of the data item with the provided name, or null if
+     * it has none.
+     *
+     * The default builds all of the attributes with getAttributes. Strategies that can
+     * build one attribute on its own should override this, so that queries with a
+     * NamedAttributeMatcher only extract the attribute that they need.
+     */
+    public default Attribute getAttribute(T data, String name) {
+        for(Attribute attribute : getAttributes(data)) {
+            if (name.equals(attribute.getName())) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the values of the data item's attributes that the matcher matches. For a
+     * NamedAttributeMatcher only the named attribute is extracted, with getAttribute.
+     */
+    @SuppressWarnings("unchecked")
+    public default <V> Stream<V> matchingValues(T data, AttributeMatcher<V> matcher) {
+        if (matcher instanceof NamedAttributeMatcher) {
+            String name = ((NamedAttributeMatcher<V>)matcher).getAttributeName();
+            Attribute attribute = getAttribute(data, name);
+            return attribute == null ? Stream.empty() : Stream.of((V)attribute.getValue());
+        }
+        return getAttributes(data)
+            .stream()
+            .filter(attribute -> matcher.matches(attribute))
+            .map(attribute -> (V)attribute.getValue());
+    }
 }
@@ -0,0 +1,45 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * A group of commands that is applied as a single operation: it occupies one operation
+ * index, so no state between its commands is ever observable through
+ * databaseStateAtTime, snapshots, or change events.
+ *
+ * @param <T>
+ */
+public class BatchCommand<T> implements UpdateCommand<T> {
+    private final List<UpdateCommand<T>> commands;
+
+    public BatchCommand(List<UpdateCommand<T>> batch) {
+        commands = Collections.unmodifiableList(new ArrayList<>(batch));
+    }
+
+    /**
+     * Executes the commands in order. A ProximityStreamDB applies them as one operation.
+     */
+    @Override
+    public ProximityDB<T> execute(ProximityDB<T> proximityDB) {
+        if (proximityDB instanceof ProximityStreamDB<?>) {
+            ((ProximityStreamDB<T>)proximityDB).apply(commands);
+        } else {
+            commands.forEach(command -> command.execute(proximityDB));
+        }
+        return proximityDB;
+    }
+
+    @Override
+    public <R> R accept(UpdateCommandVisitor<T, R> visitor) {
+        return visitor.visitBatch(this);
+    }
+
+    public List<UpdateCommand<T>> getCommands() {
+        return commands;
+    }
+
+}
@@ -0,0 +1,116 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.Position;
+
+/**
+ * Decorates another AttributesStrategy and memoizes the attributes that it extracts
+ * for each data item.
+ *
+ * When registered as an UpdateObserver, attributes are extracted once when an item is
+ * inserted and dropped when the item is deleted. The cache holds at most
+ * maxCachedEntries items and evicts the least recently used item when it is full;
+ * evicted items are simply re-extracted the next time that they are read.
+ *
+ * Items are cached by identity, so a data item that is mutated after insertion (e.g.,
+ * through Building's setters) must be passed to invalidate() before its new attribute
+ * values will be seen.
+ *
+ * @param <T>
+ */
+public class CachingAttributesStrategy<T> implements AttributesStrategy<T>,
+    UpdateObserver<T> {
+    private final AttributesStrategy<T> delegate;
+    private final Map<IdentityKey<T>, Collection<Attribute>> cache;
+
+    public CachingAttributesStrategy(
+        AttributesStrategy<T> strategy,
+        int maxCachedEntries
+    ) {
+        if (maxCachedEntries < 0) {
+            throw new IllegalArgumentException("maxCachedEntries must not be negative");
+        }
+        delegate = strategy;
+        cache = new LinkedHashMap<IdentityKey<T>, Collection<Attribute>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<IdentityKey<T>, Collection<Attribute>> eldest
+            ) {
+                return size() > maxCachedEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Collection<Attribute> getAttributes(T data) {
+        return cache
+            .computeIfAbsent(new IdentityKey<>(data), key -> delegate.getAttributes(data));
+    }
+
+    /**
+     * Drops the cached attributes for the provided data item so that they are
+     * re-extracted on the next read.
+     */
+    public synchronized void invalidate(T data) {
+        cache.remove(new IdentityKey<>(data));
+    }
+
+    public synchronized void invalidateAll() {
+        cache.clear();
+    }
+
+    /**
+     * @return the number of data items whose attributes are currently cached
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    @Override
+    public void inserted(DataAndPosition<T> data) {
+        getAttributes(data.getData());
+    }
+
+    @Override
+    public void deleted(Position pos, Collection<DataAndPosition<T>> removed) {
+        removed.forEach(dataPos -> invalidate(dataPos.getData()));
+    }
+
+    @Override
+    public void deletedRange(
+        Position pos,
+        int bitsOfPrecision,
+        Collection<DataAndPosition<T>> removed
+    ) {
+        removed.forEach(dataPos -> invalidate(dataPos.getData()));
+    }
+
+    @Override
+    public void removed(DataAndPosition<T> data) {
+        invalidate(data.getData());
+    }
+
+    private static class IdentityKey<T> {
+        private final T data;
+
+        private IdentityKey(T data) {
+            this.data = data;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey<?> && ((IdentityKey<?>)o).data == data;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.OptionalDouble;
+
+/**
+ * The count, sum, min, and max of an attribute's values within one geohash cell, as
+ * produced by ProximityStreamDB.aggregateByCell.
+ *
+ * Summaries of the same cell can be merged, so a cell may be summarized in pieces.
+ */
+public class CellSummary {
+    private final String locationCode;
+    private long count;
+    private double sum;
+    private double min;
+    private double max;
+
+    public CellSummary(String cellLocationCode) {
+        locationCode = cellLocationCode;
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    public void add(double value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public CellSummary merge(CellSummary other) {
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * @return the '0' / '1' location code of the cell
+     */
+    public String getLocationCode() {
+        return locationCode;
+    }
+
+    /**
+     * @return the number of values in the cell
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public OptionalDouble getAverage() {
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(sum / count);
+    }
+
+    public OptionalDouble getMin() {
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(min);
+    }
+
+    public OptionalDouble getMax() {
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(max);
+    }
+}
@@ -0,0 +1,45 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.Collection;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+
+/**
+ * One update applied to a ProximityStreamDB, as emitted by a ChangePublisher.
+ *
+ * @param <T>
+ */
+public class ChangeEvent<T> {
+    private final int operationIndex;
+    private final UpdateCommand<T> command;
+    private final Collection<DataAndPosition<T>> removed;
+
+    public ChangeEvent(
+        int index,
+        UpdateCommand<T> updateCommand,
+        Collection<DataAndPosition<T>> removedItems
+    ) {
+        operationIndex = index;
+        command = updateCommand;
+        removed = removedItems;
+    }
+
+    /**
+     * @return the index of the operation; databaseStateAtTime(index + 1) is the first
+     *         state that includes it
+     */
+    public int getOperationIndex() {
+        return operationIndex;
+    }
+
+    public UpdateCommand<T> getCommand() {
+        return command;
+    }
+
+    /**
+     * @return the items the command actually removed, empty for inserts
+     */
+    public Collection<DataAndPosition<T>> getRemoved() {
+        return removed;
+    }
+}
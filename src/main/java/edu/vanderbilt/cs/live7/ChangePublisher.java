@@ -0,0 +1,194 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+
+/**
+ * Publishes every update applied to a ProximityStreamDB as a ChangeEvent.
+ *
+ * The most recent capacity events are kept in a ring buffer. Each subscriber has its
+ * own cursor into the ring and receives events on the executor, never on the writing
+ * thread, and only as many as it has requested. Publishing an event never waits for a
+ * subscriber: a subscriber that falls so far behind that the events it still needs
+ * have been overwritten receives onError, and can subscribe again from the index after
+ * the last event it processed (or resynchronize from a snapshot).
+ *
+ * @param <T>
+ */
+public class ChangePublisher<T>
+    implements Flow.Publisher<ChangeEvent<T>>, UpdateObserver<T> {
+    private final ChangeEvent<T>[] ring;
+    private final Executor executor;
+    private final Set<ChangeSubscription> subscriptions;
+    private final long firstIndex;
+    private long nextIndex;
+
+    /**
+     * @param firstIndex - the index of the first operation this publisher will see
+     */
+    @SuppressWarnings("unchecked")
+    public ChangePublisher(int capacity, Executor deliveryExecutor, int firstIndex) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        ring = (ChangeEvent<T>[])new ChangeEvent<?>[capacity];
+        executor = deliveryExecutor;
+        subscriptions = ConcurrentHashMap.newKeySet();
+        this.firstIndex = firstIndex;
+        nextIndex = firstIndex;
+    }
+
+    @Override
+    public void applied(
+        int operationIndex,
+        UpdateCommand<T> command,
+        Collection<DataAndPosition<T>> removed,
+        long epochMillis
+    ) {
+        synchronized(this) {
+            ring[operationIndex % ring.length] =
+                new ChangeEvent<>(operationIndex, command, removed);
+            nextIndex = operationIndex + 1;
+        }
+        subscriptions.forEach(ChangeSubscription::signal);
+    }
+
+    /**
+     * Subscribes to the events for operations applied from now on.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChangeEvent<T>> subscriber) {
+        long from;
+        synchronized(this) {
+            from = nextIndex;
+        }
+        subscribe(subscriber, from);
+    }
+
+    /**
+     * Subscribes to the events starting with the operation at fromIndex. The subscriber
+     * receives onError if that event is no longer buffered.
+     */
+    public void subscribe(
+        Flow.Subscriber<? super ChangeEvent<T>> subscriber,
+        long fromIndex
+    ) {
+        ChangeSubscription subscription = new ChangeSubscription(subscriber, fromIndex);
+        subscriber.onSubscribe(subscription);
+        if (!subscription.cancelled) {
+            subscriptions.add(subscription);
+            subscription.signal();
+        }
+    }
+
+    /**
+     * @Assume the caller holds this publisher's lock
+     */
+    private long oldestBufferedIndex() {
+        return Math.max(firstIndex, nextIndex - ring.length);
+    }
+
+    private class ChangeSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ChangeEvent<T>> subscriber;
+        private final AtomicLong demand;
+        private final AtomicBoolean scheduled;
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+        private long cursor;
+
+        private ChangeSubscription(
+            Flow.Subscriber<? super ChangeEvent<T>> subscriber,
+            long fromIndex
+        ) {
+            this.subscriber = subscriber;
+            demand = new AtomicLong();
+            scheduled = new AtomicBoolean();
+            cursor = fromIndex;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("request must be positive");
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> {
+                    long sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Schedules a delivery run unless one is already scheduled.
+         */
+        private void signal() {
+            if (!cancelled && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        /**
+         * Delivers events until the subscriber's demand or the buffered events run out.
+         * Only one delivery run is active per subscription at a time.
+         */
+        private void deliver() {
+            do {
+                while(!cancelled) {
+                    if (failure != null) {
+                        fail(failure);
+                        break;
+                    }
+                    ChangeEvent<T> event;
+                    synchronized(ChangePublisher.this) {
+                        if (cursor < oldestBufferedIndex()) {
+                            failure = new IllegalStateException(
+                                "The subscriber fell behind; the event at " + cursor
+                                    + " is no longer buffered"
+                            );
+                            continue;
+                        }
+                        if (demand.get() == 0 || cursor >= nextIndex) {
+                            break;
+                        }
+                        event = ring[(int)(cursor % ring.length)];
+                    }
+                    cursor++;
+                    demand.decrementAndGet();
+                    subscriber.onNext(event);
+                }
+                scheduled.set(false);
+            } while(hasWork() && scheduled.compareAndSet(false, true));
+        }
+
+        private boolean hasWork() {
+            if (cancelled) {
+                return false;
+            }
+            if (failure != null) {
+                return true;
+            }
+            synchronized(ChangePublisher.this) {
+                return demand.get() > 0 && cursor < nextIndex;
+            }
+        }
+
+        private void fail(Throwable error) {
+            cancel();
+            subscriber.onError(error);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+
+/**
+ * The net difference between two states of a ProximityStreamDB: the items present in
+ * the later state but not in the earlier one, and the other way around.
+ *
+ * A ChangeSet is built from the UndoRecords of the operations between the two states,
+ * so it costs time in proportion to the items those operations touched, not to the
+ * size of either state. Items are matched by identity: an item that is inserted and
+ * later removed within the window (or removed and inserted again, e.g., by an undo)
+ * appears in neither stream.
+ *
+ * @param <T>
+ */
+public class ChangeSet<T> {
+    private final List<DataAndPosition<T>> touched;
+    private final Map<DataAndPosition<T>, int[]> netCounts;
+
+    private ChangeSet(
+        List<DataAndPosition<T>> items,
+        Map<DataAndPosition<T>, int[]> counts
+    ) {
+        touched = items;
+        netCounts = counts;
+    }
+
+    /**
+     * Folds the records, in operation order, into their net changes.
+     */
+    public static <T> ChangeSet<T> of(List<UndoRecord<T>> undoRecords) {
+        List<DataAndPosition<T>> touched = new ArrayList<>();
+        Map<DataAndPosition<T>, int[]> netCounts = new IdentityHashMap<>();
+        for(UndoRecord<T> record : undoRecords) {
+            for(int step = 0; step < record.size(); step++) {
+                DataAndPosition<T> item = record.getItem(step);
+                int[] count = netCounts.get(item);
+                if (count == null) {
+                    count = new int[1];
+                    netCounts.put(item, count);
+                    touched.add(item);
+                }
+                count[0] += record.isInsertion(step) ? 1 : -1;
+            }
+        }
+        return new ChangeSet<>(touched, netCounts);
+    }
+
+    /**
+     * @return the items in the later state that were not in the earlier one, in the
+     *         order that they were first touched
+     */
+    public Stream<DataAndPosition<T>> inserted() {
+        return withNetCount(1);
+    }
+
+    /**
+     * @return the items in the earlier state that are no longer in the later one, in
+     *         the order that they were first touched
+     */
+    public Stream<DataAndPosition<T>> removed() {
+        return withNetCount(-1);
+    }
+
+    /**
+     * @return true if both states hold the same items
+     */
+    public boolean isEmpty() {
+        return inserted().findAny().isEmpty() && removed().findAny().isEmpty();
+    }
+
+    /**
+     * An item inserted (or removed) n times more than it was removed (or inserted) is
+     * repeated n times.
+     */
+    private Stream<DataAndPosition<T>> withNetCount(int sign) {
+        return touched
+            .stream()
+            .flatMap(item -> {
+                int count = netCounts.get(item)[0] * sign;
+                return count > 0
+                    ? Stream.generate(() -> item).limit(count)
+                    : Stream.empty();
+            });
+    }
+}
@@ -0,0 +1,120 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * Reconstructs past states from periodic checkpoints. A frozen copy of the database is
+ * taken after every interval operations; stateAt(n) copies the nearest checkpoint at or
+ * below n and replays only the operations after it, so at most interval commands are
+ * replayed per call.
+ *
+ * The checkpoints together may hold at most maxCheckpointedItems data items. When a new
+ * checkpoint would exceed that budget, the interval is doubled and every checkpoint
+ * that is no longer on it is dropped, which keeps the checkpoints evenly spaced at the
+ * cost of longer replays.
+ *
+ * @param <T>
+ */
+public class CheckpointHistory<T> implements StateHistory<T> {
+    private final int initialInterval;
+    private final long maxCheckpointedItems;
+    private final NavigableMap<Integer, Checkpoint<T>> checkpoints;
+    private int interval;
+    private long checkpointedItems;
+
+    public CheckpointHistory(int checkpointInterval, long maxItems) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("checkpointInterval must be positive");
+        }
+        initialInterval = checkpointInterval;
+        maxCheckpointedItems = maxItems;
+        checkpoints = new TreeMap<>();
+        interval = checkpointInterval;
+        checkpointedItems = 0;
+    }
+
+    /**
+     * @return the current number of operations between checkpoints
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    public int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    /**
+     * @return the number of data items held across all checkpoints
+     */
+    public long getCheckpointedItems() {
+        return checkpointedItems;
+    }
+
+    @Override
+    public void recorded(int operationCount, ProximityDB<T> current) {
+        if (operationCount % interval != 0) {
+            return;
+        }
+        ProximityDB<T> frozen = current.copy();
+        int items = frozen.nearby(Position.with(0, 0), 0).size();
+        checkpoints.put(operationCount, new Checkpoint<>(frozen, items));
+        checkpointedItems += items;
+
+        while(checkpointedItems > maxCheckpointedItems && !checkpoints.isEmpty()) {
+            interval *= 2;
+            checkpoints.entrySet().removeIf(entry -> {
+                if (entry.getKey() % interval != 0) {
+                    checkpointedItems -= entry.getValue().items;
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    @Override
+    public Supplier<ProximityDB<T>> frozenAt(
+        int n,
+        OperationLog<T> operations,
+        ProximityDB<T> current
+    ) {
+        OperationLog.View<T> view = operations.view(current);
+        Map.Entry<Integer, Checkpoint<T>> nearest = checkpoints.floorEntry(n);
+        if (nearest == null || nearest.getKey() < view.getBaseIndex()) {
+            return () -> view.replayTo(n);
+        }
+        int checkpointIndex = nearest.getKey();
+        ProximityDB<T> checkpoint = nearest.getValue().state;
+        return () -> ReplayHistory
+            .replay(view.between(checkpointIndex, n), checkpoint.copy());
+    }
+
+    @Override
+    public void compacted(int horizon) {
+        Map<Integer, Checkpoint<T>> discarded = checkpoints.headMap(horizon);
+        discarded.values().forEach(checkpoint -> checkpointedItems -= checkpoint.items);
+        discarded.clear();
+    }
+
+    @Override
+    public StateHistory<T> startingFrom(ProximityDB<T> initialState) {
+        return new CheckpointHistory<>(initialInterval, maxCheckpointedItems);
+    }
+
+    private static class Checkpoint<T> {
+        private final ProximityDB<T> state;
+        private final int items;
+
+        private Checkpoint(ProximityDB<T> state, int items) {
+            this.state = state;
+            this.items = items;
+        }
+    }
+}
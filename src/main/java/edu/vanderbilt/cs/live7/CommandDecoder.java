@@ -0,0 +1,91 @@
+package edu.vanderbilt.cs.live7;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.vanderbilt.cs.live6.Codec;
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.Position;
+
+/**
+ * Reads the UpdateCommands written by a CommandEncoder with the same settings. See
+ * CommandEncoder for the format.
+ *
+ * @param <T>
+ */
+public class CommandDecoder<T> {
+    private final Codec<T> codec;
+    private final double quantum;
+    private long previousLatitude;
+    private long previousLongitude;
+
+    public CommandDecoder(Codec<T> dataCodec) {
+        this(dataCodec, 0);
+    }
+
+    public CommandDecoder(Codec<T> dataCodec, double quantumDegrees) {
+        codec = dataCodec;
+        quantum = quantumDegrees;
+        previousLatitude = encodeCoordinate(0);
+        previousLongitude = encodeCoordinate(0);
+    }
+
+    /**
+     * Reads the command at the buffer's position and advances past it.
+     */
+    public UpdateCommand<T> decode(ByteBuffer buffer) {
+        byte opcode = buffer.get();
+        if (opcode == CommandEncoder.BATCH) {
+            int count = (int)Varints.getUnsigned(buffer);
+            List<UpdateCommand<T>> commands = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                commands.add(decode(buffer));
+            }
+            return new BatchCommand<>(commands);
+        }
+        readPosition(buffer);
+        double lat = decodeCoordinate(previousLatitude);
+        double lon = decodeCoordinate(previousLongitude);
+        switch(opcode) {
+            case CommandEncoder.INSERT:
+                T data = codec.decode(buffer);
+                return new InsertCommand<>(DataAndPosition.with(lat, lon, data));
+            case CommandEncoder.DELETE:
+                return new DeleteCommand<>(Position.with(lat, lon));
+            case CommandEncoder.DELETE_RANGE:
+                int bits = (int)Varints.getUnsigned(buffer);
+                return new DeleteRangeCommand<>(Position.with(lat, lon), bits);
+            default:
+                throw new IllegalStateException("Unknown command opcode " + opcode);
+        }
+    }
+
+    long getPreviousLatitude() {
+        return previousLatitude;
+    }
+
+    long getPreviousLongitude() {
+        return previousLongitude;
+    }
+
+    private void readPosition(ByteBuffer buffer) {
+        if (quantum > 0) {
+            previousLatitude += Varints.getSigned(buffer);
+            previousLongitude += Varints.getSigned(buffer);
+        } else {
+            previousLatitude ^= Varints.getUnsigned(buffer);
+            previousLongitude ^= Varints.getUnsigned(buffer);
+        }
+    }
+
+    private long encodeCoordinate(double degrees) {
+        return quantum > 0
+            ? Math.round(degrees / quantum)
+            : Double.doubleToLongBits(degrees);
+    }
+
+    private double decodeCoordinate(long coordinate) {
+        return quantum > 0 ? coordinate * quantum : Double.longBitsToDouble(coordinate);
+    }
+}
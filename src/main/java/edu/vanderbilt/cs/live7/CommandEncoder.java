@@ -0,0 +1,179 @@
+package edu.vanderbilt.cs.live7;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import edu.vanderbilt.cs.live6.Codec;
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.Position;
+
+/**
+ * Writes UpdateCommands in a compact binary format:
+ *
+ * [opcode byte][latitude][longitude][command arguments]
+ *
+ * A BatchCommand is written as its opcode, the varint number of commands, and then each
+ * of its commands:
+ *
+ * [opcode byte][count][command]...
+ *
+ * Positions are delta-encoded against the previous command's position. With raw
+ * encoding, each coordinate is written as the varint of its IEEE-754 bits XORed with the
+ * previous coordinate's bits, which is lossless and short when consecutive positions
+ * are close. With quantized encoding, each coordinate is rounded to a multiple of the
+ * quantum (in degrees) and the zigzag varint of the difference from the previous
+ * quantized coordinate is written.
+ *
+ * Bits of precision are written as a varint and data items are written with the
+ * supplied Codec. Commands are encoded directly into the caller's buffer without
+ * allocating.
+ *
+ * An encoder is stateful; its output can only be read by a CommandDecoder, created with
+ * the same settings, that reads every command in the order that it was written.
+ *
+ * @param <T>
+ */
+public class CommandEncoder<T> implements UpdateCommandVisitor<T, Void> {
+    static final byte INSERT = 1;
+    static final byte DELETE = 2;
+    static final byte DELETE_RANGE = 3;
+    static final byte BATCH = 4;
+
+    private final Codec<T> codec;
+    private final double quantum;
+    private long previousLatitude;
+    private long previousLongitude;
+    private long nextLatitude;
+    private long nextLongitude;
+    private ByteBuffer output;
+
+    /**
+     * Creates an encoder that writes positions losslessly.
+     */
+    public CommandEncoder(Codec<T> dataCodec) {
+        this(dataCodec, 0);
+    }
+
+    /**
+     * Creates an encoder that rounds positions to multiples of quantum degrees (e.g.,
+     * 1e-7 is roughly a centimeter).
+     */
+    public CommandEncoder(Codec<T> dataCodec, double quantumDegrees) {
+        codec = dataCodec;
+        quantum = quantumDegrees;
+        previousLatitude = encodeCoordinate(0);
+        previousLongitude = encodeCoordinate(0);
+    }
+
+    /**
+     * Writes the command at the buffer's position. If the command does not fit, a
+     * BufferOverflowException is thrown and the encoder's state is left unchanged, so
+     * the command can be written again to a larger buffer.
+     */
+    public void encode(UpdateCommand<T> command, ByteBuffer buffer) {
+        ByteBuffer enclosing = output;
+        output = buffer;
+        try {
+            command.accept(this);
+        } finally {
+            output = enclosing;
+        }
+    }
+
+    public void encodeInsert(DataAndPosition<T> data, ByteBuffer buffer) {
+        buffer.put(INSERT);
+        putPosition(data, buffer);
+        codec.encode(data.getData(), buffer);
+        commitPosition();
+    }
+
+    public void encodeDelete(Position pos, ByteBuffer buffer) {
+        buffer.put(DELETE);
+        putPosition(pos, buffer);
+        commitPosition();
+    }
+
+    public void encodeDeleteRange(Position pos, int bitsOfPrecision, ByteBuffer buffer) {
+        buffer.put(DELETE_RANGE);
+        putPosition(pos, buffer);
+        Varints.putUnsigned(buffer, bitsOfPrecision);
+        commitPosition();
+    }
+
+    public void encodeBatch(List<UpdateCommand<T>> commands, ByteBuffer buffer) {
+        long batchLatitude = previousLatitude;
+        long batchLongitude = previousLongitude;
+        try {
+            buffer.put(BATCH);
+            Varints.putUnsigned(buffer, commands.size());
+            for(UpdateCommand<T> command : commands) {
+                encode(command, buffer);
+            }
+        } catch(BufferOverflowException overflow) {
+            previousLatitude = batchLatitude;
+            previousLongitude = batchLongitude;
+            throw overflow;
+        }
+    }
+
+    @Override
+    public Void visitInsert(InsertCommand<T> command) {
+        encodeInsert(command.getDataAndPosition(), output);
+        return null;
+    }
+
+    @Override
+    public Void visitDelete(DeleteCommand<T> command) {
+        encodeDelete(command.getPosition(), output);
+        return null;
+    }
+
+    @Override
+    public Void visitDeleteRange(DeleteRangeCommand<T> command) {
+        encodeDeleteRange(command.getPosition(), command.getBitsOfPrecision(), output);
+        return null;
+    }
+
+    @Override
+    public Void visitBatch(BatchCommand<T> command) {
+        encodeBatch(command.getCommands(), output);
+        return null;
+    }
+
+    /**
+     * Makes this encoder continue the stream read so far by the decoder, so that new
+     * commands can be appended to it.
+     */
+    public void continueFrom(CommandDecoder<T> decoder) {
+        previousLatitude = decoder.getPreviousLatitude();
+        previousLongitude = decoder.getPreviousLongitude();
+    }
+
+    private long encodeCoordinate(double degrees) {
+        return quantum > 0
+            ? Math.round(degrees / quantum)
+            : Double.doubleToLongBits(degrees);
+    }
+
+    /**
+     * Writes the position. Its encoded coordinates only become the previous position
+     * once the whole command has been written.
+     */
+    private void putPosition(Position pos, ByteBuffer buffer) {
+        nextLatitude = encodeCoordinate(pos.getLatitude());
+        nextLongitude = encodeCoordinate(pos.getLongitude());
+        if (quantum > 0) {
+            Varints.putSigned(buffer, nextLatitude - previousLatitude);
+            Varints.putSigned(buffer, nextLongitude - previousLongitude);
+        } else {
+            Varints.putUnsigned(buffer, nextLatitude ^ previousLatitude);
+            Varints.putUnsigned(buffer, nextLongitude ^ previousLongitude);
+        }
+    }
+
+    private void commitPosition() {
+        previousLatitude = nextLatitude;
+        previousLongitude = nextLongitude;
+    }
+}
@@ -0,0 +1,391 @@
+package edu.vanderbilt.cs.live7;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * A read-only view of a ProximityStreamDB pinned at one operation index.
+ *
+ * Taking a snapshot only captures references to the operation log and to whatever
+ * state the database's StateHistory keeps, so it costs O(1). The state at the pinned
+ * index is rebuilt on the first query, on the querying thread, and is never affected
+ * by later writes. Over a PersistentProximityDB or with a PersistentHistory nothing has
+ * to be rebuilt; with a ReplayHistory the first query replays every retained operation.
+ *
+ * A snapshot may be queried from any thread while the database keeps applying
+ * updates; the writer never waits for it. close() releases the pinned state right
+ * away; a snapshot that is no longer referenced is released by the garbage collector.
+ *
+ * @param <T>
+ */
+public class DatabaseSnapshot<T> implements ProximityStreamDB<T>, AutoCloseable {
+    private final int operationIndex;
+    private final AttributesStrategy<T> attributesStrategy;
+    private final AtomicReference<Pinned<T>> pinned;
+
+    DatabaseSnapshot(
+        int index,
+        AttributesStrategy<T> strategy,
+        OperationLog.View<T> operations,
+        Supplier<ProximityDB<T>> state
+    ) {
+        this(index, strategy, new Pinned<>(operations, state));
+    }
+
+    private DatabaseSnapshot(int index, AttributesStrategy<T> strategy, Pinned<T> state) {
+        operationIndex = index;
+        attributesStrategy = strategy;
+        pinned = new AtomicReference<>(state);
+    }
+
+    /**
+     * @return the number of operations that had been applied when the snapshot was taken
+     */
+    public int getOperationIndex() {
+        return operationIndex;
+    }
+
+    @Override
+    public void close() {
+        pinned.set(null);
+    }
+
+    @Override
+    public void insert(DataAndPosition<T> data) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> delete(Position pos) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> delete(Position pos, int bitsOfPrecision) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> apply(List<UpdateCommand<T>> commands) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public boolean undo() {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public boolean redo() {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public boolean contains(Position pos, int bitsOfPrecision) {
+        return state().contains(pos, bitsOfPrecision);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> nearby(Position pos, int bitsOfPrecision) {
+        return state().nearby(pos, bitsOfPrecision);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> itemsAt(Position pos) {
+        return state().itemsAt(pos);
+    }
+
+    @Override
+    public ProximityDB<T> emptyClone() {
+        return state().emptyClone();
+    }
+
+    /**
+     * Returns a new, writable database holding the state after the first n operations.
+     * Only states from the pinned index back to the database's retention horizon at
+     * the time of the snapshot are available.
+     */
+    @Override
+    public ProximityStreamDB<T> databaseStateAtTime(int n) {
+        Pinned<T> state = pinned();
+        if (n >= operationIndex) {
+            return new NaiveProximityStreamDB<>(state.frozen.get(), attributesStrategy);
+        }
+        if (n < state.operations.getBaseIndex()) {
+            throw new IllegalArgumentException(
+                "The state at " + n + " was compacted; the earliest available state is "
+                    + state.operations.getBaseIndex()
+            );
+        }
+        ProximityDB<T> past = state.operations.replayTo(n);
+        return new NaiveProximityStreamDB<>(past, attributesStrategy);
+    }
+
+    @Override
+    public ProximityStreamDB<T> databaseStateAt(Instant time) {
+        return databaseStateAtTime(pinned().operations.countAt(time.toEpochMilli()));
+    }
+
+    @Override
+    public List<UpdateCommand<T>> operationsBetween(Instant from, Instant to) {
+        OperationLog.View<T> operations = pinned().operations;
+        int start = operations.countAt(from.toEpochMilli() - 1);
+        int end = Math.max(start, operations.countAt(to.toEpochMilli() - 1));
+        return List.copyOf(operations.between(start, end));
+    }
+
+    /**
+     * Only changes between the database's retention horizon at the time of the snapshot
+     * and the pinned index are available.
+     */
+    @Override
+    public ChangeSet<T> changesBetween(int m, int n) {
+        OperationLog.View<T> operations = pinned().operations;
+        if (m < operations.getBaseIndex() || m > n || n > operations.size()) {
+            throw new IllegalArgumentException(
+                "Changes are available between " + operations.getBaseIndex() + " and "
+                    + operations.size()
+            );
+        }
+        return ChangeSet.of(operations.undoRecordsBetween(m, n));
+    }
+
+    @Override
+    public DatabaseSnapshot<T> snapshot() {
+        return new DatabaseSnapshot<>(operationIndex, attributesStrategy, pinned());
+    }
+
+    /**
+     * A snapshot never changes, so its publisher never emits an event.
+     */
+    @Override
+    public ChangePublisher<T> changes() {
+        return new ChangePublisher<>(1, Runnable::run, operationIndex);
+    }
+
+    @Override
+    public <V> Stream<V> streamNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        return state().streamNearby(matcher, pos, bitsOfPrecision);
+    }
+
+    @Override
+    public <V extends Double> OptionalDouble averageNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        return state().averageNearby(matcher, pos, bitsOfPrecision);
+    }
+
+    @Override
+    public <V extends Double> OptionalDouble minNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        return state().minNearby(matcher, pos, bitsOfPrecision);
+    }
+
+    @Override
+    public <V extends Double> OptionalDouble maxNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        return state().maxNearby(matcher, pos, bitsOfPrecision);
+    }
+
+    @Override
+    public <V> Map<V, Long> histogramNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        return state().histogramNearby(matcher, pos, bitsOfPrecision);
+    }
+
+    @Override
+    public <V extends Double> OptionalDouble percentileNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision,
+        double p
+    ) {
+        return state().percentileNearby(matcher, pos, bitsOfPrecision, p);
+    }
+
+    @Override
+    public <V> List<V> topKNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision,
+        int k,
+        Comparator<? super V> comparator
+    ) {
+        return state().topKNearby(matcher, pos, bitsOfPrecision, k, comparator);
+    }
+
+    @Override
+    public <V extends Double> NavigableMap<String, CellSummary> aggregateByCell(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int regionBits,
+        int cellBits,
+        boolean parallel
+    ) {
+        return state().aggregateByCell(matcher, pos, regionBits, cellBits, parallel);
+    }
+
+    @Override
+    public NavigableMap<String, List<DataAndPosition<T>>> nearbyByCell(
+        Position pos,
+        int bitsOfPrecision,
+        int cellBits
+    ) {
+        return state().nearbyByCell(pos, bitsOfPrecision, cellBits);
+    }
+
+    /**
+     * Views are maintained by the database as it is updated; a snapshot has none.
+     */
+    @Override
+    public <V extends Double> MaterializedAggregate<T> materialize(
+        String viewId,
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public Optional<MaterializedAggregate<T>> materialized(
+        String viewId,
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        return Optional.empty();
+    }
+
+    @Override
+    public <V extends Double> WindowedAggregate<T> windowNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision,
+        int operationCount
+    ) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public <V extends Double> WindowedAggregate<T> windowNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision,
+        Duration window
+    ) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public <V> HyperLogLog approxDistinctNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision,
+        double relativeError
+    ) {
+        return state().approxDistinctNearby(matcher, pos, bitsOfPrecision, relativeError);
+    }
+
+    @Override
+    public <V extends Double> KllSketch approxQuantilesNearby(
+        AttributeMatcher<V> matcher,
+        Position pos,
+        int bitsOfPrecision,
+        double rankError
+    ) {
+        return state().approxQuantilesNearby(matcher, pos, bitsOfPrecision, rankError);
+    }
+
+    @Override
+    public Stream<DataAndPosition<T>> nearbyMatching(
+        Position pos,
+        int bitsOfPrecision,
+        Predicate<Collection<Attribute>> predicate
+    ) {
+        return state().nearbyMatching(pos, bitsOfPrecision, predicate);
+    }
+
+    @Override
+    public Stream<DataAndPosition<T>> nearbyMatchingAll(
+        Position pos,
+        int bitsOfPrecision,
+        AttributeMatcher<?>... matchers
+    ) {
+        return state().nearbyMatchingAll(pos, bitsOfPrecision, matchers);
+    }
+
+    @Override
+    public Collection<DataAndPosition<T>> nearbyWhere(
+        Position pos,
+        int bitsOfPrecision,
+        String attributeName,
+        ValuePredicate<?> predicate
+    ) {
+        return state().nearbyWhere(pos, bitsOfPrecision, attributeName, predicate);
+    }
+
+    private Pinned<T> pinned() {
+        Pinned<T> state = pinned.get();
+        if (state == null) {
+            throw new IllegalStateException("The snapshot has been closed");
+        }
+        return state;
+    }
+
+    private ProximityStreamDB<T> state() {
+        return pinned().materialize(attributesStrategy);
+    }
+
+    /**
+     * Everything a snapshot holds on to. Shared by snapshots of a snapshot.
+     */
+    private static final class Pinned<T> {
+        private final OperationLog.View<T> operations;
+        private final Supplier<ProximityDB<T>> frozen;
+        private ProximityStreamDB<T> materialized;
+
+        private Pinned(OperationLog.View<T> operations, Supplier<ProximityDB<T>> frozen) {
+            this.operations = operations;
+            this.frozen = frozen;
+        }
+
+        private synchronized ProximityStreamDB<T> materialize(
+            AttributesStrategy<T> strategy
+        ) {
+            if (materialized == null) {
+                materialized = new NaiveProximityStreamDB<>(frozen.get(), strategy);
+            }
+            return materialized;
+        }
+    }
+}
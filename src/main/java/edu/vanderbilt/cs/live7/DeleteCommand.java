@@ -16,4 +16,13 @@ public class DeleteCommand<T> implements UpdateCommand<T> {
         return proximityDB;
     }
 
+    @Override
+    public <R> R accept(UpdateCommandVisitor<T, R> visitor) {
+        return visitor.visitDelete(this);
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
 }
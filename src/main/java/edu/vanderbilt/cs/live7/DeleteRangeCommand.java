@@ -21,4 +21,17 @@ public class DeleteRangeCommand<T> implements UpdateCommand<T> {
         return proximityDB;
     }
 
+    @Override
+    public <R> R accept(UpdateCommandVisitor<T, R> visitor) {
+        return visitor.visitDeleteRange(this);
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    public int getBitsOfPrecision() {
+        return bitsOfPrecision;
+    }
+
 }
@@ -0,0 +1,87 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An AttributesStrategy built by AttributesStrategies.forClass(...) that extracts each
+ * attribute through an accessor bound directly to its getter.
+ *
+ * Besides all of the attributes, it can extract one attribute by name without building
+ * the others, and the value of a numeric attribute as a primitive double without
+ * boxing it.
+ *
+ * @param <T>
+ */
+public class GeneratedAttributesStrategy<T> implements AttributesStrategy<T> {
+    private final String[] names;
+    private final Class<?>[] types;
+    private final List<Function<T, Object>> accessors;
+    private final List<ToDoubleFunction<T>> doubleAccessors;
+    private final Map<String, Integer> indices;
+
+    GeneratedAttributesStrategy(
+        String[] attributeNames,
+        Class<?>[] attributeTypes,
+        List<Function<T, Object>> attributeAccessors,
+        List<ToDoubleFunction<T>> doubleAttributeAccessors
+    ) {
+        names = attributeNames;
+        types = attributeTypes;
+        accessors = attributeAccessors;
+        doubleAccessors = doubleAttributeAccessors;
+        indices = new HashMap<>();
+        for(int i = 0; i < names.length; i++) {
+            indices.put(names[i], i);
+        }
+    }
+
+    /**
+     * @return the names of the attributes, in alphabetical order
+     */
+    public List<String> getAttributeNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    @Override
+    public Collection<Attribute> getAttributes(T data) {
+        List<Attribute> attributes = new ArrayList<>(names.length);
+        for(int i = 0; i < names.length; i++) {
+            attributes.add(attribute(data, i));
+        }
+        return attributes;
+    }
+
+    @Override
+    public Attribute getAttribute(T data, String name) {
+        Integer index = indices.get(name);
+        return index == null ? null : attribute(data, index);
+    }
+
+    /**
+     * @return the value of the numeric attribute, widened to a double
+     * @throws IllegalArgumentException if there is no numeric attribute with the name
+     */
+    public double getDouble(T data, String name) {
+        Integer index = indices.get(name);
+        if (index == null || doubleAccessors.get(index) == null) {
+            throw new IllegalArgumentException("No numeric attribute named " + name);
+        }
+        return doubleAccessors.get(index).applyAsDouble(data);
+    }
+
+    private Attribute<?> attribute(T data, int index) {
+        return attribute(names[index], types[index], accessors.get(index).apply(data));
+    }
+
+    private static <V> Attribute<V> attribute(String name, Class<V> type, Object value) {
+        return new Attribute<>(name, type, type.cast(value));
+    }
+}
@@ -0,0 +1,144 @@
+package edu.vanderbilt.cs.live7;
+
+/**
+ * Estimates the number of distinct values added to it in a fixed 2^precision bytes.
+ *
+ * Each value is hashed to 64 bits. The first precision bits pick one of 2^precision
+ * registers and the register keeps the longest run of leading zeros (plus one) seen in
+ * the remaining bits. The harmonic mean of the registers gives the estimate, with a
+ * relative standard error of about 1.04 / sqrt(2^precision). Small cardinalities, that
+ * leave registers empty, are estimated by linear counting instead.
+ *
+ * Two sketches with the same precision can be merged into a sketch of the union of
+ * their values, so a region can be sketched in parallel pieces or across shards.
+ *
+ * See: https://en.wikipedia.org/wiki/HyperLogLog
+ */
+public class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                "precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION
+            );
+        }
+        this.precision = precision;
+        registers = new byte[1 << precision];
+    }
+
+    /**
+     * Creates the smallest sketch whose relative standard error is at most
+     * relativeError. The error cannot be lower than that of MAX_PRECISION, about 0.002.
+     */
+    public static HyperLogLog withRelativeError(double relativeError) {
+        if (!(relativeError > 0)) {
+            throw new IllegalArgumentException("relativeError must be positive");
+        }
+        double registers = Math.pow(1.04 / relativeError, 2);
+        int precision = (int)Math.ceil(Math.log(registers) / Math.log(2));
+        if (precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                "relativeError must be at least " + 1.04 / Math.sqrt(1 << MAX_PRECISION)
+            );
+        }
+        return new HyperLogLog(Math.max(MIN_PRECISION, precision));
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return the relative standard error of estimate()
+     */
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    public void add(Object value) {
+        long hash = hash(value);
+        int register = (int)(hash >>> (Long.SIZE - precision));
+        long rest = hash << precision;
+        int rank = Math.min(Long.numberOfLeadingZeros(rest), Long.SIZE - precision) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte)rank;
+        }
+    }
+
+    /**
+     * Adds every value added to the other sketch to this one.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Only sketches of equal precision merge");
+        }
+        for(int i = 0; i < registers.length; i++) {
+            registers[i] = (byte)Math.max(registers[i], other.registers[i]);
+        }
+        return this;
+    }
+
+    /**
+     * @return the estimated number of distinct values added
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int empty = 0;
+        for(byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && empty > 0) {
+            estimate = m * Math.log((double)m / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch(m) {
+        case 16:
+            return 0.673;
+        case 32:
+            return 0.697;
+        case 64:
+            return 0.709;
+        default:
+            return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    /**
+     * Strings are hashed over all of their characters, so that the sketch does not
+     * depend on 32 bit String.hashCode() collisions; other values are hashed from their
+     * hashCode(). Both are finished with the MurmurHash3 64 bit mixer.
+     */
+    private static long hash(Object value) {
+        long hash;
+        if (value instanceof CharSequence) {
+            CharSequence chars = (CharSequence)value;
+            hash = 0xcbf29ce484222325L;
+            for(int i = 0; i < chars.length(); i++) {
+                hash = (hash ^ chars.charAt(i)) * 0x100000001b3L;
+            }
+        } else if (value instanceof Double || value instanceof Float) {
+            hash = Double.doubleToLongBits(((Number)value).doubleValue());
+        } else {
+            hash = value == null ? 0 : value.hashCode();
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -16,4 +16,13 @@ public class InsertCommand<T> implements UpdateCommand<T> {
         return proximityDB;
     }
 
+    @Override
+    public <R> R accept(UpdateCommandVisitor<T, R> visitor) {
+        return visitor.visitInsert(this);
+    }
+
+    public DataAndPosition<T> getDataAndPosition() {
+        return dataAndPosition;
+    }
+
 }
@@ -0,0 +1,259 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Estimates the quantiles of a stream of doubles in O(k) memory (KLL sketch).
+ *
+ * Values are kept in a hierarchy of compactors; an item at level h stands for 2^h of
+ * the values added. When a level outgrows its capacity it is sorted and every other
+ * item, starting at a random offset, is promoted to the next level while the rest are
+ * dropped. Capacities shrink geometrically (by 2/3) from the top level down, so the
+ * total size stays under about 3k items no matter how many values are added.
+ *
+ * The rank of a value returned by quantile(q) is within getRankError() * n of q * n
+ * for every q at once with 99% confidence. That error, 2.446 / k^0.9433, is the bound
+ * Apache DataSketches documents for its KLL sketch, which uses the same 2/3 capacity
+ * decay; it is measured rather than proven.
+ *
+ * Two sketches with the same k can be merged into a sketch of both streams, so a
+ * region can be sketched in parallel pieces or across shards.
+ *
+ * See: Karnin, Lang, Liberty. "Optimal Quantile Approximation in Streams." FOCS 2016.
+ */
+public class KllSketch {
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_K = 8;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final double RANK_ERROR_SCALE = 2.446;
+    private static final double RANK_ERROR_EXPONENT = 0.9433;
+
+    private final int k;
+    private final Random random;
+    private final List<double[]> levels;
+    private int[] levelSizes;
+    private long count;
+    private double min;
+    private double max;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        this(k, new Random());
+    }
+
+    /**
+     * @param coins - decides which half of a level is promoted; seed it for repeatable
+     *            results
+     */
+    public KllSketch(int k, Random coins) {
+        if (k < MIN_K) {
+            throw new IllegalArgumentException("k must be at least " + MIN_K);
+        }
+        this.k = k;
+        random = coins;
+        levels = new ArrayList<>();
+        levelSizes = new int[0];
+        count = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+        addLevel();
+    }
+
+    /**
+     * Creates a sketch whose rank error is at most rankError.
+     */
+    public static KllSketch withRankError(double rankError) {
+        return withRankError(rankError, new Random());
+    }
+
+    /**
+     * @param coins - decides which half of a level is promoted; seed it for repeatable
+     *            results
+     */
+    public static KllSketch withRankError(double rankError, Random coins) {
+        if (!(rankError > 0)) {
+            throw new IllegalArgumentException("rankError must be positive");
+        }
+        double k = Math.pow(RANK_ERROR_SCALE / rankError, 1 / RANK_ERROR_EXPONENT);
+        return new KllSketch(Math.max(MIN_K, (int)Math.ceil(k)), coins);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return the normalized rank error of quantile(q), i.e., the returned value's rank
+     *         is within getRankError() * getCount() of q * getCount() for every q at
+     *         once with 99% confidence
+     */
+    public double getRankError() {
+        return RANK_ERROR_SCALE / Math.pow(k, RANK_ERROR_EXPONENT);
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        compress();
+    }
+
+    /**
+     * Adds every value added to the other sketch to this one.
+     */
+    public KllSketch merge(KllSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Only sketches with equal k merge");
+        }
+        if (other.count == 0) {
+            return this;
+        }
+        while(levels.size() < other.levels.size()) {
+            addLevel();
+        }
+        for(int level = 0; level < other.levels.size(); level++) {
+            double[] items = other.levels.get(level);
+            for(int i = 0; i < other.levelSizes[level]; i++) {
+                append(level, items[i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        compress();
+        return this;
+    }
+
+    /**
+     * @param q - between 0 and 1
+     * @return an estimate of the value at rank q * getCount(), or NaN if nothing was
+     *         added; quantile(0) and quantile(1) are the exact min and max
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+
+        int retained = Arrays.stream(levelSizes).sum();
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        Integer[] order = new Integer[retained];
+        int next = 0;
+        for(int level = 0; level < levels.size(); level++) {
+            double[] items = levels.get(level);
+            for(int i = 0; i < levelSizes[level]; i++) {
+                values[next] = items[i];
+                weights[next] = 1L << level;
+                order[next] = next;
+                next++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long totalWeight = Arrays.stream(weights).sum();
+        double target = q * totalWeight;
+        long cumulative = 0;
+        for(int index : order) {
+            cumulative += weights[index];
+            if (cumulative >= target) {
+                return values[index];
+            }
+        }
+        return max;
+    }
+
+    public double[] quantiles(double... qs) {
+        return Arrays.stream(qs).map(this::quantile).toArray();
+    }
+
+    private int capacity(int level) {
+        int depth = levels.size() - 1 - level;
+        return Math.max(2, (int)Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void addLevel() {
+        levels.add(new double[MIN_K]);
+        levelSizes = Arrays.copyOf(levelSizes, levels.size());
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels.get(level);
+        if (levelSizes[level] == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+            levels.set(level, items);
+        }
+        items[levelSizes[level]++] = value;
+    }
+
+    /**
+     * Compacts the lowest level that is over capacity until every level fits.
+     */
+    private void compress() {
+        boolean compacted;
+        do {
+            compacted = false;
+            for(int level = 0; level < levels.size(); level++) {
+                if (levelSizes[level] >= capacity(level)) {
+                    compact(level);
+                    compacted = true;
+                    break;
+                }
+            }
+        } while(compacted);
+    }
+
+    /**
+     * Promotes every other item of the sorted level to the level above. An odd item out
+     * stays behind so that no weight is lost.
+     */
+    private void compact(int level) {
+        if (level == levels.size() - 1) {
+            addLevel();
+        }
+        double[] items = levels.get(level);
+        int size = levelSizes[level];
+        Arrays.sort(items, 0, size);
+
+        int kept = size % 2;
+        double leftover = kept == 1 ? items[size - 1] : 0;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for(int i = offset; i < size - kept; i += 2) {
+            append(level + 1, items[i]);
+        }
+        levelSizes[level] = 0;
+        if (kept == 1) {
+            append(level, leftover);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+
+/**
+ * The count, sum, min, and max of the values of one attribute of the items within a
+ * geohash prefix, registered with ProximityStreamDB.materialize(...) and kept up to
+ * date as items are inserted and deleted, so that reading it is O(1).
+ *
+ * Every value is also kept in a sorted multiset, so deleting the current min or max
+ * only costs a lookup of the next one, O(log n), instead of a rescan of the prefix.
+ *
+ * @param <T>
+ */
+public class MaterializedAggregate<T> {
+    private final String viewId;
+    private final String locationCode;
+    private final AttributeMatcher<? extends Double> matcher;
+    private final AttributesStrategy<T> attributesStrategy;
+    private final TreeMap<Double, Integer> valueCounts;
+    private long count;
+    private double sum;
+    private double min;
+    private double max;
+
+    MaterializedAggregate(
+        String id,
+        String prefix,
+        AttributeMatcher<? extends Double> attributeMatcher,
+        AttributesStrategy<T> strategy
+    ) {
+        viewId = id;
+        locationCode = prefix;
+        matcher = attributeMatcher;
+        attributesStrategy = strategy;
+        valueCounts = new TreeMap<>();
+        count = 0;
+        sum = 0;
+    }
+
+    private MaterializedAggregate(MaterializedAggregate<T> other) {
+        this(other.viewId, other.locationCode, other.matcher, other.attributesStrategy);
+        valueCounts.putAll(other.valueCounts);
+        count = other.count;
+        sum = other.sum;
+        min = other.min;
+        max = other.max;
+    }
+
+    public String getViewId() {
+        return viewId;
+    }
+
+    /**
+     * @return the '0' / '1' location code of the prefix that the view covers
+     */
+    public String getLocationCode() {
+        return locationCode;
+    }
+
+    public int getBitsOfPrecision() {
+        return locationCode.length();
+    }
+
+    /**
+     * @return the number of matching values within the prefix
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public OptionalDouble getAverage() {
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(sum / count);
+    }
+
+    public OptionalDouble getMin() {
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(min);
+    }
+
+    public OptionalDouble getMax() {
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(max);
+    }
+
+    /**
+     * @Assume the item is within the prefix
+     */
+    void added(DataAndPosition<T> data) {
+        values(data)
+            .forEach(value -> {
+                count++;
+                sum += value;
+                valueCounts.merge(value, 1, Integer::sum);
+                updateBounds();
+            });
+    }
+
+    /**
+     * @Assume the item is within the prefix and was added before
+     */
+    void removed(DataAndPosition<T> data) {
+        values(data)
+            .forEach(value -> {
+                count--;
+                sum -= value;
+                valueCounts.computeIfPresent(value, (v, n) -> n == 1 ? null : n - 1);
+                updateBounds();
+            });
+        if (count == 0) {
+            sum = 0;
+        }
+    }
+
+    MaterializedAggregate<T> copy() {
+        return new MaterializedAggregate<>(this);
+    }
+
+    MaterializedAggregate<T> emptyCopy() {
+        return new MaterializedAggregate<>(
+            viewId, locationCode, matcher, attributesStrategy
+        );
+    }
+
+    private DoubleStream values(DataAndPosition<T> data) {
+        Stream<?> values = attributesStrategy.matchingValues(data.getData(), matcher);
+        return values.mapToDouble(value -> ((Number)value).doubleValue());
+    }
+
+    private void updateBounds() {
+        if (!valueCounts.isEmpty()) {
+            min = valueCounts.firstKey();
+            max = valueCounts.lastKey();
+        }
+    }
+}
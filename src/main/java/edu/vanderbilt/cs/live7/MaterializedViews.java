@@ -0,0 +1,189 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.LocationCode;
+import edu.vanderbilt.cs.live6.Position;
+
+/**
+ * The MaterializedAggregates registered with a ProximityStreamDB, keyed by view id and
+ * prefix, and kept in a binary trie over the bits of their prefixes. Each inserted or
+ * deleted item is coded once, at the precision of the finest view, and its code is
+ * walked down the trie to add it to or remove it from the views at every node on the
+ * way, so a write costs O(bits) no matter how many views are registered.
+ *
+ * Copies for historical states are derived from the current values by reverting the
+ * ChangeSet between the two states, so no attribute is extracted from the items that
+ * did not change. Each view is still copied with its sorted multiset of values, so a
+ * copy costs O(values in all views) plus O(log values) per value of a changed item.
+ *
+ * @param <T>
+ */
+public class MaterializedViews<T> implements UpdateObserver<T> {
+    private final GeoHashFactory geoHashFactory;
+    private final AttributesStrategy<T> attributesStrategy;
+    private final Map<String, Map<String, MaterializedAggregate<T>>> viewsById;
+    private final List<MaterializedAggregate<T>> views;
+    private final Node<T> root;
+    private int resolution;
+
+    public MaterializedViews(GeoHashFactory hashFactory, AttributesStrategy<T> strategy) {
+        geoHashFactory = hashFactory;
+        attributesStrategy = strategy;
+        viewsById = new HashMap<>();
+        views = new ArrayList<>();
+        root = new Node<>();
+        resolution = 0;
+    }
+
+    /**
+     * Returns the view registered under the id for the prefix, or registers a new one
+     * loaded with the provided items.
+     *
+     * @param items - the items currently within the prefix
+     */
+    public MaterializedAggregate<T> register(
+        String viewId,
+        AttributeMatcher<? extends Double> matcher,
+        Position pos,
+        int bitsOfPrecision,
+        Collection<DataAndPosition<T>> items
+    ) {
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        Map<String, MaterializedAggregate<T>> prefixes =
+            viewsById.computeIfAbsent(viewId, id -> new HashMap<>());
+        MaterializedAggregate<T> view = prefixes.get(prefix);
+        if (view == null) {
+            view =
+                new MaterializedAggregate<>(viewId, prefix, matcher, attributesStrategy);
+            items.forEach(view::added);
+            add(view);
+        }
+        return view;
+    }
+
+    public Optional<MaterializedAggregate<T>> get(
+        String viewId,
+        Position pos,
+        int bitsOfPrecision
+    ) {
+        Map<String, MaterializedAggregate<T>> prefixes = viewsById.get(viewId);
+        if (prefixes == null) {
+            return Optional.empty();
+        }
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        return Optional.ofNullable(prefixes.get(prefix));
+    }
+
+    /**
+     * @return the same views over an empty database
+     */
+    public MaterializedViews<T> emptied() {
+        MaterializedViews<T> emptied =
+            new MaterializedViews<>(geoHashFactory, attributesStrategy);
+        views.forEach(view -> emptied.add(view.emptyCopy()));
+        return emptied;
+    }
+
+    /**
+     * Copies every view, O(values in all views), and reverts the changes in the copies.
+     *
+     * @return a copy of the views as they were before the changes
+     */
+    public MaterializedViews<T> revertedBy(ChangeSet<T> changes) {
+        MaterializedViews<T> reverted =
+            new MaterializedViews<>(geoHashFactory, attributesStrategy);
+        views.forEach(view -> reverted.add(view.copy()));
+        changes.inserted().forEach(reverted::remove);
+        changes.removed().forEach(reverted::inserted);
+        return reverted;
+    }
+
+    @Override
+    public void inserted(DataAndPosition<T> data) {
+        if (views.isEmpty()) {
+            return;
+        }
+        forEachViewOver(data, view -> view.added(data));
+    }
+
+    @Override
+    public void deleted(Position pos, Collection<DataAndPosition<T>> removed) {
+        removed.forEach(this::remove);
+    }
+
+    @Override
+    public void deletedRange(
+        Position pos,
+        int bitsOfPrecision,
+        Collection<DataAndPosition<T>> removed
+    ) {
+        removed.forEach(this::remove);
+    }
+
+    @Override
+    public void removed(DataAndPosition<T> data) {
+        remove(data);
+    }
+
+    private void remove(DataAndPosition<T> data) {
+        if (views.isEmpty()) {
+            return;
+        }
+        forEachViewOver(data, view -> view.removed(data));
+    }
+
+    /**
+     * Applies the action to every view whose prefix the item's location code starts
+     * with.
+     */
+    private void forEachViewOver(
+        DataAndPosition<T> data,
+        Consumer<MaterializedAggregate<T>> action
+    ) {
+        String code = LocationCode.of(geoHashFactory, data, resolution);
+        Node<T> node = root;
+        for(int i = 0; node != null; i++) {
+            node.views.forEach(action);
+            node = i < code.length() ? node.get(code.charAt(i)) : null;
+        }
+    }
+
+    private void add(MaterializedAggregate<T> view) {
+        viewsById
+            .computeIfAbsent(view.getViewId(), id -> new HashMap<>())
+            .put(view.getLocationCode(), view);
+        views.add(view);
+        Node<T> node = root;
+        for(char bit : view.getLocationCode().toCharArray()) {
+            node = node.child(bit);
+        }
+        node.views.add(view);
+        resolution = Math.max(resolution, view.getBitsOfPrecision());
+    }
+
+    private static final class Node<T> {
+        private final List<MaterializedAggregate<T>> views = new ArrayList<>(1);
+        private Node<T> zero;
+        private Node<T> one;
+
+        private Node<T> get(char bit) {
+            return bit == '1' ? one : zero;
+        }
+
+        private Node<T> child(char bit) {
+            if (bit == '1') {
+                return one == null ? (one = new Node<>()) : one;
+            }
+            return zero == null ? (zero = new Node<>()) : zero;
+        }
+    }
+}
@@ -1,49 +1,334 @@
 package edu.vanderbilt.cs.live7;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.OptionalDouble;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.PersistentProximityDB;
 import edu.vanderbilt.cs.live6.Position;
 import edu.vanderbilt.cs.live6.ProximityDB;
+import edu.vanderbilt.cs.live6.StandingQuery;
 
 public class NaiveProximityStreamDB<T> implements ProximityStreamDB<T> {
+	private static final int DEFAULT_CHANGE_BUFFER = 1024;
+	private static final int INITIAL_UNDO_CAPACITY = 16;
+
 	private final ProximityDB<T> currentProximityDb;
 	private final AttributesStrategy<T> attributesStrategy;
-	private final List<UpdateCommand<T>> operations;
+	private final OperationLog<T> operations;
+	private final List<UpdateObserver<T>> observers;
+	private final StateHistory<T> history;
+	private final CommandExecutor commandExecutor;
+	private final List<UpdateCommand<T>> redoable;
+	private int[] undoable;
+	private int undoableCount;
+	private AttributeColumns<T> columns;
+	private SecondaryIndexes<T> indexes;
+	private ChangePublisher<T> changes;
+	private MaterializedViews<T> views;
+	private int retainedOperations;
+	private Clock clock;
+	private Random sketchCoins;
 
 	public NaiveProximityStreamDB(
 		ProximityDB<T> initialProximityDB,
 		AttributesStrategy<T> strategy
+	) {
+		this(initialProximityDB, strategy, new ReplayHistory<>());
+	}
+
+	public NaiveProximityStreamDB(
+		ProximityDB<T> initialProximityDB,
+		AttributesStrategy<T> strategy,
+		StateHistory<T> stateHistory
 	) {
 		currentProximityDb = initialProximityDB;
 		attributesStrategy = strategy;
-		operations = new ArrayList<>();
+		operations = new OperationLog<>();
+		observers = new ArrayList<>();
+		history = stateHistory;
+		commandExecutor = new CommandExecutor();
+		redoable = new ArrayList<>();
+		undoable = new int[INITIAL_UNDO_CAPACITY];
+		undoableCount = 0;
+		retainedOperations = Integer.MAX_VALUE;
+		clock = Clock.systemUTC();
+		sketchCoins = new Random();
+	}
+
+	/**
+	 * Registers an observer that is notified after every insert / delete applied to
+	 * this database. Observers are not carried over to clones or historical states.
+	 */
+	public void addObserver(UpdateObserver<T> observer) {
+		observers.add(observer);
+	}
+
+	/**
+	 * Answers averageNearby / minNearby / maxNearby queries that use a
+	 * NamedAttributeMatcher for one of the columns' attributes directly from the
+	 * columns. Items already in the database are loaded into the columns.
+	 */
+	public void useColumns(AttributeColumns<T> attributeColumns) {
+		currentProximityDb
+			.nearby(Position.with(0, 0), 0)
+			.forEach(attributeColumns::inserted);
+		columns = attributeColumns;
+		addObserver(attributeColumns);
+	}
+
+	/**
+	 * Answers nearbyWhere queries from the provided indexes when they are more selective
+	 * than the spatial range. Items already in the database are indexed.
+	 */
+	public void useIndexes(SecondaryIndexes<T> secondaryIndexes) {
+		currentProximityDb
+			.nearby(Position.with(0, 0), 0)
+			.forEach(secondaryIndexes::inserted);
+		indexes = secondaryIndexes;
+		addObserver(secondaryIndexes);
+	}
+
+	/**
+	 * Keeps the views registered with materialize() in the provided MaterializedViews up
+	 * to date. Unlike other observers, the views are carried over to clones and
+	 * historical states.
+	 */
+	public void useViews(MaterializedViews<T> materializedViews) {
+		views = materializedViews;
+		addObserver(materializedViews);
+	}
+
+	/**
+	 * Publishes every later update to subscribers on the provided executor, buffering at
+	 * most capacity events for subscribers that fall behind.
+	 */
+	public ChangePublisher<T> publishChanges(int capacity, Executor executor) {
+		changes = new ChangePublisher<>(capacity, executor, operations.size());
+		addObserver(changes);
+		return changes;
+	}
+
+	/**
+	 * Returns the publisher created by publishChanges, creating one that buffers
+	 * DEFAULT_CHANGE_BUFFER events and delivers them on the common pool if there is none.
+	 */
+	@Override
+	public ChangePublisher<T> changes() {
+		if (changes == null) {
+			publishChanges(DEFAULT_CHANGE_BUFFER, ForkJoinPool.commonPool());
+		}
+		return changes;
+	}
+
+	/**
+	 * Sets the clock that timestamps every later operation for databaseStateAt and
+	 * operationsBetween. The system UTC clock is used by default.
+	 */
+	public void useClock(Clock operationClock) {
+		clock = operationClock;
+	}
+
+	/**
+	 * Sets the source of the coin flips made by the sketches that
+	 * approxQuantilesNearby builds; seed it for repeatable results.
+	 */
+	public void useSketchCoins(Random coins) {
+		sketchCoins = coins;
+	}
+
+	/**
+	 * Keeps at least the most recent operationCount operations available to
+	 * databaseStateAtTime. Older operations are compacted automatically once twice that
+	 * many are held, so the memory used by the operation history is bounded by the
+	 * retention rather than by the lifetime of the database.
+	 */
+	public void retainOperations(int operationCount) {
+		if (operationCount < 0) {
+			throw new IllegalArgumentException("operationCount must not be negative");
+		}
+		retainedOperations = operationCount;
+		compactIfNeeded();
+	}
+
+	/**
+	 * Folds every operation before the horizon into a single base state and drops those
+	 * operations. Afterwards databaseStateAtTime(n) is only available for
+	 * n >= horizon.
+	 */
+	public void compact(int horizon) {
+		if (horizon < operations.getBaseIndex() || horizon > operations.size()) {
+			throw new IllegalArgumentException(
+				"The horizon must be between " + operations.getBaseIndex() + " and "
+					+ operations.size()
+			);
+		}
+		operations.compact(horizon, currentProximityDb);
+		history.compacted(horizon);
+
+		int dropped = 0;
+		while(dropped < undoableCount && undoable[dropped] < horizon) {
+			dropped++;
+		}
+		System.arraycopy(undoable, dropped, undoable, 0, undoableCount - dropped);
+		undoableCount -= dropped;
+	}
+
+	/**
+	 * @return the index of the earliest state available to databaseStateAtTime
+	 */
+	public int getRetentionHorizon() {
+		return operations.getBaseIndex();
 	}
 
 	@Override
 	public void insert(DataAndPosition<T> data) {
-		operations.add(new InsertCommand<>(data));
-		currentProximityDb.insert(data);
+		update(new InsertCommand<>(data));
 	}
 
 	@Override
 	public Collection<DataAndPosition<T>> delete(Position pos) {
-		operations.add(new DeleteCommand<>(pos));
-		return currentProximityDb.delete(pos);
+		return update(new DeleteCommand<>(pos));
 	}
 
 	@Override
 	public Collection<DataAndPosition<T>> delete(Position pos, int bitsOfPrecision) {
-		operations.add(new DeleteRangeCommand<>(pos, bitsOfPrecision));
-		return currentProximityDb.delete(pos, bitsOfPrecision);
+		return update(new DeleteRangeCommand<>(pos, bitsOfPrecision));
+	}
+
+	/**
+	 * Applies the commands in order as one BatchCommand. Observers are told about each
+	 * command, but the batch is recorded once: it takes a single operation index, one
+	 * history entry, one log record, and one change event.
+	 *
+	 * If a command throws, the commands before it are reverted, nothing is recorded,
+	 * and the exception is rethrown. Observers are told about the reverted items, but
+	 * standing queries cannot be: they have already seen the batch's inserts, and see
+	 * items put back by a reverted delete as new inserts.
+	 */
+	@Override
+	public Collection<DataAndPosition<T>> apply(List<UpdateCommand<T>> commands) {
+		return update(new BatchCommand<>(commands));
+	}
+
+	/**
+	 * Reverts the operation from its UndoRecord: the items it removed are inserted again
+	 * and each item it inserted is removed on its own, so the other items at its
+	 * location are never re-inserted and standing queries and windows only see the
+	 * restored items. Commands cannot name one instance, so the removal is logged as
+	 * a delete of the location followed by inserts of the other items found there;
+	 * the steps are logged as one BatchCommand, so replaying the log or the
+	 * write-ahead log reproduces the undo exactly.
+	 *
+	 * Operations before the retention horizon can no longer be undone.
+	 */
+	@Override
+	public boolean undo() {
+		if (undoableCount == 0 || undoable[undoableCount - 1] < operations.getBaseIndex()) {
+			return false;
+		}
+		int index = undoable[--undoableCount];
+		UndoRecord<T> target = operations.getUndoRecord(index);
+		BatchCommand<T> steps = new BatchCommand<>(undoSteps(target));
+		long epochMillis = clock.millis();
+		int undoIndex = operations.size();
+		observers.forEach(observer -> observer.applying(undoIndex, steps, epochMillis));
+
+		UndoRecord<T> undoRecord = new UndoRecord<>();
+		List<DataAndPosition<T>> removed = new ArrayList<>();
+		for(int step = target.size() - 1; step >= 0; step--) {
+			DataAndPosition<T> item = target.getItem(step);
+			if (!target.isInsertion(step)) {
+				commandExecutor.execute(new InsertCommand<>(item), undoRecord);
+			} else if (currentProximityDb.remove(item)) {
+				undoRecord.removed(Collections.singletonList(item));
+				removed.add(item);
+				observers.forEach(observer -> observer.removed(item));
+			}
+		}
+
+		redoable.add(operations.getCommand(index));
+		logged(steps, undoRecord, removed, epochMillis);
+		return true;
+	}
+
+	/**
+	 * Returns the commands that undo() logs for the target operation. They are worked
+	 * out on a scratch database holding only the items at the locations the operation
+	 * inserted into, so that they can be logged before the current state is changed.
+	 */
+	private List<UpdateCommand<T>> undoSteps(UndoRecord<T> target) {
+		ProximityDB<T> scratch = currentProximityDb.emptyClone();
+		Set<DataAndPosition<T>> loaded =
+			Collections.newSetFromMap(new IdentityHashMap<>());
+		for(int step = 0; step < target.size(); step++) {
+			if (target.isInsertion(step)) {
+				for(DataAndPosition<T> item : currentProximityDb.itemsAt(target.getItem(step))) {
+					if (loaded.add(item)) {
+						scratch.insert(item);
+					}
+				}
+			}
+		}
+
+		List<UpdateCommand<T>> steps = new ArrayList<>();
+		for(int step = target.size() - 1; step >= 0; step--) {
+			DataAndPosition<T> item = target.getItem(step);
+			if (!target.isInsertion(step)) {
+				steps.add(new InsertCommand<>(item));
+				scratch.insert(item);
+				continue;
+			}
+
+			Position location = Position.with(item.getLatitude(), item.getLongitude());
+			Collection<DataAndPosition<T>> atLocation = scratch.itemsAt(location);
+			if (!scratch.remove(item)) {
+				continue;
+			}
+			steps.add(new DeleteCommand<>(location));
+			boolean found = false;
+			for(DataAndPosition<T> other : atLocation) {
+				if (!found && other == item) {
+					found = true;
+				} else {
+					steps.add(new InsertCommand<>(other));
+				}
+			}
+		}
+		return steps;
+	}
+
+	@Override
+	public boolean redo() {
+		if (redoable.isEmpty()) {
+			return false;
+		}
+		record(redoable.remove(redoable.size() - 1), clock.millis());
+		pushUndoable(operations.size() - 1);
+		return true;
 	}
 
 	@Override
@@ -56,11 +341,21 @@ public class NaiveProximityStreamDB<T> implements ProximityStreamDB<T> {
 		return currentProximityDb.nearby(pos, bitsOfPrecision);
 	}
 
+	@Override
+	public Collection<DataAndPosition<T>> itemsAt(Position pos) {
+		return currentProximityDb.itemsAt(pos);
+	}
+
 	@Override
 	public ProximityDB<T> emptyClone() {
-		return new NaiveProximityStreamDB<>(
-			currentProximityDb.emptyClone(), attributesStrategy
+		ProximityDB<T> emptyDb = currentProximityDb.emptyClone();
+		NaiveProximityStreamDB<T> clone = new NaiveProximityStreamDB<>(
+			emptyDb, attributesStrategy, history.startingFrom(emptyDb)
 		);
+		if (views != null) {
+			clone.useViews(views.emptied());
+		}
+		return clone;
 	}
 
 	@Override
@@ -68,15 +363,75 @@ public class NaiveProximityStreamDB<T> implements ProximityStreamDB<T> {
 		if (n > operations.size()) {
 			n = operations.size();
 		}
+		if (n < operations.getBaseIndex()) {
+			throw new IllegalArgumentException(
+				"The state at " + n + " was compacted; the earliest available state is "
+					+ operations.getBaseIndex()
+			);
+		}
 
-		ProximityDB<T> proximityDB = operations
-			.subList(0, n)
-			.stream()
-			.reduce(
-				currentProximityDb.emptyClone(), (accumDb, command) -> command
-					.execute(accumDb), (oldDb, newDb) -> newDb
+		ProximityDB<T> proximityDB = history.stateAt(n, operations, currentProximityDb);
+		NaiveProximityStreamDB<T> past = new NaiveProximityStreamDB<>(
+			proximityDB, attributesStrategy, history.startingFrom(proximityDB)
+		);
+		if (views != null) {
+			past.useViews(views.revertedBy(changesBetween(n, operations.size())));
+		}
+		return past;
+	}
+
+	/**
+	 * Finds the operation count by binary search over the operation timestamps, then
+	 * reconstructs the state like databaseStateAtTime().
+	 */
+	@Override
+	public ProximityStreamDB<T> databaseStateAt(Instant time) {
+		return databaseStateAtTime(operations.countAt(time.toEpochMilli()));
+	}
+
+	@Override
+	public List<UpdateCommand<T>> operationsBetween(Instant from, Instant to) {
+		int start = operations.countAt(from.toEpochMilli() - 1);
+		int end = Math.max(start, operations.countAt(to.toEpochMilli() - 1));
+		return List.copyOf(operations.between(start, end));
+	}
+
+	/**
+	 * Computed from the undo records of the operations from m to n, so the cost depends
+	 * on the number of items they touched rather than on the size of the database.
+	 */
+	@Override
+	public ChangeSet<T> changesBetween(int m, int n) {
+		if (m < operations.getBaseIndex() || m > n || n > operations.size()) {
+			throw new IllegalArgumentException(
+				"Changes are available between " + operations.getBaseIndex() + " and "
+					+ operations.size()
 			);
-		return new NaiveProximityStreamDB<>(proximityDB, attributesStrategy);
+		}
+		return ChangeSet.of(operations.undoRecordsBetween(m, n));
+	}
+
+	/**
+	 * Must be called from the thread that applies updates. The returned snapshot can be
+	 * handed to and queried from any other thread.
+	 */
+	@Override
+	public DatabaseSnapshot<T> snapshot() {
+		int n = operations.size();
+		return new DatabaseSnapshot<>(
+			n, attributesStrategy, operations.view(currentProximityDb), frozenAt(n)
+		);
+	}
+
+	/**
+	 * A persistent database is frozen by its O(1) copy, whatever the history keeps, so
+	 * that the snapshot's first query does not replay the log.
+	 */
+	private Supplier<ProximityDB<T>> frozenAt(int n) {
+		if (currentProximityDb instanceof PersistentProximityDB) {
+			return ((PersistentProximityDB<T>)currentProximityDb).copy()::copy;
+		}
+		return history.frozenAt(n, operations, currentProximityDb);
 	}
 
 	@Override
@@ -89,11 +444,82 @@ public class NaiveProximityStreamDB<T> implements ProximityStreamDB<T> {
 			.nearby(pos, bitsOfPrecision)
 			.stream()
 			.flatMap(
-				dataPos -> attributesStrategy
-					.getAttributes(dataPos.getData())
-					.stream()
-					.filter(attribute -> matcher.matches((attribute)))
-					.map(attribute -> (V)attribute.getValue())
+				dataPos -> attributesStrategy.matchingValues(dataPos.getData(), matcher)
+			);
+	}
+
+	@Override
+	public NavigableMap<String, List<DataAndPosition<T>>> nearbyByCell(
+		Position pos,
+		int bitsOfPrecision,
+		int cellBits
+	) {
+		return currentProximityDb.nearbyByCell(pos, bitsOfPrecision, cellBits);
+	}
+
+	/**
+	 * The query is registered with the current state, so it sees every item inserted by
+	 * an update, undo, or redo, but not the items inserted while reconstructing a past
+	 * state.
+	 */
+	@Override
+	public StandingQuery registerStandingQuery(
+		Position pos,
+		int bitsOfPrecision,
+		Consumer<DataAndPosition<T>> callback,
+		Executor executor
+	) {
+		return currentProximityDb
+			.registerStandingQuery(pos, bitsOfPrecision, callback, executor);
+	}
+
+	/**
+	 * Reads the region once: from the columns, whose rows are in location-code order,
+	 * when the matcher names a column, and otherwise from nearbyByCell. In parallel mode
+	 * the cells are summarized on the common pool, so the AttributesStrategy must be
+	 * thread-safe.
+	 */
+	@Override
+	public <V extends Double> NavigableMap<String, CellSummary> aggregateByCell(
+		AttributeMatcher<V> matcher,
+		Position pos,
+		int regionBits,
+		int cellBits,
+		boolean parallel
+	) {
+		if (cellBits < regionBits) {
+			throw new IllegalArgumentException("cellBits must be at least regionBits");
+		}
+		if (isColumnar(matcher) && cellBits <= columns.getResolution()) {
+			return columns.aggregateByCell(columnName(matcher), pos, regionBits, cellBits);
+		}
+
+		Stream<Map.Entry<String, List<DataAndPosition<T>>>> cells = currentProximityDb
+			.nearbyByCell(pos, regionBits, cellBits)
+			.entrySet()
+			.stream();
+		if (parallel) {
+			cells = cells.parallel();
+		}
+		return cells
+			.map(cell -> {
+				CellSummary summary = new CellSummary(cell.getKey());
+				cell
+					.getValue()
+					.forEach(
+						dataPos -> attributesStrategy
+							.matchingValues(dataPos.getData(), matcher)
+							.forEach(value -> summary.add(value))
+					);
+				return summary;
+			})
+			.filter(summary -> summary.getCount() > 0)
+			.collect(
+				Collectors
+					.toMap(
+						CellSummary::getLocationCode, summary -> summary,
+						CellSummary::merge, TreeMap::new
+					)
 			);
 	}
 
@@ -103,6 +529,9 @@ public class NaiveProximityStreamDB<T> implements ProximityStreamDB<T> {
 		Position pos,
 		int bitsOfPrecision
 	) {
+		if (isColumnar(matcher)) {
+			return columns.average(columnName(matcher), pos, bitsOfPrecision);
+		}
 		return streamNearby(matcher, pos, bitsOfPrecision).mapToDouble(x -> x).average();
 	}
 
@@ -112,6 +541,9 @@ public class NaiveProximityStreamDB<T> implements ProximityStreamDB<T> {
 		Position pos,
 		int bitsOfPrecision
 	) {
+		if (isColumnar(matcher)) {
+			return columns.min(columnName(matcher), pos, bitsOfPrecision);
+		}
 		return streamNearby(matcher, pos, bitsOfPrecision)
 			.mapToDouble(x -> x)
 			.min();
@@ -123,6 +555,9 @@ public class NaiveProximityStreamDB<T> implements ProximityStreamDB<T> {
 		Position pos,
 		int bitsOfPrecision
 	) {
+		if (isColumnar(matcher)) {
+			return columns.max(columnName(matcher), pos, bitsOfPrecision);
+		}
 		return streamNearby(matcher, pos, bitsOfPrecision)
 			.mapToDouble(x -> x)
 			.max();
@@ -143,4 +578,421 @@ public class NaiveProximityStreamDB<T> implements ProximityStreamDB<T> {
 					)
 			);
 	}
+
+	/**
+	 * Selects the value with quickselect from the matching values, which are read from
+	 * the columns when the matcher names one.
+	 */
+	@Override
+	public <V extends Double> OptionalDouble percentileNearby(
+		AttributeMatcher<V> matcher,
+		Position pos,
+		int bitsOfPrecision,
+		double p
+	) {
+		if (p < 0 || p > 100) {
+			throw new IllegalArgumentException("p must be between 0 and 100");
+		}
+		double[] values = isColumnar(matcher)
+			? columns.values(columnName(matcher), pos, bitsOfPrecision)
+			: streamNearby(matcher, pos, bitsOfPrecision)
+				.mapToDouble(x -> x)
+				.filter(x -> !Double.isNaN(x))
+				.toArray();
+		if (values.length == 0) {
+			return OptionalDouble.empty();
+		}
+		int rank = Math.max(0, (int)Math.ceil(p / 100 * values.length) - 1);
+		return OptionalDouble.of(Selection.select(values, rank));
+	}
+
+	/**
+	 * Keeps the k largest values seen so far in a min-heap, so each value costs
+	 * O(log k) and only the k results are ever sorted.
+	 */
+	@Override
+	public <V> List<V> topKNearby(
+		AttributeMatcher<V> matcher,
+		Position pos,
+		int bitsOfPrecision,
+		int k,
+		Comparator<? super V> comparator
+	) {
+		if (k <= 0) {
+			return Collections.emptyList();
+		}
+		PriorityQueue<V> largest = new PriorityQueue<>(k + 1, comparator);
+		streamNearby(matcher, pos, bitsOfPrecision).forEach(value -> {
+			if (largest.size() < k) {
+				largest.add(value);
+			} else if (comparator.compare(value, largest.peek()) > 0) {
+				largest.poll();
+				largest.add(value);
+			}
+		});
+		List<V> result = new ArrayList<>(largest);
+		result.sort(comparator.reversed());
+		return result;
+	}
+
+	/**
+	 * The view is loaded from the items currently near the position once; after that it
+	 * is updated by every insert / delete, including those applied by undo / redo.
+	 */
+	@Override
+	public <V extends Double> MaterializedAggregate<T> materialize(
+		String viewId,
+		AttributeMatcher<V> matcher,
+		Position pos,
+		int bitsOfPrecision
+	) {
+		if (views == null) {
+			throw new UnsupportedOperationException(
+				"The database was not created with materialized views"
+			);
+		}
+		return views
+			.register(
+				viewId, matcher, pos, bitsOfPrecision,
+				currentProximityDb.nearby(pos, bitsOfPrecision)
+			);
+	}
+
+	@Override
+	public Optional<MaterializedAggregate<T>> materialized(
+		String viewId,
+		Position pos,
+		int bitsOfPrecision
+	) {
+		return views == null ? Optional.empty() : views.get(viewId, pos, bitsOfPrecision);
+	}
+
+	/**
+	 * Operation i is tick i. The window is fed by a standing query on the current state
+	 * that runs on the writing thread, so it sees the items inserted by every update,
+	 * undo, or redo.
+	 */
+	@Override
+	public <V extends Double> WindowedAggregate<T> windowNearby(
+		AttributeMatcher<V> matcher,
+		Position pos,
+		int bitsOfPrecision,
+		int operationCount
+	) {
+		WindowedAggregate<T> window = new WindowedAggregate<>(
+			matcher, attributesStrategy, operationCount, () -> operations.size() - 1
+		);
+		window
+			.listenTo(
+				currentProximityDb
+					.registerStandingQuery(
+						pos, bitsOfPrecision, data -> window.added(data, operations.size()),
+						Runnable::run
+					)
+			);
+		return window;
+	}
+
+	/**
+	 * Ticks are milliseconds of the clock that timestamps operations.
+	 */
+	@Override
+	public <V extends Double> WindowedAggregate<T> windowNearby(
+		AttributeMatcher<V> matcher,
+		Position pos,
+		int bitsOfPrecision,
+		Duration duration
+	) {
+		WindowedAggregate<T> window = new WindowedAggregate<>(
+			matcher, attributesStrategy, duration.toMillis(), () -> clock.millis()
+		);
+		window
+			.listenTo(
+				currentProximityDb
+					.registerStandingQuery(
+						pos, bitsOfPrecision, data -> window.added(data, clock.millis()),
+						Runnable::run
+					)
+			);
+		return window;
+	}
+
+	@Override
+	public <V> HyperLogLog approxDistinctNearby(
+		AttributeMatcher<V> matcher,
+		Position pos,
+		int bitsOfPrecision,
+		double relativeError
+	) {
+		return streamNearby(matcher, pos, bitsOfPrecision)
+			.collect(
+				() -> HyperLogLog.withRelativeError(relativeError),
+				HyperLogLog::add,
+				HyperLogLog::merge
+			);
+	}
+
+	@Override
+	public <V extends Double> KllSketch approxQuantilesNearby(
+		AttributeMatcher<V> matcher,
+		Position pos,
+		int bitsOfPrecision,
+		double rankError
+	) {
+		return streamNearby(matcher, pos, bitsOfPrecision)
+			.collect(
+				() -> KllSketch.withRankError(rankError, sketchCoins),
+				KllSketch::add,
+				KllSketch::merge
+			);
+	}
+
+	@Override
+	public Stream<DataAndPosition<T>> nearbyMatching(
+		Position pos,
+		int bitsOfPrecision,
+		Predicate<Collection<Attribute>> predicate
+	) {
+		return currentProximityDb
+			.nearbyStream(pos, bitsOfPrecision)
+			.filter(
+				dataPos -> predicate.test(attributesStrategy.getAttributes(dataPos.getData()))
+			);
+	}
+
+	@Override
+	public Stream<DataAndPosition<T>> nearbyMatchingAll(
+		Position pos,
+		int bitsOfPrecision,
+		AttributeMatcher<?>... matchers
+	) {
+		return currentProximityDb
+			.nearbyStream(pos, bitsOfPrecision)
+			.filter(dataPos -> matchesAll(dataPos.getData(), matchers));
+	}
+
+	/**
+	 * Extracts all of the item's attributes at most once, and only if one of the
+	 * matchers is not a NamedAttributeMatcher.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private boolean matchesAll(T data, AttributeMatcher<?>[] matchers) {
+		Collection<Attribute> attributes = null;
+		for(AttributeMatcher matcher : matchers) {
+			boolean matched;
+			if (matcher instanceof NamedAttributeMatcher) {
+				String name = ((NamedAttributeMatcher<?>)matcher).getAttributeName();
+				Attribute attribute = attributesStrategy.getAttribute(data, name);
+				matched = attribute != null && matcher.matches(attribute);
+			} else {
+				if (attributes == null) {
+					attributes = attributesStrategy.getAttributes(data);
+				}
+				matched = attributes.stream().anyMatch(matcher::matches);
+			}
+			if (!matched) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Collection<DataAndPosition<T>> nearbyWhere(
+		Position pos,
+		int bitsOfPrecision,
+		String attributeName,
+		ValuePredicate<?> predicate
+	) {
+		Supplier<Collection<DataAndPosition<T>>> spatialScan = () -> currentProximityDb
+			.nearby(pos, bitsOfPrecision)
+			.stream()
+			.filter(dataPos -> {
+				Attribute attribute =
+					attributesStrategy.getAttribute(dataPos.getData(), attributeName);
+				return attribute != null && predicate.test(attribute.getValue());
+			})
+			.collect(Collectors.toList());
+
+		if (indexes == null || !indexes.hasIndex(attributeName)) {
+			return spatialScan.get();
+		}
+		return indexes
+			.nearbyWhere(pos, bitsOfPrecision, attributeName, predicate, spatialScan);
+	}
+
+	/**
+	 * Records an update made through the public API, which can be undone and discards
+	 * whatever could be redone.
+	 */
+	private Collection<DataAndPosition<T>> update(UpdateCommand<T> command) {
+		redoable.clear();
+		Collection<DataAndPosition<T>> removed = record(command, clock.millis());
+		pushUndoable(operations.size() - 1);
+		return removed;
+	}
+
+	/**
+	 * Applies a command read back from a log as the next operation, timestamped with
+	 * the time at which it was originally applied rather than with the clock.
+	 *
+	 * The log does not tell updates apart from undos and redos, so recovered
+	 * operations are not pushed onto the undo stack: after recovery there is nothing
+	 * to undo or redo until the next update.
+	 *
+	 * A command that throws is skipped: it was logged before it was first executed,
+	 * failed then in the same way, and left the state unchanged.
+	 */
+	void recovered(UpdateCommand<T> command, long epochMillis) {
+		try {
+			record(command, epochMillis);
+		} catch(RuntimeException failedWhenLogged) {
+			// Rolled back when it was first applied, and again now
+		}
+	}
+
+	private void pushUndoable(int index) {
+		if (undoableCount == undoable.length) {
+			undoable = Arrays.copyOf(undoable, undoableCount * 2);
+		}
+		undoable[undoableCount++] = index;
+	}
+
+	/**
+	 * Tells the observers that the command is about to be applied, then executes it
+	 * against the current state and records it as the next operation.
+	 *
+	 * @Return the items removed by the command
+	 */
+	private Collection<DataAndPosition<T>> record(
+		UpdateCommand<T> command,
+		long epochMillis
+	) {
+		int index = operations.size();
+		observers.forEach(observer -> observer.applying(index, command, epochMillis));
+		UndoRecord<T> undoRecord = new UndoRecord<>();
+		return logged(
+			command, undoRecord, commandExecutor.execute(command, undoRecord), epochMillis
+		);
+	}
+
+	/**
+	 * Records a command that has already been executed against the current state as the
+	 * next operation.
+	 */
+	private Collection<DataAndPosition<T>> logged(
+		UpdateCommand<T> command,
+		UndoRecord<T> undoRecord,
+		Collection<DataAndPosition<T>> removed,
+		long epochMillis
+	) {
+		operations.append(command, undoRecord, epochMillis);
+		history.recorded(operations.size(), currentProximityDb);
+
+		int index = operations.size() - 1;
+		long timestamp = operations.getTimestamp(index);
+		observers
+			.forEach(observer -> observer.applied(index, command, removed, timestamp));
+		compactIfNeeded();
+		return removed;
+	}
+
+	private void compactIfNeeded() {
+		if (operations.getRetainedCount() / 2 >= retainedOperations
+			&& operations.getRetainedCount() > 0) {
+			compact(operations.size() - retainedOperations);
+		}
+	}
+
+	/**
+	 * Applies a command to the current state, notifies the observers of each insert /
+	 * delete it performs, and adds each of them to an UndoRecord.
+	 */
+	private class CommandExecutor
+		implements UpdateCommandVisitor<T, Collection<DataAndPosition<T>>> {
+		private UndoRecord<T> undoRecord;
+
+		private Collection<DataAndPosition<T>> execute(
+			UpdateCommand<T> command,
+			UndoRecord<T> record
+		) {
+			undoRecord = record;
+			return command.accept(this);
+		}
+
+		@Override
+		public Collection<DataAndPosition<T>> visitInsert(InsertCommand<T> command) {
+			DataAndPosition<T> data = command.getDataAndPosition();
+			currentProximityDb.insert(data);
+			undoRecord.inserted(data);
+			observers.forEach(observer -> observer.inserted(data));
+			return Collections.emptyList();
+		}
+
+		@Override
+		public Collection<DataAndPosition<T>> visitDelete(DeleteCommand<T> command) {
+			Position pos = command.getPosition();
+			Collection<DataAndPosition<T>> removed = currentProximityDb.delete(pos);
+			undoRecord.removed(removed);
+			observers.forEach(observer -> observer.deleted(pos, removed));
+			return removed;
+		}
+
+		@Override
+		public Collection<DataAndPosition<T>> visitDeleteRange(
+			DeleteRangeCommand<T> command
+		) {
+			Position pos = command.getPosition();
+			int bits = command.getBitsOfPrecision();
+			Collection<DataAndPosition<T>> removed = currentProximityDb.delete(pos, bits);
+			undoRecord.removed(removed);
+			observers.forEach(observer -> observer.deletedRange(pos, bits, removed));
+			return removed;
+		}
+
+		/**
+		 * If a command throws, the commands before it are reverted from the undo
+		 * record before the exception is passed on.
+		 */
+		@Override
+		public Collection<DataAndPosition<T>> visitBatch(BatchCommand<T> command) {
+			int appliedSteps = undoRecord.size();
+			List<DataAndPosition<T>> removed = new ArrayList<>();
+			try {
+				command.getCommands().forEach(c -> removed.addAll(c.accept(this)));
+			} catch(RuntimeException failure) {
+				rollBack(appliedSteps);
+				throw failure;
+			}
+			return removed;
+		}
+
+		/**
+		 * Reverts every step in the undo record after the first steps, notifying the
+		 * observers of each item that is removed or inserted again.
+		 */
+		private void rollBack(int steps) {
+			for(int step = undoRecord.size() - 1; step >= steps; step--) {
+				DataAndPosition<T> item = undoRecord.getItem(step);
+				if (undoRecord.isInsertion(step)) {
+					currentProximityDb.remove(item);
+					observers.forEach(observer -> observer.removed(item));
+				} else {
+					currentProximityDb.insert(item);
+					observers.forEach(observer -> observer.inserted(item));
+				}
+			}
+			undoRecord.truncate(steps);
+		}
+	}
+
+	private boolean isColumnar(AttributeMatcher<?> matcher) {
+		return columns != null
+			&& matcher instanceof NamedAttributeMatcher<?>
+			&& columns.hasColumn(columnName(matcher));
+	}
+
+	private String columnName(AttributeMatcher<?> matcher) {
+		return ((NamedAttributeMatcher<?>)matcher).getAttributeName();
+	}
 }
@@ -0,0 +1,26 @@
+package edu.vanderbilt.cs.live7;
+
+/**
+ * An AttributeMatcher that matches attributes by name. Unlike an arbitrary lambda, the
+ * name is visible to the database, which lets it answer queries from structures keyed
+ * by attribute name (e.g., AttributeColumns) instead of extracting every attribute of
+ * every item.
+ *
+ * @param <V>
+ */
+public class NamedAttributeMatcher<V> implements AttributeMatcher<V> {
+    private final String attributeName;
+
+    public NamedAttributeMatcher(String name) {
+        attributeName = name;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    @Override
+    public boolean matches(Attribute<V> attr) {
+        return attributeName.equals(attr.getName());
+    }
+}
@@ -0,0 +1,386 @@
+package edu.vanderbilt.cs.live7;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * The operations applied to a NaiveProximityStreamDB, indexed from the first operation
+ * ever applied.
+ *
+ * compact(horizon) folds every operation before the horizon into a base state and
+ * drops those commands, so only the state at the horizon and the operations after it
+ * are retained. Operations keep their original indices after compaction; the states
+ * before getBaseIndex() can no longer be reconstructed.
+ *
+ * Until the first compaction the base state is the database's baseClone(): empty,
+ * unless the database was opened over existing data.
+ *
+ * Each retained command is kept with the UndoRecord captured when it was executed, so
+ * a state close to the current one can also be reached by undoing the tail of the log
+ * in a copy of the current state (see undoTo()).
+ *
+ * The log also keeps running totals of the items that the retained operations inserted
+ * or removed, so that StateHistories can estimate how much work replaying or undoing a
+ * range of operations is (see itemStepsBetween()).
+ *
+ * Each command also carries the time, in milliseconds since the epoch, at which it was
+ * appended. Timestamps never decrease along the log, so the operations up to a point
+ * in time are found by binary search (see countAt()).
+ *
+ * The log has a single writer. view() captures the log as it is in O(1); the view can
+ * be replayed from any thread while the writer keeps appending. Appends only fill
+ * slots past the end of every existing view, and growing or compacting the log
+ * allocates a new array and base state instead of modifying the ones that views hold.
+ *
+ * @param <T>
+ */
+public class OperationLog<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private UpdateCommand<T>[] commands;
+    private UndoRecord<T>[] undoRecords;
+    private long[] timestamps;
+    private long[] stepTotals;
+    private long[] netTotals;
+    private int count;
+    private int baseIndex;
+    private long baseTimestamp;
+    private ProximityDB<T> baseState;
+
+    public OperationLog() {
+        commands = newArray(INITIAL_CAPACITY);
+        undoRecords = newUndoArray(INITIAL_CAPACITY);
+        timestamps = new long[INITIAL_CAPACITY];
+        stepTotals = new long[INITIAL_CAPACITY];
+        netTotals = new long[INITIAL_CAPACITY];
+        count = 0;
+        baseIndex = 0;
+        baseTimestamp = Long.MIN_VALUE;
+        baseState = null;
+    }
+
+    /**
+     * @param epochMillis - the time the command was applied; a time earlier than that of
+     *            the previous command is recorded as the previous command's time
+     */
+    public void append(
+        UpdateCommand<T> command,
+        UndoRecord<T> undoRecord,
+        long epochMillis
+    ) {
+        if (count == commands.length) {
+            commands = Arrays.copyOf(commands, count * 2);
+            undoRecords = Arrays.copyOf(undoRecords, count * 2);
+            timestamps = Arrays.copyOf(timestamps, count * 2);
+            stepTotals = Arrays.copyOf(stepTotals, count * 2);
+            netTotals = Arrays.copyOf(netTotals, count * 2);
+        }
+        commands[count] = command;
+        undoRecords[count] = undoRecord;
+        timestamps[count] =
+            Math.max(epochMillis, count == 0 ? baseTimestamp : timestamps[count - 1]);
+        stepTotals[count] = total(stepTotals, count) + undoRecord.size();
+        netTotals[count] = total(netTotals, count) + undoRecord.getNetInsertions();
+        count++;
+    }
+
+    /**
+     * @return the number of operations applied, including compacted operations
+     */
+    public int size() {
+        return baseIndex + count;
+    }
+
+    /**
+     * @return the index of the earliest state that can be reconstructed
+     */
+    public int getBaseIndex() {
+        return baseIndex;
+    }
+
+    /**
+     * @return the number of commands held in memory
+     */
+    public int getRetainedCount() {
+        return count;
+    }
+
+    /**
+     * Returns the commands from index from (inclusive) to index to (exclusive).
+     *
+     * @Assume getBaseIndex() <= from <= to <= size()
+     */
+    public List<UpdateCommand<T>> between(int from, int to) {
+        return Arrays.asList(commands).subList(from - baseIndex, to - baseIndex);
+    }
+
+    /**
+     * Returns the undo records of the commands from index from (inclusive) to index to
+     * (exclusive).
+     *
+     * @Assume getBaseIndex() <= from <= to <= size()
+     */
+    public List<UndoRecord<T>> undoRecordsBetween(int from, int to) {
+        return Arrays.asList(undoRecords).subList(from - baseIndex, to - baseIndex);
+    }
+
+    /**
+     * @return the number of items inserted or removed by the operations from index from
+     *         (inclusive) to index to (exclusive)
+     * @Assume getBaseIndex() <= from <= to <= size()
+     */
+    public long itemStepsBetween(int from, int to) {
+        return total(stepTotals, to - baseIndex) - total(stepTotals, from - baseIndex);
+    }
+
+    /**
+     * @return the number of items in the current state minus the number in the base
+     *         state
+     */
+    public long getItemsSinceBase() {
+        return total(netTotals, count);
+    }
+
+    /**
+     * @Assume getBaseIndex() <= index < size()
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index - baseIndex];
+    }
+
+    /**
+     * @return the number of operations applied at or before the time
+     * @throws IllegalArgumentException if operations after the time were compacted
+     */
+    public int countAt(long epochMillis) {
+        return countAt(epochMillis, timestamps, count, baseIndex, baseTimestamp);
+    }
+
+    /**
+     * @Assume getBaseIndex() <= index < size()
+     */
+    public UpdateCommand<T> getCommand(int index) {
+        return commands[index - baseIndex];
+    }
+
+    /**
+     * @Assume getBaseIndex() <= index < size()
+     */
+    public UndoRecord<T> getUndoRecord(int index) {
+        return undoRecords[index - baseIndex];
+    }
+
+    /**
+     * Turns state, which must hold the current state, into the state after the first n
+     * operations by undoing the operations from the last one back to n.
+     *
+     * @Assume getBaseIndex() <= n <= size()
+     */
+    public ProximityDB<T> undoTo(int n, ProximityDB<T> state) {
+        for(int index = size() - 1; index >= n; index--) {
+            getUndoRecord(index).undo(state);
+        }
+        return state;
+    }
+
+    /**
+     * Returns a new database holding the state after the first n operations, rebuilt by
+     * replaying the retained commands into a copy of the base state.
+     *
+     * @param current - the current state, used to create the base state if the log has
+     *            never been compacted
+     * @Assume getBaseIndex() <= n <= size()
+     */
+    public ProximityDB<T> replayTo(int n, ProximityDB<T> current) {
+        return view(current).replayTo(n);
+    }
+
+    /**
+     * Captures the log as it is now without copying it.
+     *
+     * @param current - the current state, used to create the base state if the log has
+     *            never been compacted
+     */
+    public View<T> view(ProximityDB<T> current) {
+        if (baseState == null) {
+            return new View<>(
+                commands, undoRecords, timestamps, count, baseIndex, baseTimestamp,
+                current.baseClone(), true
+            );
+        }
+        return new View<>(
+            commands, undoRecords, timestamps, count, baseIndex, baseTimestamp,
+            baseState, false
+        );
+    }
+
+    /**
+     * Folds the operations before the horizon into a new base state and drops them.
+     *
+     * @Assume getBaseIndex() <= horizon <= size()
+     */
+    public void compact(int horizon, ProximityDB<T> current) {
+        ProximityDB<T> newBase = baseState == null ? current.baseClone() : baseState.copy();
+        baseState = ReplayHistory.replay(between(baseIndex, horizon), newBase);
+
+        int retained = size() - horizon;
+        UpdateCommand<T>[] remaining = newArray(Math.max(INITIAL_CAPACITY, retained * 2));
+        UndoRecord<T>[] remainingUndo = newUndoArray(remaining.length);
+        long[] remainingTimestamps = new long[remaining.length];
+        long[] remainingSteps = new long[remaining.length];
+        long[] remainingNet = new long[remaining.length];
+        System.arraycopy(commands, horizon - baseIndex, remaining, 0, retained);
+        System.arraycopy(undoRecords, horizon - baseIndex, remainingUndo, 0, retained);
+        System
+            .arraycopy(timestamps, horizon - baseIndex, remainingTimestamps, 0, retained);
+        long compactedSteps = total(stepTotals, horizon - baseIndex);
+        long compactedNet = total(netTotals, horizon - baseIndex);
+        for(int i = 0; i < retained; i++) {
+            remainingSteps[i] = stepTotals[horizon - baseIndex + i] - compactedSteps;
+            remainingNet[i] = netTotals[horizon - baseIndex + i] - compactedNet;
+        }
+        if (horizon > baseIndex) {
+            baseTimestamp = timestamps[horizon - baseIndex - 1];
+        }
+        commands = remaining;
+        undoRecords = remainingUndo;
+        timestamps = remainingTimestamps;
+        stepTotals = remainingSteps;
+        netTotals = remainingNet;
+        count = retained;
+        baseIndex = horizon;
+    }
+
+    /**
+     * @return the sum of the first n values that totals accumulates
+     */
+    private static long total(long[] totals, int n) {
+        return n == 0 ? 0 : totals[n - 1];
+    }
+
+    private static int countAt(
+        long epochMillis,
+        long[] timestamps,
+        int count,
+        int baseIndex,
+        long baseTimestamp
+    ) {
+        if (baseIndex > 0 && epochMillis < baseTimestamp) {
+            throw new IllegalArgumentException(
+                "Operations after " + Instant.ofEpochMilli(epochMillis)
+                    + " were compacted; the earliest available time is "
+                    + Instant.ofEpochMilli(baseTimestamp)
+            );
+        }
+        int low = 0;
+        int high = count;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= epochMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return baseIndex + low;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> UpdateCommand<T>[] newArray(int capacity) {
+        return (UpdateCommand<T>[])new UpdateCommand<?>[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> UndoRecord<T>[] newUndoArray(int capacity) {
+        return (UndoRecord<T>[])new UndoRecord<?>[capacity];
+    }
+
+    /**
+     * An immutable capture of an OperationLog.
+     */
+    public static final class View<T> {
+        private final UpdateCommand<T>[] commands;
+        private final UndoRecord<T>[] undoRecords;
+        private final long[] timestamps;
+        private final int count;
+        private final int baseIndex;
+        private final long baseTimestamp;
+        private final ProximityDB<T> baseState;
+        private final boolean initialBase;
+
+        private View(
+            UpdateCommand<T>[] commands,
+            UndoRecord<T>[] undoRecords,
+            long[] timestamps,
+            int count,
+            int baseIndex,
+            long baseTimestamp,
+            ProximityDB<T> baseState,
+            boolean initialBase
+        ) {
+            this.commands = commands;
+            this.undoRecords = undoRecords;
+            this.timestamps = timestamps;
+            this.count = count;
+            this.baseIndex = baseIndex;
+            this.baseTimestamp = baseTimestamp;
+            this.baseState = baseState;
+            this.initialBase = initialBase;
+        }
+
+        /**
+         * @return the number of operations applied when the view was captured
+         */
+        public int size() {
+            return baseIndex + count;
+        }
+
+        public int getBaseIndex() {
+            return baseIndex;
+        }
+
+        /**
+         * @Assume getBaseIndex() <= from <= to <= size()
+         */
+        public List<UpdateCommand<T>> between(int from, int to) {
+            return Arrays.asList(commands).subList(from - baseIndex, to - baseIndex);
+        }
+
+        /**
+         * @return the number of operations applied at or before the time
+         * @throws IllegalArgumentException if operations after the time were compacted
+         */
+        public int countAt(long epochMillis) {
+            return OperationLog
+                .countAt(epochMillis, timestamps, count, baseIndex, baseTimestamp);
+        }
+
+        /**
+         * @Assume getBaseIndex() <= from <= to <= size()
+         */
+        public List<UndoRecord<T>> undoRecordsBetween(int from, int to) {
+            return Arrays.asList(undoRecords).subList(from - baseIndex, to - baseIndex);
+        }
+
+        /**
+         * @return the state at getBaseIndex(), which must not be modified
+         */
+        public ProximityDB<T> getBaseState() {
+            return baseState;
+        }
+
+        /**
+         * Returns a new database holding the state after the first n operations.
+         *
+         * @Assume getBaseIndex() <= n <= size()
+         */
+        public ProximityDB<T> replayTo(int n) {
+            ProximityDB<T> initialState =
+                initialBase ? baseState.baseClone() : baseState.copy();
+            return ReplayHistory.replay(between(baseIndex, n), initialState);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live6.ProximityDB;
+import edu.vanderbilt.cs.live6.ProximityDBFactory;
+import edu.vanderbilt.cs.live6.ShardedProximityDB;
+
+/**
+ * A ReplayHistory that replays the operation log on several threads.
+ *
+ * Commands at locations with different leading partitionBits geohash bits commute, so
+ * the log is split into one sub-log per prefix and each sub-log is replayed into its
+ * own shard of a ShardedProximityDB, in parallel. Every command goes to the sub-log of
+ * the shard it touches. A range delete coarser than partitionBits is copied into the
+ * sub-log of every shard that its prefix covers, at the same position in each, so it
+ * still separates the commands before it from the ones after it in every one of those
+ * shards without having to synchronize the shards. Batches are split into their
+ * commands.
+ *
+ * Reconstructed states are ShardedProximityDBs whose shards are in-memory databases
+ * with the provided resolution, whatever kind of database the base state is. The base
+ * state's items are inserted into their shards before the sub-logs are replayed.
+ *
+ * @param <T>
+ */
+public class ParallelReplayHistory<T> extends ReplayHistory<T> {
+    private final GeoHashFactory geoHashFactory;
+    private final int resolution;
+    private final int partitionBits;
+    private final ProximityDB<T> shardTemplate;
+
+    public ParallelReplayHistory(GeoHashFactory hashFactory, int bits, int partitions) {
+        geoHashFactory = hashFactory;
+        resolution = bits;
+        partitionBits = partitions;
+        shardTemplate = new ProximityDBFactory().create(hashFactory, bits);
+    }
+
+    @Override
+    public Supplier<ProximityDB<T>> frozenAt(
+        int n,
+        OperationLog<T> operations,
+        ProximityDB<T> current
+    ) {
+        OperationLog.View<T> view = operations.view(current);
+        return () -> replaySharded(
+            view.between(view.getBaseIndex(), n), view.getBaseState()
+        );
+    }
+
+    @Override
+    public StateHistory<T> startingFrom(ProximityDB<T> initialState) {
+        return new ParallelReplayHistory<>(geoHashFactory, resolution, partitionBits);
+    }
+
+    /**
+     * Returns a new database holding baseState with the commands applied. baseState is
+     * only read.
+     */
+    public ShardedProximityDB<T> replaySharded(
+        List<UpdateCommand<T>> commands,
+        ProximityDB<T> baseState
+    ) {
+        ShardedProximityDB<T> sharded =
+            new ShardedProximityDB<>(geoHashFactory, partitionBits, shardTemplate);
+
+        List<List<UpdateCommand<T>>> partitions = new ArrayList<>();
+        for(int i = 0; i < sharded.getShardCount(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        Partitioner partitioner = new Partitioner(sharded, partitions);
+        commands.forEach(command -> command.accept(partitioner));
+
+        Map<Integer, List<DataAndPosition<T>>> baseItems = baseState
+            .nearby(Position.with(0, 0), 0)
+            .parallelStream()
+            .collect(Collectors.groupingByConcurrent(sharded::shardIndex));
+
+        IntStream
+            .range(0, sharded.getShardCount())
+            .parallel()
+            .forEach(i -> {
+                ProximityDB<T> shard = sharded.getShard(i);
+                baseItems.getOrDefault(i, Collections.emptyList()).forEach(shard::insert);
+                ReplayHistory.replay(partitions.get(i), shard);
+            });
+        return sharded;
+    }
+
+    /**
+     * Appends each command to the sub-log of every shard that it touches.
+     */
+    private class Partitioner implements UpdateCommandVisitor<T, Void> {
+        private final ShardedProximityDB<T> sharded;
+        private final List<List<UpdateCommand<T>>> partitions;
+
+        private Partitioner(
+            ShardedProximityDB<T> shardedDb,
+            List<List<UpdateCommand<T>>> partitionLogs
+        ) {
+            sharded = shardedDb;
+            partitions = partitionLogs;
+        }
+
+        @Override
+        public Void visitInsert(InsertCommand<T> command) {
+            partitions.get(sharded.shardIndex(command.getDataAndPosition())).add(command);
+            return null;
+        }
+
+        @Override
+        public Void visitDelete(DeleteCommand<T> command) {
+            partitions.get(sharded.shardIndex(command.getPosition())).add(command);
+            return null;
+        }
+
+        @Override
+        public Void visitDeleteRange(DeleteRangeCommand<T> command) {
+            int bits = command.getBitsOfPrecision();
+            int first = sharded.firstShard(command.getPosition(), bits);
+            for(int i = first; i < first + sharded.shardSpan(bits); i++) {
+                partitions.get(i).add(command);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitBatch(BatchCommand<T> command) {
+            command.getCommands().forEach(c -> c.accept(this));
+            return null;
+        }
+    }
+}
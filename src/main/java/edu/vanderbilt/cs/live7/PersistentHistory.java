@@ -0,0 +1,51 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import edu.vanderbilt.cs.live6.PersistentProximityDB;
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * Retains the version of a PersistentProximityDB produced by every operation. Each
+ * version shares all unchanged nodes with its neighbors, so retaining one costs only
+ * the path that the operation copied, and any past state can be obtained in O(1).
+ *
+ * @param <T>
+ */
+public class PersistentHistory<T> implements StateHistory<T> {
+    private final List<PersistentProximityDB<T>> versions;
+    private int firstVersion;
+
+    public PersistentHistory(PersistentProximityDB<T> initialState) {
+        versions = new ArrayList<>();
+        versions.add(initialState.copy());
+        firstVersion = 0;
+    }
+
+    @Override
+    public void recorded(int operationCount, ProximityDB<T> current) {
+        versions.add(((PersistentProximityDB<T>)current).copy());
+    }
+
+    @Override
+    public Supplier<ProximityDB<T>> frozenAt(
+        int n,
+        OperationLog<T> operations,
+        ProximityDB<T> current
+    ) {
+        return versions.get(n - firstVersion)::copy;
+    }
+
+    @Override
+    public void compacted(int horizon) {
+        versions.subList(0, horizon - firstVersion).clear();
+        firstVersion = horizon;
+    }
+
+    @Override
+    public StateHistory<T> startingFrom(ProximityDB<T> initialState) {
+        return new PersistentHistory<>((PersistentProximityDB<T>)initialState);
+    }
+}
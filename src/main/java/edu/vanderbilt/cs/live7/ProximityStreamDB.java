@@ -1,11 +1,20 @@
 package edu.vanderbilt.cs.live7;
 
 
+import edu.vanderbilt.cs.live6.DataAndPosition;
 import edu.vanderbilt.cs.live6.Position;
 import edu.vanderbilt.cs.live6.ProximityDB;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
 import java.util.OptionalDouble;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 /**
@@ -60,6 +69,88 @@ public interface ProximityStreamDB<T> extends ProximityDB<T> {
      */
     public ProximityStreamDB<T> databaseStateAtTime(int n);
 
+    /**
+     * Returns the net difference between databaseStateAtTime(m) and
+     * databaseStateAtTime(n) without building either state. Items inserted and removed
+     * again between m and n appear in neither of its streams.
+     *
+     * @param m - the earlier operation count
+     * @param n - the later operation count
+     * @return
+     */
+    public ChangeSet<T> changesBetween(int m, int n);
+
+    /**
+     * Returns the state that included every operation applied at or before the time,
+     * as databaseStateAtTime() does for the matching operation count.
+     *
+     * @param time
+     * @return
+     */
+    public ProximityStreamDB<T> databaseStateAt(Instant time);
+
+    /**
+     * Returns, in order, the operations applied at or after from and before to.
+     *
+     * @param from - inclusive
+     * @param to - exclusive
+     * @return
+     */
+    public List<UpdateCommand<T>> operationsBetween(Instant from, Instant to);
+
+    /**
+     * Returns a read-only view of the database pinned at the current operation index.
+     *
+     * The snapshot is cheap to take and does not copy the database. Later updates to the
+     * database are not visible through it, and it can be queried from other threads
+     * while updates continue. Release it with close() or by dropping every reference to
+     * it.
+     *
+     * The pinned state is rebuilt on the snapshot's first query. That query is O(1)
+     * over a PersistentProximityDB or a PersistentHistory, and bounded by the checkpoint
+     * interval with a CheckpointHistory; with the default ReplayHistory it replays every
+     * retained operation from the base state.
+     *
+     * @return
+     */
+    public DatabaseSnapshot<T> snapshot();
+
+    /**
+     * Returns a publisher that emits a ChangeEvent for every update applied to the
+     * database from now on, with its operation index and the items it removed.
+     *
+     * @return
+     */
+    public ChangePublisher<T> changes();
+
+    /**
+     * Applies the commands, in order, as a single operation. The group occupies one
+     * operation index, so no state in the middle of it is ever observable. If a command
+     * throws, the commands before it are reverted and nothing is recorded.
+     *
+     * @param commands
+     * @return the data items removed by the commands
+     */
+    public Collection<DataAndPosition<T>> apply(List<UpdateCommand<T>> commands);
+
+    /**
+     * Reverts the most recent insert, delete, or apply that has not been undone yet. The
+     * revert is itself applied as a new operation, so the history, change events, and
+     * observers all see it as one more update. Operations recovered from a
+     * WriteAheadLog cannot be undone: the undo and redo stacks start empty.
+     *
+     * @return false if there is nothing left to undo
+     */
+    public boolean undo();
+
+    /**
+     * Applies again the operation most recently reverted by undo(). Any other update
+     * made after that undo() discards what could be redone.
+     *
+     * @return false if there is nothing to redo
+     */
+    public boolean redo();
+
     /**
      * Returns a stream of the values for the specified attribute that are near the specified
      * location.
@@ -157,6 +248,190 @@ public interface ProximityStreamDB<T> extends ProximityDB<T> {
      */
     public <V> Map<V,Long> histogramNearby(AttributeMatcher<V> matcher, Position pos, int bitsOfPrecision);
 
+    /**
+     *
+     * Returns the pth percentile of the attribute values near the position (nearest-rank
+     * method: the smallest value that at least p percent of the values are less than or
+     * equal to). The value is found by selection rather than by sorting the values.
+     *
+     * @param matcher - a predicate to determine which attributes should be included in the stream
+     * @param pos
+     * @param bitsOfPrecision
+     * @param p - between 0 and 100
+     * @param <V>
+     * @return
+     */
+    public <V extends Double> OptionalDouble percentileNearby(AttributeMatcher<V> matcher, Position pos, int bitsOfPrecision, double p);
+
+    /**
+     *
+     * Returns the k largest attribute values near the position according to the
+     * comparator, largest first. Only k values are held at a time.
+     *
+     * @param matcher - a predicate to determine which attributes should be included in the stream
+     * @param pos
+     * @param bitsOfPrecision
+     * @param k
+     * @param comparator
+     * @param <V>
+     * @return
+     */
+    public <V> List<V> topKNearby(AttributeMatcher<V> matcher, Position pos, int bitsOfPrecision, int k, Comparator<? super V> comparator);
+
+    /**
+     *
+     * Summarizes the attribute values per geohash cell of cellBits bits within the
+     * region of regionBits bits around the position (e.g., for a heatmap), reading the
+     * region once. Only cells with at least one value are returned, ordered by location
+     * code.
+     *
+     * @param matcher - a predicate to determine which attributes should be included in the stream
+     * @param pos
+     * @param regionBits
+     * @param cellBits - at least regionBits
+     * @param parallel - whether to summarize the cells on several threads
+     * @param <V>
+     * @return
+     */
+    public <V extends Double> NavigableMap<String, CellSummary> aggregateByCell(AttributeMatcher<V> matcher, Position pos, int regionBits, int cellBits, boolean parallel);
+
+    public default <V extends Double> NavigableMap<String, CellSummary> aggregateByCell(AttributeMatcher<V> matcher, Position pos, int regionBits, int cellBits) {
+        return aggregateByCell(matcher, pos, regionBits, cellBits, false);
+    }
+
+    /**
+     *
+     * Registers a view of the count, sum, min, and max of the attribute values near the
+     * position that is updated on every insert / delete, for queries that are polled
+     * far more often than the region changes. Registering a view id again for the same
+     * prefix returns the existing view. Views are carried over to databaseStateAtTime
+     * clones without being recomputed from the items: each clone copies the views'
+     * values, O(values in all views), and reverts the operations since that state.
+     *
+     * @param viewId - names the matcher
+     * @param matcher - a predicate to determine which attributes should be included in the view
+     * @param pos
+     * @param bitsOfPrecision
+     * @param <V>
+     * @return
+     */
+    public <V extends Double> MaterializedAggregate<T> materialize(String viewId, AttributeMatcher<V> matcher, Position pos, int bitsOfPrecision);
+
+    /**
+     *
+     * @return the view registered by materialize(...) under the id for the prefix of
+     *         the position, if any
+     */
+    public Optional<MaterializedAggregate<T>> materialized(String viewId, Position pos, int bitsOfPrecision);
+
+    /**
+     *
+     * Aggregates the attribute values of the items inserted near the position during
+     * the last operationCount operations (e.g., for a live dashboard). The returned
+     * window is updated on every insert and always ends at the latest operation.
+     *
+     * @param matcher - a predicate to determine which attributes should be included in the window
+     * @param pos
+     * @param bitsOfPrecision
+     * @param operationCount
+     * @param <V>
+     * @return
+     */
+    public <V extends Double> WindowedAggregate<T> windowNearby(AttributeMatcher<V> matcher, Position pos, int bitsOfPrecision, int operationCount);
+
+    /**
+     *
+     * Like windowNearby(matcher, pos, bitsOfPrecision, operationCount), over the
+     * operations applied during the last window of time instead. The window always ends
+     * at the current time.
+     *
+     */
+    public <V extends Double> WindowedAggregate<T> windowNearby(AttributeMatcher<V> matcher, Position pos, int bitsOfPrecision, Duration window);
+
+    /**
+     *
+     * Estimates the number of distinct attribute values near the position in bounded
+     * memory, rather than counting them exactly like histogramNearby.
+     *
+     * The returned sketch can be merged with sketches of other regions or databases.
+     *
+     * @param matcher - a predicate to determine which attributes should be included in the stream
+     * @param pos
+     * @param bitsOfPrecision
+     * @param relativeError - the largest acceptable relative standard error of the estimate
+     *                      (see HyperLogLog.withRelativeError for the smallest allowed)
+     * @throws IllegalArgumentException if relativeError is below about 0.002
+     * @param <V>
+     * @return
+     */
+    public <V> HyperLogLog approxDistinctNearby(AttributeMatcher<V> matcher, Position pos, int bitsOfPrecision, double relativeError);
+
+    /**
+     *
+     * Sketches the distribution of the attribute values near the position in bounded
+     * memory; the sketch answers any quantile (median, p99, etc.) within rankError.
+     *
+     * The returned sketch can be merged with sketches of other regions or databases.
+     *
+     * @param matcher - a predicate to determine which attributes should be included in the stream
+     * @param pos
+     * @param bitsOfPrecision
+     * @param rankError - the largest acceptable normalized rank error of a quantile
+     * @param <V>
+     * @return
+     */
+    public <V extends Double> KllSketch approxQuantilesNearby(AttributeMatcher<V> matcher, Position pos, int bitsOfPrecision, double rankError);
+
+    /**
+     *
+     * Returns the data items near the specified location whose attributes satisfy the
+     * predicate. The items are filtered lazily as the buckets are walked, so
+     * short-circuiting operations such as limit(n) or findFirst() stop extracting
+     * attributes as soon as they have enough items.
+     *
+     * The stream walks the live buckets, so it must be consumed before the database is
+     * updated; an update made while it is open may throw a
+     * ConcurrentModificationException or yield a mix of old and new items. Query a
+     * snapshot() to stream while updates continue.
+     *
+     * @param pos
+     * @param bitsOfPrecision
+     * @param predicate - tested with all of the attributes of each item
+     * @return
+     */
+    public Stream<DataAndPosition<T>> nearbyMatching(Position pos, int bitsOfPrecision, Predicate<Collection<Attribute>> predicate);
+
+    /**
+     *
+     * Like nearbyMatching(pos, bitsOfPrecision, predicate), for the items that have at
+     * least one attribute matching each of the matchers. The matchers are tested in
+     * order and testing an item stops at the first matcher that nothing matches; a
+     * NamedAttributeMatcher only extracts the attribute that it names. The stream must
+     * be consumed before the database is updated, as with nearbyMatching.
+     *
+     * @param pos
+     * @param bitsOfPrecision
+     * @param matchers
+     * @return
+     */
+    public Stream<DataAndPosition<T>> nearbyMatchingAll(Position pos, int bitsOfPrecision, AttributeMatcher<?>... matchers);
+
+    /**
+     *
+     * Returns the data items near the specified location whose value for the named
+     * attribute satisfies the predicate.
+     *
+     * Equality and range predicates can be answered from secondary indexes on the
+     * attribute when they are more selective than the spatial range.
+     *
+     * @param pos
+     * @param bitsOfPrecision
+     * @param attributeName
+     * @param predicate
+     * @return
+     */
+    public Collection<DataAndPosition<T>> nearbyWhere(Position pos, int bitsOfPrecision, String attributeName, ValuePredicate<?> predicate);
+
 
 
 }
@@ -1,6 +1,16 @@
 package edu.vanderbilt.cs.live7;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.vanderbilt.cs.live6.Codec;
 import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.MappedProximityDB;
+import edu.vanderbilt.cs.live6.PersistentProximityDB;
 import edu.vanderbilt.cs.live6.ProximityDB;
 import edu.vanderbilt.cs.live6.ProximityDBFactory;
 
@@ -14,4 +24,204 @@ public class ProximityStreamDBFactory {
         return new NaiveProximityStreamDB<>(proximityDB, strat);
     }
 
+    /**
+     * Creates a database that extracts the attributes of each item once, when it is
+     * inserted, and reuses them for every query. At most maxCachedEntries items have
+     * their attributes cached at once.
+     */
+    public <T> ProximityStreamDB<T> createCaching(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        int maxCachedEntries
+    ) {
+        CachingAttributesStrategy<T> cachingStrategy =
+            new CachingAttributesStrategy<>(strat, maxCachedEntries);
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        NaiveProximityStreamDB<T> streamDB =
+            new NaiveProximityStreamDB<>(proximityDB, cachingStrategy);
+        streamDB.addObserver(cachingStrategy);
+        return streamDB;
+    }
+
+    /**
+     * Creates a database that keeps the listed numeric attributes in primitive columns
+     * ordered by geohash. Averages, mins, and maxes requested with
+     * AttributeMatcher.named(...) for one of these attributes are computed by scanning
+     * the columns; all other queries use the strategy.
+     */
+    public <T> ProximityStreamDB<T> createColumnar(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        String... numericAttributes
+    ) {
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        NaiveProximityStreamDB<T> streamDB = new NaiveProximityStreamDB<>(proximityDB, strat);
+        Set<String> columnNames = new HashSet<>(Arrays.asList(numericAttributes));
+        streamDB.useColumns(new AttributeColumns<>(hashFactory, bits, strat, columnNames));
+        return streamDB;
+    }
+
+    /**
+     * Creates a database whose nearbyWhere queries can use the secondary indexes
+     * declared on the provided SecondaryIndexes.
+     */
+    public <T> ProximityStreamDB<T> createIndexed(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        SecondaryIndexes<T> indexes
+    ) {
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        NaiveProximityStreamDB<T> streamDB = new NaiveProximityStreamDB<>(proximityDB, strat);
+        streamDB.useIndexes(indexes);
+        return streamDB;
+    }
+
+    /**
+     * Creates a database backed by a PersistentProximityDB that retains the version
+     * produced by every operation, so databaseStateAtTime is O(1).
+     */
+    public <T> ProximityStreamDB<T> createPersistent(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits
+    ) {
+        PersistentProximityDB<T> proximityDB = new PersistentProximityDB<>(hashFactory, bits);
+        return new NaiveProximityStreamDB<>(
+            proximityDB, strat, new PersistentHistory<>(proximityDB)
+        );
+    }
+
+    /**
+     * Creates a database that reconstructs past states from the checkpoints taken by the
+     * provided history. Keep a reference to the history to observe its checkpoints.
+     */
+    public <T> ProximityStreamDB<T> createCheckpointed(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        CheckpointHistory<T> history
+    ) {
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        return new NaiveProximityStreamDB<>(proximityDB, strat, history);
+    }
+
+    /**
+     * Creates a database that is rebuilt from the provided write-ahead log and then
+     * appends every update to it. The caller owns the log and must close it.
+     *
+     * Each update is logged before it is applied, so an update the caller saw succeed
+     * is recovered as long as the log's SyncPolicy had forced it to disk. The recovered
+     * operations are part of the history but cannot be undone.
+     */
+    public <T> ProximityStreamDB<T> createDurable(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        WriteAheadLog<T> log
+    ) throws IOException {
+        return createDurable(strat, hashFactory, bits, log, Clock.systemUTC());
+    }
+
+    /**
+     * Like createDurable(strat, hashFactory, bits, log), with later operations
+     * timestamped by the provided clock. Recovered operations keep the times they were
+     * logged with.
+     */
+    public <T> ProximityStreamDB<T> createDurable(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        WriteAheadLog<T> log,
+        Clock clock
+    ) throws IOException {
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        NaiveProximityStreamDB<T> streamDB = new NaiveProximityStreamDB<>(proximityDB, strat);
+        log.replayTimestamped(streamDB::recovered);
+        streamDB.useClock(clock);
+        streamDB.addObserver(log);
+        return streamDB;
+    }
+
+    /**
+     * Creates a database that keeps only the most recent retainedOperations operations
+     * (and at most as many again before they are compacted) for databaseStateAtTime.
+     */
+    public <T> ProximityStreamDB<T> createRetaining(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        int retainedOperations
+    ) {
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        NaiveProximityStreamDB<T> streamDB = new NaiveProximityStreamDB<>(proximityDB, strat);
+        streamDB.retainOperations(retainedOperations);
+        return streamDB;
+    }
+
+    /**
+     * Creates a database that reconstructs past states by replaying the operation log
+     * on several threads, split into 2^partitionBits partitions by geohash prefix.
+     */
+    public <T> ProximityStreamDB<T> createParallelReplay(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        int partitionBits
+    ) {
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        return new NaiveProximityStreamDB<>(
+            proximityDB, strat,
+            new ParallelReplayHistory<>(hashFactory, bits, partitionBits)
+        );
+    }
+
+    /**
+     * Creates a database that timestamps every operation with the provided clock, so
+     * databaseStateAt and operationsBetween can be answered in wall-clock time.
+     */
+    public <T> ProximityStreamDB<T> createTimestamped(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits,
+        Clock clock
+    ) {
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        NaiveProximityStreamDB<T> streamDB = new NaiveProximityStreamDB<>(proximityDB, strat);
+        streamDB.useClock(clock);
+        return streamDB;
+    }
+
+    /**
+     * Creates a database that supports materialize(...): aggregates over a prefix that
+     * are updated on every insert / delete and read in O(1).
+     */
+    public <T> ProximityStreamDB<T> createMaterialized(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        int bits
+    ) {
+        ProximityDB<T> proximityDB = (new ProximityDBFactory()).create(hashFactory, bits);
+        NaiveProximityStreamDB<T> streamDB = new NaiveProximityStreamDB<>(proximityDB, strat);
+        streamDB.useViews(new MaterializedViews<>(hashFactory, strat));
+        return streamDB;
+    }
+
+    /**
+     * Creates a database whose initial contents are memory-mapped from a snapshot file
+     * written by MappedProximityDB.snapshot(). Updates are kept in memory; the history
+     * starts when the snapshot is opened.
+     */
+    public <T> ProximityStreamDB<T> createFromSnapshot(
+        AttributesStrategy<T> strat,
+        GeoHashFactory hashFactory,
+        Codec<T> dataCodec,
+        Path snapshot
+    ) throws IOException {
+        ProximityDB<T> proximityDB = MappedProximityDB.open(snapshot, hashFactory, dataCodec);
+        return new NaiveProximityStreamDB<>(proximityDB, strat);
+    }
+
 }
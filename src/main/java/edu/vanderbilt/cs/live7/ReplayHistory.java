@@ -0,0 +1,84 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import edu.vanderbilt.cs.live6.PersistentProximityDB;
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * Reconstructs past states by replaying the operations before n into the log's base
+ * state. Nothing is retained besides the operations themselves.
+ *
+ * A state that is cheaper to reach from the current state is instead rebuilt by
+ * copying the current state and undoing the operations after n, so reading recent
+ * history costs time in proportion to how far back it is rather than to the length of
+ * the log. The two are compared by the items each has to touch: replaying touches the
+ * items of the operations before n; undoing touches the items of the operations after
+ * n and, unless the current state is a PersistentProximityDB whose copy() is O(1), the
+ * items added since the base state while copying.
+ *
+ * @param <T>
+ */
+public class ReplayHistory<T> implements StateHistory<T> {
+
+    @Override
+    public void recorded(int operationCount, ProximityDB<T> current) {
+    }
+
+    @Override
+    public ProximityDB<T> stateAt(
+        int n,
+        OperationLog<T> operations,
+        ProximityDB<T> current
+    ) {
+        long replayCost = operations.itemStepsBetween(operations.getBaseIndex(), n);
+        long undoCost = operations.itemStepsBetween(n, operations.size());
+        if (!(current instanceof PersistentProximityDB)) {
+            undoCost += Math.max(0, operations.getItemsSinceBase());
+        }
+        if (undoCost < replayCost) {
+            return operations.undoTo(n, current.copy());
+        }
+        return frozenAt(n, operations, current).get();
+    }
+
+    /**
+     * Always replays forward: the current state keeps changing after the capture, so
+     * it cannot be used as a starting point later.
+     */
+    @Override
+    public Supplier<ProximityDB<T>> frozenAt(
+        int n,
+        OperationLog<T> operations,
+        ProximityDB<T> current
+    ) {
+        OperationLog.View<T> view = operations.view(current);
+        return () -> view.replayTo(n);
+    }
+
+    @Override
+    public void compacted(int horizon) {
+    }
+
+    /**
+     * Executes the commands, in order, against the provided database. Commands do not
+     * commute in general, so this is strictly sequential; see ParallelReplayHistory for
+     * a replay that exploits the commands that do.
+     */
+    public static <T> ProximityDB<T> replay(
+        List<UpdateCommand<T>> commands,
+        ProximityDB<T> initialState
+    ) {
+        ProximityDB<T> state = initialState;
+        for(UpdateCommand<T> command : commands) {
+            state = command.execute(state);
+        }
+        return state;
+    }
+
+    @Override
+    public StateHistory<T> startingFrom(ProximityDB<T> initialState) {
+        return new ReplayHistory<>();
+    }
+}
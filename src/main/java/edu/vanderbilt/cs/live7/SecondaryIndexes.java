@@ -0,0 +1,183 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.LocationCode;
+import edu.vanderbilt.cs.live6.Position;
+
+/**
+ * Declarative secondary indexes on attribute values, maintained through the
+ * AttributesStrategy as items are inserted and deleted.
+ *
+ * SecondaryIndexes<Building> indexes = new SecondaryIndexes<>(hashFactory, bits, strategy)
+ *     .hashIndex(BuildingAttributesStrategy.NAME)
+ *     .sortedIndex(BuildingAttributesStrategy.CLASSROOMS, Double.class);
+ *
+ * An item is indexed under the first of its attributes with an indexed name.
+ *
+ * To answer nearbyWhere, the number of index entries matching the predicate is compared
+ * with the number of items in the spatial prefix range. Whichever is smaller is walked:
+ * either the index candidates are filtered by location code, or the caller's spatial
+ * scan is run and filtered by attribute value.
+ *
+ * @param <T>
+ */
+public class SecondaryIndexes<T> implements UpdateObserver<T> {
+    private final GeoHashFactory geoHashFactory;
+    private final int resolution;
+    private final AttributesStrategy<T> attributesStrategy;
+    private final Map<String, List<AttributeIndex<T>>> indexesByName;
+    private final NavigableMap<String, Integer> itemsPerLocation;
+
+    public SecondaryIndexes(
+        GeoHashFactory hashFactory,
+        int bits,
+        AttributesStrategy<T> strategy
+    ) {
+        geoHashFactory = hashFactory;
+        resolution = bits;
+        attributesStrategy = strategy;
+        indexesByName = new HashMap<>();
+        itemsPerLocation = new TreeMap<>();
+    }
+
+    /**
+     * Declares an index that answers ValuePredicate.equalTo(...) on the attribute.
+     */
+    public SecondaryIndexes<T> hashIndex(String attributeName) {
+        return addIndex(attributeName, AttributeIndex.hashIndex());
+    }
+
+    /**
+     * Declares an index that answers equality and range predicates on the attribute for
+     * values of the provided type.
+     */
+    public SecondaryIndexes<T> sortedIndex(
+        String attributeName,
+        Class<? extends Comparable<?>> valueType
+    ) {
+        return addIndex(attributeName, AttributeIndex.sortedIndex(valueType));
+    }
+
+    public boolean hasIndex(String attributeName) {
+        return indexesByName.containsKey(attributeName);
+    }
+
+    @Override
+    public void inserted(DataAndPosition<T> data) {
+        String code = LocationCode.of(geoHashFactory, data, resolution);
+        itemsPerLocation.merge(code, 1, Integer::sum);
+
+        Map<String, Object> indexedValues = new HashMap<>();
+        for(Attribute<?> attribute : attributesStrategy.getAttributes(data.getData())) {
+            if (indexesByName.containsKey(attribute.getName())) {
+                indexedValues.putIfAbsent(attribute.getName(), attribute.getValue());
+            }
+        }
+        indexedValues
+            .forEach(
+                (name, value) -> indexesByName
+                    .get(name)
+                    .forEach(index -> index.add(data, code, value))
+            );
+    }
+
+    @Override
+    public void deleted(Position pos, Collection<DataAndPosition<T>> removed) {
+        itemsPerLocation.remove(LocationCode.of(geoHashFactory, pos, resolution));
+        removeFromIndexes(removed);
+    }
+
+    @Override
+    public void deletedRange(
+        Position pos,
+        int bitsOfPrecision,
+        Collection<DataAndPosition<T>> removed
+    ) {
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        itemsPerLocation.subMap(prefix, prefix + '2').clear();
+        removeFromIndexes(removed);
+    }
+
+    @Override
+    public void removed(DataAndPosition<T> data) {
+        itemsPerLocation
+            .computeIfPresent(
+                LocationCode.of(geoHashFactory, data, resolution),
+                (code, items) -> items == 1 ? null : items - 1
+            );
+        removeFromIndexes(Collections.singletonList(data));
+    }
+
+    /**
+     * Returns the items within the spatial prefix range whose attribute value matches the
+     * predicate. The spatialScan is only invoked if the spatial side of the query is
+     * more selective than every index that can answer the predicate.
+     */
+    public Collection<DataAndPosition<T>> nearbyWhere(
+        Position pos,
+        int bitsOfPrecision,
+        String attributeName,
+        ValuePredicate<?> predicate,
+        Supplier<Collection<DataAndPosition<T>>> spatialScan
+    ) {
+        AttributeIndex<T> mostSelective = null;
+        long indexCount = Long.MAX_VALUE;
+        List<AttributeIndex<T>> indexes =
+            indexesByName.getOrDefault(attributeName, new ArrayList<>());
+        for(AttributeIndex<T> index : indexes) {
+            long count = index.count(predicate);
+            if (count >= 0 && count < indexCount) {
+                mostSelective = index;
+                indexCount = count;
+            }
+        }
+
+        String prefix = LocationCode.of(geoHashFactory, pos, bitsOfPrecision);
+        if (mostSelective == null || itemsWithin(prefix, indexCount) < indexCount) {
+            return spatialScan.get();
+        }
+        return mostSelective
+            .candidates(predicate)
+            .filter(entry -> entry.isWithin(prefix))
+            .flatMap(AttributeIndex.IndexEntry::items)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @Return the number of items whose location code starts with the prefix. Counting
+     *             stops as soon as the count exceeds the limit.
+     */
+    private long itemsWithin(String prefix, long limit) {
+        long count = 0;
+        for(int items : itemsPerLocation.subMap(prefix, prefix + '2').values()) {
+            count += items;
+            if (count > limit) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private void removeFromIndexes(Collection<DataAndPosition<T>> removed) {
+        for(DataAndPosition<T> item : removed) {
+            indexesByName.values().forEach(indexes -> indexes.forEach(i -> i.remove(item)));
+        }
+    }
+
+    private SecondaryIndexes<T> addIndex(String attributeName, AttributeIndex<T> index) {
+        indexesByName.computeIfAbsent(attributeName, name -> new ArrayList<>()).add(index);
+        return this;
+    }
+}
@@ -0,0 +1,52 @@
+package edu.vanderbilt.cs.live7;
+
+/**
+ * Quickselect: finds the value of a given rank by partitioning around a pivot and only
+ * descending into the side that holds the rank. Expected O(n), against O(n log n) for
+ * sorting. The pivot is the median of the first, middle, and last values, which
+ * keeps already sorted input (such as rows read from AttributeColumns) linear.
+ */
+class Selection {
+
+    /**
+     * Reorders the values so that values[rank] holds the value that a sort would put
+     * there, and returns it.
+     *
+     * @Assume 0 <= rank < values.length
+     */
+    static double select(double[] values, int rank) {
+        int low = 0;
+        int high = values.length - 1;
+        while(low < high) {
+            double pivot =
+                medianOfThree(values[low], values[(low + high) >>> 1], values[high]);
+            int left = low;
+            int right = high;
+            while(left <= right) {
+                while(values[left] < pivot) {
+                    left++;
+                }
+                while(values[right] > pivot) {
+                    right--;
+                }
+                if (left <= right) {
+                    double swap = values[left];
+                    values[left++] = values[right];
+                    values[right--] = swap;
+                }
+            }
+            if (rank <= right) {
+                high = right;
+            } else if (rank >= left) {
+                low = left;
+            } else {
+                return values[rank];
+            }
+        }
+        return values[rank];
+    }
+
+    private static double medianOfThree(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+}
@@ -0,0 +1,62 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.function.Supplier;
+
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * Strategy used by NaiveProximityStreamDB to reconstruct past states of the database
+ * for databaseStateAtTime.
+ *
+ * @param <T>
+ */
+public interface StateHistory<T> {
+
+    /**
+     * Called after each operation has been applied to the current state.
+     *
+     * @param operationCount - the number of operations applied so far
+     * @param current - the state of the database after the operation
+     */
+    public void recorded(int operationCount, ProximityDB<T> current);
+
+    /**
+     * Returns a database holding the state after the first n operations. The caller is
+     * free to modify the returned database.
+     *
+     * @Assume operations.getBaseIndex() <= n <= operations.size()
+     */
+    public default ProximityDB<T> stateAt(
+        int n,
+        OperationLog<T> operations,
+        ProximityDB<T> current
+    ) {
+        return frozenAt(n, operations, current).get();
+    }
+
+    /**
+     * Captures, in O(1) and without copying any database, what is needed to rebuild the
+     * state after the first n operations. The returned supplier builds a new database
+     * each time it is invoked, and may be invoked from any thread while later
+     * operations are applied.
+     *
+     * @Assume operations.getBaseIndex() <= n <= operations.size()
+     */
+    public Supplier<ProximityDB<T>> frozenAt(
+        int n,
+        OperationLog<T> operations,
+        ProximityDB<T> current
+    );
+
+    /**
+     * Called after the operations before the horizon have been compacted. States before
+     * the horizon will no longer be requested and may be discarded.
+     */
+    public void compacted(int horizon);
+
+    /**
+     * Returns a new, empty history of the same kind for a database whose first state is
+     * initialState.
+     */
+    public StateHistory<T> startingFrom(ProximityDB<T> initialState);
+}
@@ -0,0 +1,47 @@
+package edu.vanderbilt.cs.live7;
+
+/**
+ * Controls when a WriteAheadLog forces its records to stable storage.
+ *
+ * everyOperation() - each update is written and fsync'd before it returns
+ * every(millis) - updates are batched in memory and written / fsync'd as one group at
+ * the given interval, so at most that much time worth of updates can be lost
+ * osManaged() - each update is written to the OS before it returns, but the OS decides
+ * when it reaches the disk
+ */
+public class SyncPolicy {
+    private final long intervalMillis;
+    private final boolean forced;
+
+    private SyncPolicy(long intervalMillis, boolean forced) {
+        this.intervalMillis = intervalMillis;
+        this.forced = forced;
+    }
+
+    public static SyncPolicy everyOperation() {
+        return new SyncPolicy(0, true);
+    }
+
+    public static SyncPolicy every(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("millis must be positive");
+        }
+        return new SyncPolicy(millis, true);
+    }
+
+    public static SyncPolicy osManaged() {
+        return new SyncPolicy(0, false);
+    }
+
+    boolean isGrouped() {
+        return intervalMillis > 0;
+    }
+
+    long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    boolean isForced() {
+        return forced;
+    }
+}
@@ -0,0 +1,86 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * The inverse of one operation, captured while the operation was executed: the items
+ * that it inserted and the items that it removed, in the order that it did so.
+ *
+ * Commands only describe what to do, so a delete cannot know what it removed until it
+ * runs. The record is kept next to the command in the OperationLog instead.
+ *
+ * @param <T>
+ */
+public class UndoRecord<T> {
+    private final List<DataAndPosition<T>> items;
+    private final BitSet insertions;
+
+    public UndoRecord() {
+        items = new ArrayList<>(1);
+        insertions = new BitSet(1);
+    }
+
+    public void inserted(DataAndPosition<T> data) {
+        insertions.set(items.size());
+        items.add(data);
+    }
+
+    public void removed(Collection<DataAndPosition<T>> removed) {
+        items.addAll(removed);
+    }
+
+    /**
+     * Forgets every step after the first size steps.
+     */
+    public void truncate(int size) {
+        items.subList(size, items.size()).clear();
+        insertions.clear(size, Math.max(size, insertions.length()));
+    }
+
+    /**
+     * @return the number of items the operation inserted or removed
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return the number of items the operation inserted minus the number it removed
+     */
+    public int getNetInsertions() {
+        return 2 * insertions.cardinality() - items.size();
+    }
+
+    public DataAndPosition<T> getItem(int step) {
+        return items.get(step);
+    }
+
+    /**
+     * @return true if the item at the step was inserted, false if it was removed
+     */
+    public boolean isInsertion(int step) {
+        return insertions.get(step);
+    }
+
+    /**
+     * Reverts the operation by walking its steps backwards: inserted items are removed
+     * and removed items are inserted again.
+     *
+     * @Assume proximityDB holds the state right after the operation
+     */
+    public void undo(ProximityDB<T> proximityDB) {
+        for(int step = items.size() - 1; step >= 0; step--) {
+            if (insertions.get(step)) {
+                proximityDB.remove(items.get(step));
+            } else {
+                proximityDB.insert(items.get(step));
+            }
+        }
+    }
+}
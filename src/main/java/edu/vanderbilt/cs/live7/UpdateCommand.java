@@ -4,4 +4,6 @@ import edu.vanderbilt.cs.live6.ProximityDB;
 
 public interface UpdateCommand<T> {
 	public ProximityDB<T> execute(ProximityDB<T> proximityDB);
+
+	public <R> R accept(UpdateCommandVisitor<T, R> visitor);
 }
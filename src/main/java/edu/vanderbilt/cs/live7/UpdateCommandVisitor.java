@@ -0,0 +1,19 @@
+package edu.vanderbilt.cs.live7;
+
+/**
+ * Visitor over the concrete kinds of UpdateCommand, for code that needs to inspect a
+ * command's arguments rather than just execute it (e.g., encoding it to bytes).
+ *
+ * @param <T> - the type of data stored in the database
+ * @param <R> - the result of visiting a command
+ */
+public interface UpdateCommandVisitor<T, R> {
+
+    public R visitInsert(InsertCommand<T> command);
+
+    public R visitDelete(DeleteCommand<T> command);
+
+    public R visitDeleteRange(DeleteRangeCommand<T> command);
+
+    public R visitBatch(BatchCommand<T> command);
+}
@@ -0,0 +1,67 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.Collection;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.Position;
+
+/**
+ * Receives a callback after each update is applied to a ProximityStreamDB. Observers
+ * can be used to keep derived structures (caches, indexes, etc.) in sync with the
+ * contents of the database.
+ *
+ * Each callback mirrors one of the mutating methods on ProximityDB and is invoked
+ * after the database has been updated, except applying(), which is invoked before.
+ *
+ * @param <T>
+ */
+public interface UpdateObserver<T> {
+
+    /**
+     * Called before the command is executed, with the index and time it will be
+     * recorded with if it succeeds. Throwing from this callback stops the update before
+     * the database is changed.
+     */
+    public default void applying(
+        int operationIndex,
+        UpdateCommand<T> command,
+        long epochMillis
+    ) {
+    }
+
+    public default void inserted(DataAndPosition<T> data) {
+    }
+
+    public default void deleted(Position pos, Collection<DataAndPosition<T>> removed) {
+    }
+
+    public default void deletedRange(
+        Position pos,
+        int bitsOfPrecision,
+        Collection<DataAndPosition<T>> removed
+    ) {
+    }
+
+    /**
+     * Mirrors ProximityDB.remove: the one item was removed and any other items at its
+     * location were left in place. Used when an operation is undone or rolled back.
+     */
+    public default void removed(DataAndPosition<T> data) {
+    }
+
+    /**
+     * Called after the callback above with the index of the operation and the command
+     * that was applied.
+     *
+     * @param removed - the items the command removed, empty for inserts
+     * @param epochMillis - the time the operation was recorded with, as used by
+     *            databaseStateAt and operationsBetween
+     */
+    public default void applied(
+        int operationIndex,
+        UpdateCommand<T> command,
+        Collection<DataAndPosition<T>> removed,
+        long epochMillis
+    ) {
+    }
+}
@@ -0,0 +1,151 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A predicate over attribute values whose shape is visible to the database.
+ *
+ * Equality predicates can be answered from a hash index and range predicates from a
+ * sorted index (see AttributeIndex). Predicates created with of(...) are opaque and are
+ * always answered by scanning.
+ *
+ * nearbyWhere(pos, bits, "classrooms", ValuePredicate.greaterThan(20.0))
+ */
+public class ValuePredicate<V> implements Predicate<Object> {
+
+    enum Kind {
+        EQUAL, RANGE, OPAQUE
+    }
+
+    private final Kind kind;
+    private final Object value;
+    private final Comparable<Object> lower;
+    private final boolean lowerInclusive;
+    private final Comparable<Object> upper;
+    private final boolean upperInclusive;
+    private final Predicate<V> opaque;
+
+    private ValuePredicate(
+        Kind kind,
+        Object value,
+        Comparable<Object> lower,
+        boolean lowerInclusive,
+        Comparable<Object> upper,
+        boolean upperInclusive,
+        Predicate<V> opaque
+    ) {
+        this.kind = kind;
+        this.value = value;
+        this.lower = lower;
+        this.lowerInclusive = lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upperInclusive;
+        this.opaque = opaque;
+    }
+
+    public static <V> ValuePredicate<V> equalTo(V value) {
+        return new ValuePredicate<>(Kind.EQUAL, value, null, false, null, false, null);
+    }
+
+    public static <V extends Comparable<? super V>> ValuePredicate<V> greaterThan(V value) {
+        return range(value, false, null, false);
+    }
+
+    public static <V extends Comparable<? super V>> ValuePredicate<V> atLeast(V value) {
+        return range(value, true, null, false);
+    }
+
+    public static <V extends Comparable<? super V>> ValuePredicate<V> lessThan(V value) {
+        return range(null, false, value, false);
+    }
+
+    public static <V extends Comparable<? super V>> ValuePredicate<V> atMost(V value) {
+        return range(null, false, value, true);
+    }
+
+    /**
+     * Matches values in [lower, upper]
+     */
+    public static <V extends Comparable<? super V>> ValuePredicate<V> between(
+        V lower,
+        V upper
+    ) {
+        return range(lower, true, upper, true);
+    }
+
+    public static <V> ValuePredicate<V> of(Predicate<V> predicate) {
+        return new ValuePredicate<>(Kind.OPAQUE, null, null, false, null, false, predicate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V extends Comparable<? super V>> ValuePredicate<V> range(
+        V lower,
+        boolean lowerInclusive,
+        V upper,
+        boolean upperInclusive
+    ) {
+        return new ValuePredicate<>(
+            Kind.RANGE, null, (Comparable<Object>)lower, lowerInclusive,
+            (Comparable<Object>)upper, upperInclusive, null
+        );
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean test(Object attributeValue) {
+        switch(kind) {
+            case EQUAL:
+                return Objects.equals(value, attributeValue);
+            case RANGE:
+                if (attributeValue == null
+                    || (lower != null && !lower.getClass().isInstance(attributeValue))
+                    || (upper != null && !upper.getClass().isInstance(attributeValue))) {
+                    return false;
+                }
+                return aboveLower(attributeValue) && belowUpper(attributeValue);
+            default:
+                return opaque.test((V)attributeValue);
+        }
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
+    Comparable<Object> getLower() {
+        return lower;
+    }
+
+    boolean isLowerInclusive() {
+        return lowerInclusive;
+    }
+
+    Comparable<Object> getUpper() {
+        return upper;
+    }
+
+    boolean isUpperInclusive() {
+        return upperInclusive;
+    }
+
+    private boolean aboveLower(Object attributeValue) {
+        if (lower == null) {
+            return true;
+        }
+        int comparison = lower.compareTo(attributeValue);
+        return comparison < 0 || (lowerInclusive && comparison == 0);
+    }
+
+    private boolean belowUpper(Object attributeValue) {
+        if (upper == null) {
+            return true;
+        }
+        int comparison = upper.compareTo(attributeValue);
+        return comparison > 0 || (upperInclusive && comparison == 0);
+    }
+}
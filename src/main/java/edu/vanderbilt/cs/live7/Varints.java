@@ -0,0 +1,40 @@
+package edu.vanderbilt.cs.live7;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128 variable-length integers: seven bits per byte, least significant group first,
+ * with the high bit set on every byte except the last. Signed values are zigzag
+ * encoded first so that numbers close to zero take few bytes regardless of sign.
+ */
+class Varints {
+
+    static void putUnsigned(ByteBuffer buffer, long value) {
+        while((value & ~0x7FL) != 0) {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+    static long getUnsigned(ByteBuffer buffer) {
+        long value = 0;
+        for(int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte next = buffer.get();
+            value |= (long)(next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static void putSigned(ByteBuffer buffer, long value) {
+        putUnsigned(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    static long getSigned(ByteBuffer buffer) {
+        long zigzag = getUnsigned(buffer);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
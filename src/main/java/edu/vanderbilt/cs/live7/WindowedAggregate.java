@@ -0,0 +1,155 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.Arrays;
+import java.util.OptionalDouble;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.StandingQuery;
+
+/**
+ * The count, sum, min, and max of the values of one attribute of the items inserted
+ * within a geohash prefix during a sliding window of ticks (operations or
+ * milliseconds), registered with ProximityStreamDB.windowNearby(...). Items count
+ * toward the window of their insert even if they have been deleted since. They reach
+ * the window through a standing query with a same-thread executor, so an insert is
+ * counted before insert() returns.
+ *
+ * The window is split into a ring of SUB_WINDOWS sub-windows of equal width, each
+ * holding a partial aggregate. An insert adds to the partial of its tick's sub-window,
+ * first resetting the slot if it still holds an expired sub-window, so it costs O(1);
+ * a read combines the partials of the sub-windows that have not expired. The oldest
+ * sub-window expires whole, so a window of length L covers the last L ticks, less
+ * the part of a sub-window that has already elapsed past the newest tick.
+ *
+ * @param <T>
+ */
+public class WindowedAggregate<T> {
+    public static final int SUB_WINDOWS = 32;
+
+    private final AttributeMatcher<? extends Double> matcher;
+    private final AttributesStrategy<T> attributesStrategy;
+    private final LongSupplier latestTick;
+    private final long width;
+    private final long[] subWindows;
+    private final long[] counts;
+    private final double[] sums;
+    private final double[] mins;
+    private final double[] maxes;
+    private StandingQuery query;
+
+    /**
+     * @param length - the number of ticks that the window spans
+     * @param currentTick - the tick that reads end the window at
+     */
+    WindowedAggregate(
+        AttributeMatcher<? extends Double> attributeMatcher,
+        AttributesStrategy<T> strategy,
+        long length,
+        LongSupplier currentTick
+    ) {
+        if (length < 1) {
+            throw new IllegalArgumentException("A window spans at least one tick");
+        }
+        matcher = attributeMatcher;
+        attributesStrategy = strategy;
+        latestTick = currentTick;
+        width = (length + SUB_WINDOWS - 1) / SUB_WINDOWS;
+        int slots = (int)((length + width - 1) / width);
+        subWindows = new long[slots];
+        Arrays.fill(subWindows, Long.MIN_VALUE);
+        counts = new long[slots];
+        sums = new double[slots];
+        mins = new double[slots];
+        maxes = new double[slots];
+    }
+
+    /**
+     * @return the number of ticks that each sub-window spans
+     */
+    public long getSubWindowWidth() {
+        return width;
+    }
+
+    /**
+     * Stops adding inserted items to the window.
+     */
+    public void cancel() {
+        query.cancel();
+    }
+
+    /**
+     * @return the number of matching values inserted during the window
+     */
+    public long getCount() {
+        long count = 0;
+        for(int slot : liveSlots()) {
+            count += counts[slot];
+        }
+        return count;
+    }
+
+    public double getSum() {
+        double sum = 0;
+        for(int slot : liveSlots()) {
+            sum += sums[slot];
+        }
+        return sum;
+    }
+
+    public OptionalDouble getAverage() {
+        long count = getCount();
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(getSum() / count);
+    }
+
+    public OptionalDouble getMin() {
+        return Arrays.stream(liveSlots()).mapToDouble(slot -> mins[slot]).min();
+    }
+
+    public OptionalDouble getMax() {
+        return Arrays.stream(liveSlots()).mapToDouble(slot -> maxes[slot]).max();
+    }
+
+    void listenTo(StandingQuery standingQuery) {
+        query = standingQuery;
+    }
+
+    void added(DataAndPosition<T> data, long tick) {
+        long subWindow = Math.floorDiv(tick, width);
+        int slot = (int)Math.floorMod(subWindow, (long)subWindows.length);
+        Stream<?> values = attributesStrategy.matchingValues(data.getData(), matcher);
+        values
+            .mapToDouble(value -> ((Number)value).doubleValue())
+            .forEach(value -> {
+                if (subWindows[slot] != subWindow) {
+                    subWindows[slot] = subWindow;
+                    counts[slot] = 0;
+                    sums[slot] = 0;
+                    mins[slot] = value;
+                    maxes[slot] = value;
+                }
+                counts[slot]++;
+                sums[slot] += value;
+                mins[slot] = Math.min(mins[slot], value);
+                maxes[slot] = Math.max(maxes[slot], value);
+            });
+    }
+
+    /**
+     * @return the slots holding one of the SUB_WINDOWS sub-windows that end at the
+     *         current tick
+     */
+    private int[] liveSlots() {
+        long newest = Math.floorDiv(latestTick.getAsLong(), width);
+        long oldest = newest - subWindows.length + 1;
+        int[] live = new int[subWindows.length];
+        int size = 0;
+        for(int slot = 0; slot < subWindows.length; slot++) {
+            if (subWindows[slot] >= oldest && subWindows[slot] <= newest) {
+                live[size++] = slot;
+            }
+        }
+        return Arrays.copyOf(live, size);
+    }
+}
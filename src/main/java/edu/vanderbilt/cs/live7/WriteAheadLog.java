@@ -0,0 +1,323 @@
+package edu.vanderbilt.cs.live7;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+import edu.vanderbilt.cs.live6.Codec;
+import edu.vanderbilt.cs.live6.ProximityDB;
+
+/**
+ * An append-only file holding every update applied to a database, so that the database
+ * and its history can be rebuilt after a restart.
+ *
+ * The log is registered as an UpdateObserver on the database, and each operation is
+ * appended from applying(), before the database executes it. Under everyOperation()
+ * the record is on stable storage before the update is visible to readers or returns
+ * to the writer. Each operation is written as one record:
+ *
+ * [int body length][int CRC32 of body][body]
+ *
+ * where the body is the time the operation was recorded with (long milliseconds since
+ * the epoch) followed by the command written by a CommandEncoder; data items are
+ * written with the supplied Codec. Replaying the log restores each operation's time,
+ * so databaseStateAt and operationsBetween still answer for times before a restart.
+ * When the SyncPolicy groups writes, records are staged in memory and a background
+ * thread writes and fsyncs each group.
+ *
+ * replayInto() reads the log from the start and re-applies every record; it must be
+ * called before appending to a non-empty log. A record that
+ * was only partially written when the process stopped fails its length or checksum
+ * check; it and everything after it are truncated from the file.
+ *
+ * A command that throws when it is executed has already been logged. The database
+ * leaves its state unchanged when that happens (a failed batch is rolled back), and
+ * the command fails the same way when it is replayed, so createDurable skips it.
+ *
+ * If a write or fsync fails the log is marked failed; the records that were being
+ * written are lost and every later append, sync, or close throws. With grouped
+ * writes the failure happens on the background thread and surfaces from the next
+ * of those calls.
+ *
+ * @param <T>
+ */
+public class WriteAheadLog<T> implements UpdateObserver<T>, AutoCloseable {
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final CommandEncoder<T> encoder;
+    private final CommandDecoder<T> decoder;
+    private final SyncPolicy syncPolicy;
+    private final ScheduledExecutorService groupCommitter;
+    private final CRC32 checksum;
+    private ByteBuffer pending;
+    private ByteBuffer committing;
+    private boolean replayed;
+    private volatile IOException failure;
+
+    public WriteAheadLog(Path path, Codec<T> dataCodec, SyncPolicy policy)
+        throws IOException {
+        this(
+            FileChannel
+                .open(
+                    path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+                ),
+            dataCodec, policy
+        );
+    }
+
+    WriteAheadLog(FileChannel channel, Codec<T> dataCodec, SyncPolicy policy)
+        throws IOException {
+        this.channel = channel;
+        channel.position(channel.size());
+        encoder = new CommandEncoder<>(dataCodec);
+        decoder = new CommandDecoder<>(dataCodec);
+        replayed = channel.size() == 0;
+        syncPolicy = policy;
+        checksum = new CRC32();
+        pending = ByteBuffer.allocateDirect(INITIAL_BUFFER_BYTES);
+        committing = ByteBuffer.allocateDirect(INITIAL_BUFFER_BYTES);
+
+        if (policy.isGrouped()) {
+            groupCommitter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "write-ahead-log-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            groupCommitter
+                .scheduleWithFixedDelay(
+                    this::commitGroup, policy.getIntervalMillis(),
+                    policy.getIntervalMillis(), TimeUnit.MILLISECONDS
+                );
+        } else {
+            groupCommitter = null;
+        }
+    }
+
+    /**
+     * Applies every command in the log, in order, to the provided database. Must be
+     * called before the log is registered as an observer of that database.
+     */
+    public void replayInto(ProximityDB<T> proximityDB) throws IOException {
+        replay(command -> command.execute(proximityDB));
+    }
+
+    /**
+     * Decodes every complete record in the log and passes the resulting commands to the
+     * consumer in order. Any torn record at the end of the log is truncated.
+     */
+    public void replay(Consumer<UpdateCommand<T>> consumer) throws IOException {
+        replayTimestamped((command, epochMillis) -> consumer.accept(command));
+    }
+
+    /**
+     * Like replay(consumer), also passing each command's recorded time in milliseconds
+     * since the epoch.
+     */
+    public synchronized void replayTimestamped(
+        ObjLongConsumer<UpdateCommand<T>> consumer
+    ) throws IOException {
+        long validBytes = 0;
+        InputStream input = Channels.newInputStream(channel.position(0));
+        DataInputStream records = new DataInputStream(new BufferedInputStream(input));
+        try {
+            while(true) {
+                int length = records.readInt();
+                int expectedChecksum = records.readInt();
+                if (length <= 0 || validBytes + HEADER_BYTES + length > channel.size()) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                records.readFully(body);
+
+                checksum.reset();
+                checksum.update(body);
+                if ((int)checksum.getValue() != expectedChecksum) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(body);
+                long epochMillis = record.getLong();
+                consumer.accept(decoder.decode(record), epochMillis);
+                validBytes += HEADER_BYTES + length;
+            }
+        } catch(EOFException endOfLog) {
+            // The last record was incomplete, or there were no more records
+        }
+        channel.truncate(validBytes);
+        channel.position(validBytes);
+        encoder.continueFrom(decoder);
+        replayed = true;
+    }
+
+    /**
+     * Writes the command as one record before it is executed; a BatchCommand and all of
+     * its commands are written, checksummed, and synced together.
+     */
+    @Override
+    public void applying(int operationIndex, UpdateCommand<T> command, long epochMillis) {
+        append(buffer -> {
+            buffer.putLong(epochMillis);
+            encoder.encode(command, buffer);
+        });
+    }
+
+    /**
+     * Writes and fsyncs any records that are still staged in memory.
+     *
+     * @throws IOException - if this or an earlier write or fsync failed
+     */
+    public void sync() throws IOException {
+        commit(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (groupCommitter != null) {
+            groupCommitter.shutdown();
+            try {
+                groupCommitter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch(InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Stages one record in the pending buffer and then writes it out immediately unless
+     * writes are grouped.
+     */
+    private void append(Consumer<ByteBuffer> bodyWriter) {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new UncheckedIOException(failed(cause));
+        }
+        synchronized(this) {
+            stage(bodyWriter);
+        }
+        if (!syncPolicy.isGrouped()) {
+            try {
+                commit(syncPolicy.isForced());
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @Assume the caller holds this log's lock
+     */
+    private void stage(Consumer<ByteBuffer> bodyWriter) {
+        if (!replayed) {
+            throw new IllegalStateException(
+                "A non-empty log must be replayed before appending to it"
+            );
+        }
+        int start = pending.position();
+        while(!tryWrite(start, bodyWriter)) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(pending.capacity() * 2);
+            pending.position(0).limit(start);
+            larger.put(pending);
+            pending = larger;
+        }
+
+        int end = pending.position();
+        ByteBuffer body = pending.duplicate();
+        body.position(start + HEADER_BYTES).limit(end);
+        checksum.reset();
+        checksum.update(body);
+        pending.putInt(start, end - start - HEADER_BYTES);
+        pending.putInt(start + Integer.BYTES, (int)checksum.getValue());
+    }
+
+    /**
+     * @Return false if the record starting at start did not fit in the pending buffer
+     */
+    private boolean tryWrite(int start, Consumer<ByteBuffer> bodyWriter) {
+        if (pending.capacity() - start < HEADER_BYTES) {
+            return false;
+        }
+        try {
+            pending.position(start + HEADER_BYTES);
+            bodyWriter.accept(pending);
+            return true;
+        } catch(BufferOverflowException overflow) {
+            return false;
+        } catch(RuntimeException unencodable) {
+            pending.position(start);
+            throw unencodable;
+        }
+    }
+
+    /**
+     * Runs on the background thread; a failure is recorded by commit() rather than
+     * thrown, since throwing would silently cancel every later group commit.
+     */
+    private void commitGroup() {
+        try {
+            sync();
+        } catch(IOException recorded) {
+            // Reported by the next append, sync, or close
+        }
+    }
+
+    private static IOException failed(IOException cause) {
+        return new IOException("An earlier write to the log failed", cause);
+    }
+
+    /**
+     * Writes every staged record to the file. Records are staged in one buffer while the
+     * previously staged records are written from the other, so appends only wait for
+     * the buffers to be swapped and never for the write or fsync itself.
+     */
+    private void commit(boolean force) throws IOException {
+        synchronized(channel) {
+            if (failure != null) {
+                throw failed(failure);
+            }
+            synchronized(this) {
+                ByteBuffer staged = pending;
+                pending = committing.capacity() >= staged.capacity()
+                    ? committing
+                    : ByteBuffer.allocateDirect(staged.capacity());
+                pending.clear();
+                committing = staged;
+                committing.flip();
+            }
+            try {
+                while(committing.hasRemaining()) {
+                    channel.write(committing);
+                }
+                if (force) {
+                    channel.force(false);
+                }
+            } catch(IOException e) {
+                failure = e;
+                throw e;
+            } finally {
+                committing.clear();
+            }
+        }
+    }
+}
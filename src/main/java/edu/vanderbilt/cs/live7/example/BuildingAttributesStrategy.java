@@ -23,4 +23,20 @@ public class BuildingAttributesStrategy implements AttributesStrategy<Building>
 
         return Arrays.asList(sqft, classrooms, name);
     }
+
+    @Override
+    public Attribute getAttribute(Building data, String name) {
+        switch(name) {
+        case SIZE_IN_SQUARE_FEET:
+            return new Attribute<>(
+                SIZE_IN_SQUARE_FEET, Double.class, data.getSizeInSquareFeet()
+            );
+        case CLASSROOMS:
+            return new Attribute<>(CLASSROOMS, Double.class, data.getClassRooms());
+        case NAME:
+            return new Attribute<>(NAME, String.class, data.getName());
+        default:
+            return null;
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package edu.vanderbilt.cs.live7.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import edu.vanderbilt.cs.live6.Codec;
+
+public class BuildingCodec implements Codec<Building> {
+
+    @Override
+    public void encode(Building data, ByteBuffer buffer) {
+        byte[] name = data.getName().getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(name.length);
+        buffer.put(name);
+        buffer.putDouble(data.getSizeInSquareFeet());
+        buffer.putDouble(data.getClassRooms());
+    }
+
+    @Override
+    public Building decode(ByteBuffer buffer) {
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        double sqft = buffer.getDouble();
+        double classRooms = buffer.getDouble();
+        return new Building(new String(name, StandardCharsets.UTF_8), sqft, classRooms);
+    }
+}
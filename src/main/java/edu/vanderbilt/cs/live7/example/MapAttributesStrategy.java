@@ -23,4 +23,10 @@ public class MapAttributesStrategy implements AttributesStrategy<Map<String,?>>
                 .map(e -> new Attribute(e.getKey(), e.getValue().getClass(), e.getValue()))
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public Attribute getAttribute(Map<String, ?> data, String name) {
+        Object value = data.get(name);
+        return value == null ? null : new Attribute(name, value.getClass(), value);
+    }
 }
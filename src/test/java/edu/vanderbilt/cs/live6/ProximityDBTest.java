@@ -8,8 +8,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 public class ProximityDBTest {
 
@@ -114,4 +116,38 @@ public class ProximityDBTest {
         assertSame("second building", iterator.next().getData().getName());
     }
 
+
+    private void testStandingQueries(ProximityDB<Building> db) {
+        List<Runnable> dispatched = new ArrayList<>();
+        List<String> entered = new ArrayList<>();
+        List<String> enteredCell = new ArrayList<>();
+        db.registerStandingQuery(
+            Position.with(0, 0), 0, dpos -> entered.add(dpos.getData().getName()),
+            dispatched::add
+        );
+        StandingQuery cell = db.registerStandingQuery(
+            Position.with(10, 10), 12, dpos -> enteredCell.add(dpos.getData().getName()),
+            dispatched::add
+        );
+
+        db.insert(DataAndPosition.with(10, 10, new Building("a", 100, 5)));
+        db.insert(DataAndPosition.with(-40, 100, new Building("b", 100, 5)));
+        assertTrue(entered.isEmpty());
+        assertEquals(3, dispatched.size());
+
+        cell.cancel();
+        db.insert(DataAndPosition.with(10, 10, new Building("c", 100, 5)));
+        dispatched.forEach(Runnable::run);
+        assertEquals(List.of("a", "b", "c"), entered);
+        assertEquals(List.of("a"), enteredCell);
+    }
+
+    @Test
+    public void testStandingQueries() {
+        testStandingQueries(factory.create(hashFactory, 16));
+        testStandingQueries(new PersistentProximityDB<>(hashFactory, 16));
+        testStandingQueries(
+            new ShardedProximityDB<>(hashFactory, 2, factory.create(hashFactory, 16))
+        );
+    }
 }
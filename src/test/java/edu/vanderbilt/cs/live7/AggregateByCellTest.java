@@ -0,0 +1,117 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.LocationCode;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class AggregateByCellTest {
+    private static final int BITS = 16;
+    private static final int REGION_BITS = 2;
+    private static final int CELL_BITS = 10;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private final AttributeMatcher<Double> size =
+        AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+
+    private static List<DataAndPosition<Building>> insertBuildings(
+        ProximityStreamDB<Building> db
+    ) {
+        Random random = new Random(44);
+        List<DataAndPosition<Building>> items = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            Building building = new Building("b" + i, random.nextInt(5000), 1);
+            DataAndPosition<Building> item = DataAndPosition
+                .with(random.nextDouble() * 80 - 40, random.nextDouble() * 160 - 80, building);
+            items.add(item);
+            db.insert(item);
+        }
+        return items;
+    }
+
+    private void testAggregateByCell(ProximityStreamDB<Building> db, boolean parallel) {
+        List<DataAndPosition<Building>> items = insertBuildings(db);
+        Position pos = Position.with(10, 20);
+        String region = LocationCode.of(hashFactory, pos, REGION_BITS);
+
+        Map<String, CellSummary> expected = new TreeMap<>();
+        for(DataAndPosition<Building> item : items) {
+            String cell = LocationCode.of(hashFactory, item, CELL_BITS);
+            if (cell.startsWith(region)) {
+                expected
+                    .computeIfAbsent(cell, CellSummary::new)
+                    .add(item.getData().getSizeInSquareFeet());
+            }
+        }
+
+        NavigableMap<String, CellSummary> cells =
+            db.aggregateByCell(size, pos, REGION_BITS, CELL_BITS, parallel);
+        assertEquals(expected.keySet(), cells.keySet());
+        for(CellSummary cell : cells.values()) {
+            CellSummary expectedCell = expected.get(cell.getLocationCode());
+            assertTrue(cell.getCount() > 0);
+            assertEquals(expectedCell.getCount(), cell.getCount());
+            assertEquals(expectedCell.getSum(), cell.getSum(), 1e-6);
+            assertEquals(expectedCell.getMin(), cell.getMin());
+            assertEquals(expectedCell.getMax(), cell.getMax());
+        }
+
+        assertTrue(db.aggregateByCell(size, pos, BITS, BITS).size() <= 1);
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> db.aggregateByCell(size, pos, CELL_BITS, REGION_BITS)
+        );
+    }
+
+    @Test
+    public void testAggregateByCell() {
+        testAggregateByCell(
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS), false
+        );
+    }
+
+    @Test
+    public void testParallelAggregateByCell() {
+        testAggregateByCell(
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS), true
+        );
+    }
+
+    @Test
+    public void testPersistentAggregateByCell() {
+        testAggregateByCell(
+            factory.createPersistent(new BuildingAttributesStrategy(), hashFactory, BITS),
+            true
+        );
+    }
+
+    @Test
+    public void testColumnarAggregateByCell() {
+        testAggregateByCell(
+            factory
+                .createColumnar(
+                    new BuildingAttributesStrategy(), hashFactory, BITS,
+                    BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET
+                ),
+            false
+        );
+    }
+}
@@ -0,0 +1,198 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.OptionalDouble;
+import java.util.Random;
+import java.util.Set;
+
+public class AttributeColumnsTest {
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+
+    @Test
+    public void testColumnsMatchStrategy() {
+        int bits = 20;
+        Random random = new Random(42);
+        ProximityStreamDB<Building> plain = new ProximityStreamDBFactory()
+            .create(new BuildingAttributesStrategy(), hashFactory, bits);
+        ProximityStreamDB<Building> columnar = new ProximityStreamDBFactory()
+            .createColumnar(
+                new BuildingAttributesStrategy(), hashFactory, bits,
+                BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET,
+                BuildingAttributesStrategy.CLASSROOMS
+            );
+
+        List<Position> positions = new ArrayList<>();
+        for(int i = 0; i < 500; i++) {
+            Position pos = Position
+                .with(random.nextDouble() * 10, random.nextDouble() * 10);
+            Building b = new Building("b" + i, random.nextDouble() * 1000, i % 30);
+            positions.add(pos);
+            plain.insert(DataAndPosition.with(pos.getLatitude(), pos.getLongitude(), b));
+            columnar.insert(DataAndPosition.with(pos.getLatitude(), pos.getLongitude(), b));
+        }
+        for(int i = 0; i < 50; i++) {
+            plain.delete(positions.get(i));
+            columnar.delete(positions.get(i));
+        }
+        plain.delete(positions.get(60), 10);
+        columnar.delete(positions.get(60), 10);
+
+        for(int i = 0; i < positions.size(); i += 7) {
+            for(int precision : new int[] { 0, 4, 8, 12, bits }) {
+                assertSameResult(
+                    plain
+                        .averageNearby(
+                            AttributeMatcher.named(BuildingAttributesStrategy.CLASSROOMS),
+                            positions.get(i), precision
+                        ),
+                    columnar
+                        .averageNearby(
+                            AttributeMatcher.named(BuildingAttributesStrategy.CLASSROOMS),
+                            positions.get(i), precision
+                        )
+                );
+                assertSameResult(
+                    plain
+                        .minNearby(
+                            AttributeMatcher
+                                .named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET),
+                            positions.get(i), precision
+                        ),
+                    columnar
+                        .minNearby(
+                            AttributeMatcher
+                                .named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET),
+                            positions.get(i), precision
+                        )
+                );
+                assertSameResult(
+                    plain
+                        .maxNearby(
+                            AttributeMatcher
+                                .named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET),
+                            positions.get(i), precision
+                        ),
+                    columnar
+                        .maxNearby(
+                            AttributeMatcher
+                                .named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET),
+                            positions.get(i), precision
+                        )
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testChunksWithSharedLocations() {
+        int bits = 12;
+        Random random = new Random(7);
+        AttributeMatcher<Double> size =
+            AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+        ProximityStreamDB<Building> plain = new ProximityStreamDBFactory()
+            .create(new BuildingAttributesStrategy(), hashFactory, bits);
+        AttributeColumns<Building> columns = new AttributeColumns<>(
+            hashFactory, bits, new BuildingAttributesStrategy(),
+            Set.of(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET)
+        );
+
+        List<DataAndPosition<Building>> items = new ArrayList<>();
+        for(int i = 0; i < 5 * AttributeColumns.CHUNK_ROWS; i++) {
+            DataAndPosition<Building> item = DataAndPosition
+                .with(random.nextInt(4), random.nextInt(3), new Building("b" + i, i, 1));
+            items.add(item);
+            plain.insert(item);
+            columns.inserted(item);
+        }
+        for(int i = 0; i < items.size(); i += 3) {
+            plain.remove(items.get(i));
+            columns.removed(items.get(i));
+        }
+        assertEquals(plain.nearby(Position.with(0, 0), 0).size(), columns.size());
+
+        Position origin = Position.with(0, 0);
+        assertSameResult(
+            plain.averageNearby(size, origin, 0),
+            columns.average(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET, origin, 0)
+        );
+        NavigableMap<String, CellSummary> expected = plain.aggregateByCell(size, origin, 0, 8);
+        NavigableMap<String, CellSummary> actual = columns
+            .aggregateByCell(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET, origin, 0, 8);
+        assertEquals(expected.keySet(), actual.keySet());
+        expected
+            .forEach(
+                (code, cell) -> assertEquals(cell.getSum(), actual.get(code).getSum(), 0.001)
+            );
+
+        Position corner = Position.with(1, 1);
+        plain.delete(corner);
+        columns.deleted(corner, List.of());
+        assertSameResult(
+            plain.maxNearby(size, origin, 0),
+            columns.max(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET, origin, 0)
+        );
+        assertEquals(plain.nearby(origin, 0).size(), columns.size());
+    }
+
+    @Test
+    public void testCellsFinerThanColumns() {
+        int bits = 12;
+        ProximityStreamDB<Building> columnar = new ProximityStreamDBFactory()
+            .createColumnar(
+                new BuildingAttributesStrategy(), hashFactory, bits,
+                BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET
+            );
+        columnar.insert(DataAndPosition.with(1, 1, new Building("a", 100, 1)));
+        columnar.insert(DataAndPosition.with(1.0001, 1.0001, new Building("b", 300, 1)));
+        AttributeMatcher<Double> size =
+            AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+
+        assertEquals(
+            1, columnar.aggregateByCell(size, Position.with(1, 1), 0, bits).size()
+        );
+        assertEquals(
+            400,
+            columnar
+                .aggregateByCell(size, Position.with(1, 1), 0, 2 * bits)
+                .values()
+                .stream()
+                .mapToDouble(CellSummary::getSum)
+                .sum()
+        );
+
+        AttributeColumns<Building> columns = new AttributeColumns<>(
+            hashFactory, bits, new BuildingAttributesStrategy(),
+            Set.of(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET)
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> columns
+                .aggregateByCell(
+                    BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET, Position.with(1, 1), 0,
+                    bits + 1
+                )
+        );
+    }
+
+    private static void assertSameResult(OptionalDouble expected, OptionalDouble actual) {
+        assertEquals(expected.isPresent(), actual.isPresent());
+        if (expected.isPresent()) {
+            assertEquals(expected.getAsDouble(), actual.getAsDouble(), 0.0001);
+        }
+    }
+}
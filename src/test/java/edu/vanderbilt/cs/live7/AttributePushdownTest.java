@@ -0,0 +1,90 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+import edu.vanderbilt.cs.live7.example.MapAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class AttributePushdownTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    /**
+     * Counts how often all of the attributes of an item are built.
+     */
+    private static class CountingStrategy extends BuildingAttributesStrategy {
+        private int fullExtractions = 0;
+
+        @Override
+        public Collection<Attribute> getAttributes(Building data) {
+            fullExtractions++;
+            return super.getAttributes(data);
+        }
+    }
+
+    @Test
+    public void testNamedMatcherExtractsOneAttribute() {
+        CountingStrategy strategy = new CountingStrategy();
+        ProximityStreamDB<Building> db = factory.create(strategy, hashFactory, BITS);
+        for(int i = 0; i < 100; i++) {
+            db.insert(DataAndPosition.with(i % 10, i % 10, new Building("b" + i, i, i % 3)));
+        }
+
+        Position origin = Position.with(0, 0);
+        List<Double> named = db
+            .streamNearby(
+                AttributeMatcher.<Double>named(BuildingAttributesStrategy.CLASSROOMS),
+                origin, 0
+            )
+            .sorted()
+            .collect(Collectors.toList());
+        assertEquals(0, strategy.fullExtractions);
+
+        AttributeMatcher<Double> opaque =
+            attr -> attr.getName().equals(BuildingAttributesStrategy.CLASSROOMS);
+        List<Double> scanned = db
+            .streamNearby(opaque, origin, 0)
+            .sorted()
+            .collect(Collectors.toList());
+        assertEquals(100, strategy.fullExtractions);
+        assertEquals(scanned, named);
+
+        assertEquals(
+            1, db.nearbyWhere(origin, 0, "name", ValuePredicate.equalTo("b7")).size()
+        );
+        assertEquals(100, strategy.fullExtractions);
+    }
+
+    @Test
+    public void testMapAttributes() {
+        MapAttributesStrategy strategy = new MapAttributesStrategy();
+        assertEquals(3, strategy.getAttribute(Map.of("a", 3), "a").getValue());
+        assertNull(strategy.getAttribute(Map.of("a", 3), "b"));
+
+        ProximityStreamDB<Map<String, ?>> db = factory.create(strategy, hashFactory, BITS);
+        db.insert(DataAndPosition.with(1, 1, Map.of("size", 10.0, "name", "x")));
+        db.insert(DataAndPosition.with(1, 1, Map.of("name", "y")));
+        db.insert(DataAndPosition.with(1, 1, Map.of("size", 30.0)));
+
+        AttributeMatcher<Double> size = AttributeMatcher.named("size");
+        assertEquals(
+            20.0, db.averageNearby(size, Position.with(1, 1), BITS).getAsDouble()
+        );
+        assertEquals(2, db.streamNearby(size, Position.with(1, 1), BITS).count());
+    }
+}
@@ -0,0 +1,243 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live6.ProximityDB;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+import edu.vanderbilt.cs.live7.example.BuildingCodec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class BatchCommandTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    /**
+     * Replaces every building within the campus cell with the provided number of new
+     * buildings.
+     */
+    private static List<UpdateCommand<Building>> replaceCampus(String prefix, int count) {
+        List<UpdateCommand<Building>> commands = new ArrayList<>();
+        commands.add(new DeleteRangeCommand<>(Position.with(10, 10), 12));
+        for(int i = 0; i < count; i++) {
+            Building b = new Building(prefix + i, i, 2);
+            commands.add(new InsertCommand<>(DataAndPosition.with(10, 10 + i * 1e-4, b)));
+        }
+        return commands;
+    }
+
+    private static List<String> names(ProximityStreamDB<Building> db) {
+        return db
+            .nearby(Position.with(0, 0), 0)
+            .stream()
+            .map(dpos -> dpos.getData().getName())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testBatchIsOneOperation() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db.apply(replaceCampus("old", 5));
+        db.insert(DataAndPosition.with(1, 1, new Building("other", 1, 1)));
+        assertEquals(5, db.apply(replaceCampus("new", 3)).size());
+
+        assertTrue(names(db.databaseStateAtTime(0)).isEmpty());
+        assertEquals(5, names(db.databaseStateAtTime(1)).size());
+        assertEquals(6, names(db.databaseStateAtTime(2)).size());
+        assertEquals(
+            List.of("new0", "new1", "new2", "other"), names(db.databaseStateAtTime(3))
+        );
+        assertEquals(names(db.databaseStateAtTime(3)), names(db));
+    }
+
+    @Test
+    public void testObserversSeeEachCommandAndOneEvent() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        SecondaryIndexes<Building> indexes =
+            new SecondaryIndexes<>(hashFactory, BITS, new BuildingAttributesStrategy())
+                .hashIndex(BuildingAttributesStrategy.NAME);
+        db.useIndexes(indexes);
+        List<ChangeEvent<Building>> events = new ArrayList<>();
+        db.addObserver(new UpdateObserver<Building>() {
+            @Override
+            public void applied(
+                int operationIndex,
+                UpdateCommand<Building> command,
+                Collection<DataAndPosition<Building>> removed,
+                long epochMillis
+            ) {
+                events.add(new ChangeEvent<>(operationIndex, command, removed));
+            }
+        });
+
+        db.apply(replaceCampus("old", 4));
+        db.apply(replaceCampus("new", 2));
+
+        assertEquals(2, events.size());
+        assertEquals(1, events.get(1).getOperationIndex());
+        assertEquals(4, events.get(1).getRemoved().size());
+        assertTrue(events.get(1).getCommand() instanceof BatchCommand);
+        assertTrue(
+            db
+                .nearbyWhere(
+                    Position.with(0, 0), 0, BuildingAttributesStrategy.NAME,
+                    ValuePredicate.equalTo("old1")
+                )
+                .isEmpty()
+        );
+        assertEquals(
+            1,
+            db
+                .nearbyWhere(
+                    Position.with(0, 0), 0, BuildingAttributesStrategy.NAME,
+                    ValuePredicate.equalTo("new1")
+                )
+                .size()
+        );
+    }
+
+    private static WriteAheadLog<Building> openLog(Path file) throws IOException {
+        return new WriteAheadLog<>(file, new BuildingCodec(), SyncPolicy.everyOperation());
+    }
+
+    @Test
+    public void testBatchIsOneLogRecord() throws IOException {
+        Path file = Files.createTempFile("wal", ".log");
+        try {
+            try(WriteAheadLog<Building> log = openLog(file)) {
+                ProximityStreamDB<Building> db = factory
+                    .createDurable(new BuildingAttributesStrategy(), hashFactory, BITS, log);
+                db.apply(replaceCampus("old", 4));
+                db.apply(replaceCampus("new", 2));
+            }
+
+            try(WriteAheadLog<Building> log = openLog(file)) {
+                List<UpdateCommand<Building>> records = new ArrayList<>();
+                log.replay(records::add);
+                assertEquals(2, records.size());
+            }
+
+            try(WriteAheadLog<Building> log = openLog(file)) {
+                ProximityStreamDB<Building> recovered = factory
+                    .createDurable(new BuildingAttributesStrategy(), hashFactory, BITS, log);
+                assertEquals(List.of("new0", "new1"), names(recovered));
+                assertEquals(4, names(recovered.databaseStateAtTime(1)).size());
+                assertFalse(
+                    recovered.databaseStateAtTime(0).contains(Position.with(10, 10), 0)
+                );
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * A command that fails when it is applied.
+     */
+    private static class FailingCommand implements UpdateCommand<Building> {
+        @Override
+        public ProximityDB<Building> execute(ProximityDB<Building> proximityDB) {
+            throw new IllegalStateException("Simulated failure");
+        }
+
+        @Override
+        public <R> R accept(UpdateCommandVisitor<Building, R> visitor) {
+            throw new IllegalStateException("Simulated failure");
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsRolledBack() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db
+            .useColumns(
+                new AttributeColumns<>(
+                    hashFactory, BITS, new BuildingAttributesStrategy(),
+                    Set.of(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET)
+                )
+            );
+        db
+            .useIndexes(
+                new SecondaryIndexes<>(hashFactory, BITS, new BuildingAttributesStrategy())
+                    .hashIndex(BuildingAttributesStrategy.NAME)
+            );
+        List<ChangeEvent<Building>> events = new ArrayList<>();
+        db.addObserver(new UpdateObserver<Building>() {
+            @Override
+            public void applied(
+                int operationIndex,
+                UpdateCommand<Building> command,
+                Collection<DataAndPosition<Building>> removed,
+                long epochMillis
+            ) {
+                events.add(new ChangeEvent<>(operationIndex, command, removed));
+            }
+        });
+        db.insert(DataAndPosition.with(1, 1, new Building("a", 100, 1)));
+        db.insert(DataAndPosition.with(1, 1, new Building("b", 300, 1)));
+
+        List<UpdateCommand<Building>> commands = new ArrayList<>();
+        commands.add(new DeleteCommand<>(Position.with(1, 1)));
+        Building c = new Building("c", 900, 1);
+        commands.add(new InsertCommand<>(DataAndPosition.with(1, 1, c)));
+        commands
+            .add(
+                new BatchCommand<>(
+                    List.of(
+                        new InsertCommand<>(
+                            DataAndPosition.with(2, 2, new Building("d", 900, 1))
+                        ),
+                        new FailingCommand()
+                    )
+                )
+            );
+        assertThrows(IllegalStateException.class, () -> db.apply(commands));
+
+        assertEquals(List.of("a", "b"), names(db));
+        assertEquals(2, events.size());
+        assertEquals(names(db), names(db.snapshot()));
+        assertEquals(names(db), names(db.databaseStateAtTime(3)));
+        AttributeMatcher<Double> size =
+            AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+        assertEquals(
+            OptionalDouble.of(200), db.averageNearby(size, Position.with(1, 1), 8)
+        );
+        assertTrue(
+            db
+                .nearbyWhere(
+                    Position.with(0, 0), 0, BuildingAttributesStrategy.NAME,
+                    ValuePredicate.equalTo("c")
+                )
+                .isEmpty()
+        );
+
+        db.insert(DataAndPosition.with(3, 3, new Building("e", 1, 1)));
+        assertEquals(2, events.get(2).getOperationIndex());
+        assertTrue(db.undo());
+        assertEquals(List.of("a", "b"), names(db));
+    }
+}
@@ -0,0 +1,82 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingAttributesStrategyTest {
+
+    private static class CountingStrategy extends BuildingAttributesStrategy {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Collection<Attribute> getAttributes(Building data) {
+            calls.incrementAndGet();
+            return super.getAttributes(data);
+        }
+    }
+
+    @Test
+    public void testAttributesExtractedOnce() {
+        CountingStrategy strategy = new CountingStrategy();
+        ProximityStreamDB<Building> db = new ProximityStreamDBFactory()
+            .createCaching(strategy, new GeoHashFactoryImpl(), 16, 100);
+
+        db.insert(DataAndPosition.with(0, 0, new Building("a", 100, 1)));
+        db.insert(DataAndPosition.with(0, 0, new Building("b", 300, 2)));
+        assertEquals(2, strategy.calls.get());
+
+        for(int i = 0; i < 10; i++) {
+            assertEquals(
+                200,
+                db
+                    .averageNearby(
+                        a -> BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET
+                            .equals(a.getName()),
+                        Position.with(0, 0), 16
+                    )
+                    .getAsDouble(),
+                0.1
+            );
+        }
+        assertEquals(2, strategy.calls.get());
+    }
+
+    @Test
+    public void testEvictionAndInvalidate() {
+        CachingAttributesStrategy<Building> cache =
+            new CachingAttributesStrategy<>(new BuildingAttributesStrategy(), 1);
+        Building a = new Building("a", 100, 1);
+        Building b = new Building("b", 200, 1);
+
+        cache.getAttributes(a);
+        cache.getAttributes(b);
+        assertEquals(1, cache.size());
+
+        b.setSizeInSquareFeet(500);
+        cache.invalidate(b);
+        double sqft = cache
+            .getAttributes(b)
+            .stream()
+            .filter(
+                attr -> BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET
+                    .equals(attr.getName())
+            )
+            .mapToDouble(attr -> (Double)attr.getValue())
+            .sum();
+        assertEquals(500, sqft, 0.1);
+
+        cache.deleted(Position.with(0, 0), Arrays.asList(DataAndPosition.with(0, 0, b)));
+        assertEquals(0, cache.size());
+    }
+}
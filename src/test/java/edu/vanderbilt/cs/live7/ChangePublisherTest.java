@@ -0,0 +1,167 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class ChangePublisherTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private static class RecordingSubscriber
+        implements Flow.Subscriber<ChangeEvent<Building>> {
+        private final List<ChangeEvent<Building>> events = new CopyOnWriteArrayList<>();
+        private final long initialRequest;
+        private final CountDownLatch done;
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        private RecordingSubscriber(long request, int expectedEvents) {
+            initialRequest = request;
+            done = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription sub) {
+            subscription = sub;
+            sub.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(ChangeEvent<Building> item) {
+            events.add(item);
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            while(done.getCount() > 0) {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private List<Integer> indices() {
+            return events
+                .stream()
+                .map(ChangeEvent::getOperationIndex)
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static void insertBuildings(ProximityStreamDB<Building> db, int from, int to) {
+        for(int i = from; i < to; i++) {
+            db.insert(DataAndPosition.with(i % 10, i % 10, new Building("b" + i, i, 1)));
+        }
+    }
+
+    @Test
+    public void testEventsCarryIndexAndRemovedItems() throws InterruptedException {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        insertBuildings(db, 0, 5);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ChangePublisher<Building> changes = db.publishChanges(64, executor);
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE, 3);
+            changes.subscribe(subscriber);
+
+            insertBuildings(db, 10, 12);
+            db.delete(Position.with(0, 0));
+            assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+
+            assertNull(subscriber.error);
+            assertEquals(List.of(5, 6, 7), subscriber.indices());
+            assertTrue(subscriber.events.get(0).getCommand() instanceof InsertCommand);
+            assertTrue(subscriber.events.get(0).getRemoved().isEmpty());
+            assertTrue(subscriber.events.get(2).getCommand() instanceof DeleteCommand);
+            assertEquals(
+                List.of("b0", "b10"),
+                subscriber.events
+                    .get(2)
+                    .getRemoved()
+                    .stream()
+                    .map(dpos -> dpos.getData().getName())
+                    .sorted()
+                    .collect(Collectors.toList())
+            );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDeliveryFollowsDemand() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        ChangePublisher<Building> changes = db.publishChanges(64, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber(2, 2);
+        changes.subscribe(subscriber);
+
+        insertBuildings(db, 0, 10);
+        assertEquals(List.of(0, 1), subscriber.indices());
+
+        subscriber.subscription.request(3);
+        assertEquals(List.of(0, 1, 2, 3, 4), subscriber.indices());
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testSlowSubscriberFailsWithoutStallingWriter() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        ChangePublisher<Building> changes = db.publishChanges(4, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber(1, 1);
+        changes.subscribe(subscriber);
+
+        insertBuildings(db, 0, 20);
+
+        assertEquals(List.of(0), subscriber.indices());
+        assertTrue(subscriber.error instanceof IllegalStateException);
+        assertEquals(20, db.nearby(Position.with(0, 0), 0).size());
+    }
+
+    @Test
+    public void testResumeFromIndex() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        ChangePublisher<Building> changes = db.publishChanges(8, Runnable::run);
+        insertBuildings(db, 0, 10);
+
+        RecordingSubscriber resumed = new RecordingSubscriber(Long.MAX_VALUE, 0);
+        changes.subscribe(resumed, 6);
+        assertEquals(List.of(6, 7, 8, 9), resumed.indices());
+        insertBuildings(db, 10, 11);
+        assertEquals(List.of(6, 7, 8, 9, 10), resumed.indices());
+
+        RecordingSubscriber tooLate = new RecordingSubscriber(Long.MAX_VALUE, 0);
+        changes.subscribe(tooLate, 1);
+        assertTrue(tooLate.events.isEmpty());
+        assertTrue(tooLate.error instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,98 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ChangeSetTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private static List<String> names(Stream<DataAndPosition<Building>> items) {
+        return items
+            .map(dpos -> dpos.getData().getName())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> contents(ProximityStreamDB<Building> db) {
+        return names(db.nearby(Position.with(0, 0), 0).stream());
+    }
+
+    private static List<String> minus(List<String> from, List<String> other) {
+        List<String> difference = new ArrayList<>(from);
+        other.forEach(difference::remove);
+        return difference;
+    }
+
+    @Test
+    public void testChangesMatchStateDifference() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Random random = new Random(31);
+        List<Position> positions = new ArrayList<>();
+        for(int i = 0; i < 300; i++) {
+            double roll = random.nextDouble();
+            if (roll < 0.7 || positions.isEmpty()) {
+                int lat = random.nextInt(20);
+                int lon = random.nextInt(20);
+                positions.add(Position.with(lat, lon));
+                db.insert(DataAndPosition.with(lat, lon, new Building("b" + i, i, 1)));
+            } else if (roll < 0.9) {
+                db.delete(positions.get(random.nextInt(positions.size())));
+            } else {
+                db.undo();
+            }
+        }
+
+        for(int m = 0; m <= 300; m += 17) {
+            for(int n = m; n <= 300; n += 23) {
+                List<String> before = contents(db.databaseStateAtTime(m));
+                List<String> after = contents(db.databaseStateAtTime(n));
+                ChangeSet<Building> changes = db.changesBetween(m, n);
+
+                assertEquals(minus(after, before), names(changes.inserted()));
+                assertEquals(minus(before, after), names(changes.removed()));
+            }
+        }
+    }
+
+    @Test
+    public void testInsertThenDeleteCancels() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db.insert(DataAndPosition.with(1, 1, new Building("kept", 1, 1)));
+        db.insert(DataAndPosition.with(2, 2, new Building("temporary", 1, 1)));
+        db.insert(DataAndPosition.with(3, 3, new Building("added", 1, 1)));
+        db.delete(Position.with(2, 2));
+        db.delete(Position.with(1, 1));
+
+        ChangeSet<Building> changes = db.changesBetween(1, 5);
+        assertEquals(List.of("added"), names(changes.inserted()));
+        assertEquals(List.of("kept"), names(changes.removed()));
+        assertTrue(db.changesBetween(3, 3).isEmpty());
+
+        DatabaseSnapshot<Building> snapshot = db.snapshot();
+        db.insert(DataAndPosition.with(4, 4, new Building("later", 1, 1)));
+        assertEquals(List.of("added"), names(snapshot.changesBetween(1, 5).inserted()));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.changesBetween(1, 6));
+        assertThrows(IllegalArgumentException.class, () -> db.changesBetween(4, 3));
+    }
+}
@@ -0,0 +1,54 @@
+package edu.vanderbilt.cs.live7;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingCodec;
+
+/**
+ * Measures the size and the encode and decode throughput of raw and quantized command
+ * encodings. Timing is too noisy to assert on in a unit test, so this is run by hand:
+ *
+ * java -cp <classes> edu.vanderbilt.cs.live7.CommandCodecBenchmark
+ */
+public class CommandCodecBenchmark {
+    private static final int COMMANDS = 200000;
+
+    public static void main(String[] args) {
+        List<UpdateCommand<Building>> commands =
+            CommandCodecTest.randomCommands(9, COMMANDS);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 << 20);
+
+        for(double quantum : new double[] { 0, 1e-7 }) {
+            CommandEncoder<Building> encoder =
+                new CommandEncoder<>(new BuildingCodec(), quantum);
+            CommandDecoder<Building> decoder =
+                new CommandDecoder<>(new BuildingCodec(), quantum);
+
+            buffer.clear();
+            long start = System.nanoTime();
+            for(UpdateCommand<Building> command : commands) {
+                encoder.encode(command, buffer);
+            }
+            long encodeNanos = System.nanoTime() - start;
+            int bytes = buffer.position();
+
+            buffer.flip();
+            start = System.nanoTime();
+            while(buffer.hasRemaining()) {
+                decoder.decode(buffer);
+            }
+            long decodeNanos = System.nanoTime() - start;
+
+            System.out
+                .printf(
+                    "%s encoding: %.1f bytes/command, encode %.1f MB/s, decode %.1f MB/s%n",
+                    quantum == 0 ? "Raw" : "Quantized",
+                    (double)bytes / commands.size(),
+                    bytes / (encodeNanos / 1e9) / 1e6,
+                    bytes / (decodeNanos / 1e9) / 1e6
+                );
+        }
+    }
+}
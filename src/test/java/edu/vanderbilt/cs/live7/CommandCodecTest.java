@@ -0,0 +1,175 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingCodec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CommandCodecTest {
+
+    /**
+     * Generates a random walk of commands, so that consecutive positions are close to
+     * one another like they are in a typical ingest stream.
+     */
+    static List<UpdateCommand<Building>> randomCommands(long seed, int count) {
+        Random random = new Random(seed);
+        List<UpdateCommand<Building>> commands = new ArrayList<>();
+        double lat = 36.14;
+        double lon = -86.80;
+        for(int i = 0; i < count; i++) {
+            lat += (random.nextDouble() - 0.5) * 0.001;
+            lon += (random.nextDouble() - 0.5) * 0.001;
+            double roll = random.nextDouble();
+            if (roll < 0.8) {
+                Building b = new Building("b" + i, random.nextDouble() * 1000, i % 20);
+                commands.add(new InsertCommand<>(DataAndPosition.with(lat, lon, b)));
+            } else if (roll < 0.9) {
+                commands.add(new DeleteCommand<>(Position.with(lat, lon)));
+            } else {
+                commands.add(new DeleteRangeCommand<>(Position.with(lat, lon), i % 64));
+            }
+        }
+        return commands;
+    }
+
+    private static String describe(UpdateCommand<Building> command, double tolerance) {
+        return command.accept(new UpdateCommandVisitor<Building, String>() {
+            @Override
+            public String visitInsert(InsertCommand<Building> insert) {
+                DataAndPosition<Building> data = insert.getDataAndPosition();
+                return "insert " + position(data) + " " + data.getData().getName() + " "
+                    + data.getData().getSizeInSquareFeet();
+            }
+
+            @Override
+            public String visitDelete(DeleteCommand<Building> delete) {
+                return "delete " + position(delete.getPosition());
+            }
+
+            @Override
+            public String visitDeleteRange(DeleteRangeCommand<Building> delete) {
+                return "range " + position(delete.getPosition()) + " "
+                    + delete.getBitsOfPrecision();
+            }
+
+            @Override
+            public String visitBatch(BatchCommand<Building> batch) {
+                StringBuilder description = new StringBuilder("batch");
+                for(UpdateCommand<Building> command : batch.getCommands()) {
+                    description.append(" [").append(command.accept(this)).append("]");
+                }
+                return description.toString();
+            }
+
+            private String position(Position pos) {
+                if (tolerance == 0) {
+                    return pos.getLatitude() + "," + pos.getLongitude();
+                }
+                return Math.round(pos.getLatitude() / tolerance) + ","
+                    + Math.round(pos.getLongitude() / tolerance);
+            }
+        });
+    }
+
+    private void testRoundTrip(double quantum) {
+        List<UpdateCommand<Building>> commands = randomCommands(3, 10000);
+        CommandEncoder<Building> encoder =
+            new CommandEncoder<>(new BuildingCodec(), quantum);
+        CommandDecoder<Building> decoder =
+            new CommandDecoder<>(new BuildingCodec(), quantum);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        commands.forEach(command -> encoder.encode(command, buffer));
+        buffer.flip();
+        for(UpdateCommand<Building> expected : commands) {
+            UpdateCommand<Building> actual = decoder.decode(buffer);
+            assertEquals(describe(expected, quantum), describe(actual, quantum));
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testRawRoundTrip() {
+        testRoundTrip(0);
+    }
+
+    @Test
+    public void testQuantizedRoundTrip() {
+        testRoundTrip(1e-7);
+    }
+
+    @Test
+    public void testOverflowLeavesEncoderUnchanged() {
+        List<UpdateCommand<Building>> commands = randomCommands(5, 2);
+        CommandEncoder<Building> encoder = new CommandEncoder<>(new BuildingCodec());
+        CommandDecoder<Building> decoder = new CommandDecoder<>(new BuildingCodec());
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        encoder.encode(commands.get(0), buffer);
+        int end = buffer.position();
+        try {
+            encoder.encode(commands.get(1), ByteBuffer.allocate(4));
+        } catch(BufferOverflowException expected) {
+            // The command is retried below
+        }
+        buffer.position(end);
+        encoder.encode(commands.get(1), buffer);
+
+        buffer.flip();
+        assertEquals(describe(commands.get(0), 0), describe(decoder.decode(buffer), 0));
+        assertEquals(describe(commands.get(1), 0), describe(decoder.decode(buffer), 0));
+    }
+
+    @Test
+    public void testBatchRoundTrip() {
+        List<UpdateCommand<Building>> commands = randomCommands(7, 12);
+        UpdateCommand<Building> batch = new BatchCommand<>(commands.subList(1, 11));
+        CommandEncoder<Building> encoder = new CommandEncoder<>(new BuildingCodec());
+        CommandDecoder<Building> decoder = new CommandDecoder<>(new BuildingCodec());
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        encoder.encode(commands.get(0), buffer);
+        int end = buffer.position();
+        try {
+            encoder.encode(batch, ByteBuffer.allocate(64));
+        } catch(BufferOverflowException expected) {
+            // The batch is retried below
+        }
+        buffer.position(end);
+        encoder.encode(batch, buffer);
+        encoder.encode(commands.get(11), buffer);
+
+        buffer.flip();
+        assertEquals(describe(commands.get(0), 0), describe(decoder.decode(buffer), 0));
+        assertEquals(describe(batch, 0), describe(decoder.decode(buffer), 0));
+        assertEquals(describe(commands.get(11), 0), describe(decoder.decode(buffer), 0));
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testEncodedSize() {
+        List<UpdateCommand<Building>> commands = randomCommands(9, 10000);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+
+        for(double quantum : new double[] { 0, 1e-7 }) {
+            CommandEncoder<Building> encoder =
+                new CommandEncoder<>(new BuildingCodec(), quantum);
+            buffer.clear();
+            for(UpdateCommand<Building> command : commands) {
+                encoder.encode(command, buffer);
+            }
+            assertTrue(buffer.position() < commands.size() * 50);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DatabaseSnapshotTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private static void insertBuildings(ProximityStreamDB<Building> db, int from, int to) {
+        for(int i = from; i < to; i++) {
+            db
+                .insert(
+                    DataAndPosition
+                        .with(i % 20, (i / 20) % 20, new Building("b" + i, i, i % 5))
+                );
+        }
+    }
+
+    private static long total(Map<Double, Long> histogram) {
+        return histogram.values().stream().mapToLong(x -> x).sum();
+    }
+
+    private void testIsolation(ProximityStreamDB<Building> db) {
+        insertBuildings(db, 0, 100);
+        DatabaseSnapshot<Building> snapshot = db.snapshot();
+        insertBuildings(db, 100, 200);
+        db.delete(Position.with(0, 0), 2);
+
+        assertEquals(100, snapshot.getOperationIndex());
+        assertEquals(100, snapshot.nearby(Position.with(0, 0), 0).size());
+        assertEquals(
+            db.databaseStateAtTime(100).nearby(Position.with(0, 0), 0).size(),
+            snapshot.nearby(Position.with(0, 0), 0).size()
+        );
+        assertEquals(50, snapshot.databaseStateAtTime(50).nearby(Position.with(0, 0), 0).size());
+        assertTrue(db.nearby(Position.with(0, 0), 0).size() < 200);
+    }
+
+    @Test
+    public void testSnapshotIsIsolatedFromWrites() {
+        testIsolation(factory.create(new BuildingAttributesStrategy(), hashFactory, BITS));
+    }
+
+    @Test
+    public void testPersistentSnapshotIsIsolatedFromWrites() {
+        testIsolation(
+            factory.createPersistent(new BuildingAttributesStrategy(), hashFactory, BITS)
+        );
+    }
+
+    @Test
+    public void testCheckpointedSnapshotIsIsolatedFromWrites() {
+        testIsolation(
+            factory
+                .createCheckpointed(
+                    new BuildingAttributesStrategy(), hashFactory, BITS,
+                    new CheckpointHistory<>(8, 100000)
+                )
+        );
+    }
+
+    @Test
+    public void testSnapshotIsReadOnly() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        insertBuildings(db, 0, 10);
+        DatabaseSnapshot<Building> snapshot = db.snapshot();
+
+        assertThrows(
+            UnsupportedOperationException.class,
+            () -> snapshot.insert(DataAndPosition.with(1, 1, new Building("x", 1, 1)))
+        );
+        assertThrows(
+            UnsupportedOperationException.class, () -> snapshot.delete(Position.with(1, 1))
+        );
+
+        snapshot.close();
+        assertThrows(
+            IllegalStateException.class, () -> snapshot.contains(Position.with(1, 1), 0)
+        );
+    }
+
+    @Test
+    public void testSnapshotSurvivesCompaction() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        insertBuildings(db, 0, 100);
+        DatabaseSnapshot<Building> snapshot = db.snapshot();
+        insertBuildings(db, 100, 150);
+        db.compact(150);
+
+        assertEquals(100, snapshot.nearby(Position.with(0, 0), 0).size());
+        assertEquals(20, snapshot.databaseStateAtTime(20).nearby(Position.with(0, 0), 0).size());
+    }
+
+    @Test
+    public void testQueriesDuringIngest() throws Exception {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        insertBuildings(db, 0, 1000);
+        DatabaseSnapshot<Building> snapshot = db.snapshot();
+
+        ExecutorService readers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Long> first = readers
+                .submit(
+                    () -> total(
+                        snapshot
+                            .histogramNearby(
+                                AttributeMatcher
+                                    .named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET),
+                                Position.with(0, 0), 0
+                            )
+                    )
+                );
+            Future<Boolean> second = readers
+                .submit(() -> snapshot.contains(Position.with(19, 19), BITS));
+            insertBuildings(db, 1000, 5000);
+            db.delete(Position.with(19, 19));
+
+            assertEquals(1000, (long)first.get());
+            assertTrue(second.get());
+            assertFalse(db.contains(Position.with(19, 19), BITS));
+        } finally {
+            readers.shutdown();
+        }
+    }
+}
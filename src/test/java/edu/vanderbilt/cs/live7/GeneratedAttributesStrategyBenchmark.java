@@ -0,0 +1,64 @@
+package edu.vanderbilt.cs.live7;
+
+import java.util.function.ToDoubleFunction;
+
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+/**
+ * Compares the time to read one attribute of every building through the hand-written
+ * BuildingAttributesStrategy and through a generated strategy. Timing is too noisy to
+ * assert on in a unit test, so this is run by hand:
+ *
+ * java -cp <classes> edu.vanderbilt.cs.live7.GeneratedAttributesStrategyBenchmark
+ */
+public class GeneratedAttributesStrategyBenchmark {
+    private static final int BUILDINGS = 200000;
+    private static final int PASSES = 15;
+
+    public static void main(String[] args) {
+        Building[] buildings = new Building[BUILDINGS];
+        for(int i = 0; i < buildings.length; i++) {
+            buildings[i] = new Building("b" + i, i + 1, i % 7);
+        }
+        BuildingAttributesStrategy handWritten = new BuildingAttributesStrategy();
+        GeneratedAttributesStrategy<Building> generated =
+            AttributesStrategies.forClass(Building.class);
+
+        report(
+            "hand-written", buildings,
+            b -> (Double)handWritten
+                .getAttribute(b, BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET)
+                .getValue()
+        );
+        report(
+            "generated", buildings,
+            b -> (Double)generated.getAttribute(b, "sizeInSquareFeet").getValue()
+        );
+        report("primitive", buildings, b -> generated.getDouble(b, "sizeInSquareFeet"));
+    }
+
+    /**
+     * Prints the best of several timed passes that sum one attribute over the buildings.
+     */
+    private static void report(
+        String label,
+        Building[] buildings,
+        ToDoubleFunction<Building> read
+    ) {
+        long best = Long.MAX_VALUE;
+        double checksum = 0;
+        for(int pass = 0; pass < PASSES; pass++) {
+            long start = System.nanoTime();
+            for(Building building : buildings) {
+                checksum += read.applyAsDouble(building);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out
+            .printf(
+                "%s: %.1f ns/read (checksum %.0f)%n", label,
+                (double)best / buildings.length, checksum
+            );
+    }
+}
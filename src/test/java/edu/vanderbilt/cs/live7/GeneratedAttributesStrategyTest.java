@@ -0,0 +1,122 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+public class GeneratedAttributesStrategyTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    public static class Room {
+        private final int seats;
+        private final boolean accessible;
+
+        public Room(int seats, boolean accessible) {
+            this.seats = seats;
+            this.accessible = accessible;
+        }
+
+        public int getSeats() {
+            return seats;
+        }
+
+        public boolean isAccessible() {
+            return accessible;
+        }
+
+        public static Room getDefault() {
+            return new Room(0, false);
+        }
+    }
+
+    public static class Shape {
+        public Number getArea() {
+            return 1;
+        }
+    }
+
+    public static class Square extends Shape {
+        @Override
+        public Double getArea() {
+            return 4.0;
+        }
+    }
+
+    @Test
+    public void testGettersBecomeAttributes() {
+        GeneratedAttributesStrategy<Building> strategy =
+            AttributesStrategies.forClass(Building.class);
+        assertEquals(
+            List.of("classRooms", "name", "sizeInSquareFeet"),
+            strategy.getAttributeNames()
+        );
+
+        Building building = new Building("Featheringill", 1200, 12);
+        Attribute size = strategy.getAttribute(building, "sizeInSquareFeet");
+        assertEquals(Double.class, size.getType());
+        assertEquals(1200.0, size.getValue());
+        assertEquals("Featheringill", strategy.getAttribute(building, "name").getValue());
+        assertNull(strategy.getAttribute(building, "class"));
+        assertEquals(3, strategy.getAttributes(building).size());
+        assertEquals(12, strategy.getDouble(building, "classRooms"));
+        assertThrows(
+            IllegalArgumentException.class, () -> strategy.getDouble(building, "name")
+        );
+
+        GeneratedAttributesStrategy<Room> rooms =
+            AttributesStrategies.forClass(Room.class);
+        assertEquals(List.of("accessible", "seats"), rooms.getAttributeNames());
+        Room room = new Room(40, true);
+        assertEquals(Integer.class, rooms.getAttribute(room, "seats").getType());
+        assertEquals(40, rooms.getAttribute(room, "seats").getValue());
+        assertEquals(40.0, rooms.getDouble(room, "seats"));
+        assertEquals(true, rooms.getAttribute(room, "accessible").getValue());
+    }
+
+    @Test
+    public void testCovariantOverrideIsOneAttribute() {
+        GeneratedAttributesStrategy<Square> squares =
+            AttributesStrategies.forClass(Square.class);
+        assertEquals(List.of("area"), squares.getAttributeNames());
+        Attribute area = squares.getAttribute(new Square(), "area");
+        assertEquals(Double.class, area.getType());
+        assertEquals(4.0, area.getValue());
+        assertEquals(1, squares.getAttributes(new Square()).size());
+    }
+
+    @Test
+    public void testQueriesWithGeneratedStrategy() {
+        AttributesStrategy<Building> strategy = AttributesStrategies.forClass(Building.class);
+        ProximityStreamDB<Building> generated = factory.create(strategy, hashFactory, BITS);
+        ProximityStreamDB<Building> handWritten =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        for(int i = 0; i < 500; i++) {
+            DataAndPosition<Building> item =
+                DataAndPosition.with(i % 13, i % 17, new Building("b" + i, i * 3, i % 5));
+            generated.insert(item);
+            handWritten.insert(item);
+        }
+
+        Position origin = Position.with(0, 0);
+        AttributeMatcher<Double> size =
+            AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+        assertEquals(
+            handWritten.averageNearby(size, origin, 0),
+            generated.averageNearby(AttributeMatcher.named("sizeInSquareFeet"), origin, 0)
+        );
+    }
+}
@@ -0,0 +1,270 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.MappedProximityDB;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live6.ProximityDB;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+import edu.vanderbilt.cs.live7.example.BuildingCodec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class MappedSnapshotTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private static List<String> names(Collection<DataAndPosition<Building>> items) {
+        return items
+            .stream()
+            .map(dpos -> dpos.getData().getName())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private static DataAndPosition<Building> randomBuilding(Random random, int i) {
+        return DataAndPosition
+            .with(
+                random.nextDouble() * 20, random.nextDouble() * 20,
+                new Building("b" + i, i, i % 5)
+            );
+    }
+
+    @Test
+    public void testSnapshotMatchesDatabase() throws IOException {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Random random = new Random(5);
+        List<Position> positions = new ArrayList<>();
+        for(int i = 0; i < 500; i++) {
+            DataAndPosition<Building> item = randomBuilding(random, i);
+            positions.add(item);
+            db.insert(item);
+        }
+
+        Path file = Files.createTempFile("snapshot", ".pdb");
+        try {
+            MappedProximityDB.snapshot(db, BITS, hashFactory, new BuildingCodec(), file);
+            ProximityStreamDB<Building> mapped = factory
+                .createFromSnapshot(
+                    new BuildingAttributesStrategy(), hashFactory, new BuildingCodec(), file
+                );
+
+            for(Position pos : positions) {
+                for(int bits = 0; bits <= BITS; bits += 2) {
+                    assertEquals(db.contains(pos, bits), mapped.contains(pos, bits));
+                    assertEquals(
+                        names(db.nearby(pos, bits)), names(mapped.nearby(pos, bits))
+                    );
+                }
+            }
+            AttributeMatcher<Double> sqft =
+                AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+            assertEquals(
+                db.averageNearby(sqft, positions.get(0), 4),
+                mapped.averageNearby(sqft, positions.get(0), 4)
+            );
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUpdatesMergeWithMappedBase() throws IOException {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Random random = new Random(9);
+        for(int i = 0; i < 200; i++) {
+            db.insert(randomBuilding(random, i));
+        }
+
+        Path file = Files.createTempFile("snapshot", ".pdb");
+        try {
+            MappedProximityDB.snapshot(db, BITS, hashFactory, new BuildingCodec(), file);
+            MappedProximityDB<Building> mapped =
+                MappedProximityDB.open(file, hashFactory, new BuildingCodec());
+
+            List<Position> positions = new ArrayList<>();
+            for(int i = 200; i < 600; i++) {
+                double roll = random.nextDouble();
+                if (roll < 0.6 || positions.isEmpty()) {
+                    DataAndPosition<Building> item = randomBuilding(random, i);
+                    positions.add(item);
+                    db.insert(item);
+                    mapped.insert(item);
+                } else if (roll < 0.9) {
+                    Position pos = positions.get(random.nextInt(positions.size()));
+                    assertEquals(names(db.delete(pos)), names(mapped.delete(pos)));
+                } else {
+                    Position pos = positions.get(random.nextInt(positions.size()));
+                    int bits = 4 + random.nextInt(BITS - 4);
+                    assertEquals(
+                        names(db.delete(pos, bits)), names(mapped.delete(pos, bits))
+                    );
+                }
+            }
+
+            for(Position pos : positions) {
+                for(int bits = 0; bits <= BITS; bits += 4) {
+                    assertEquals(db.contains(pos, bits), mapped.contains(pos, bits));
+                    assertEquals(
+                        names(db.nearby(pos, bits)), names(mapped.nearby(pos, bits))
+                    );
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testHistoryStartsFromMappedBase() throws IOException {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Random random = new Random(3);
+        for(int i = 0; i < 5; i++) {
+            db.insert(randomBuilding(random, i));
+        }
+
+        Path file = Files.createTempFile("snapshot", ".pdb");
+        try {
+            MappedProximityDB.snapshot(db, BITS, hashFactory, new BuildingCodec(), file);
+            ProximityStreamDB<Building> mapped = factory
+                .createFromSnapshot(
+                    new BuildingAttributesStrategy(), hashFactory, new BuildingCodec(), file
+                );
+            for(int i = 5; i < 8; i++) {
+                mapped.insert(randomBuilding(random, i));
+            }
+            mapped.delete(db.nearby(Position.with(0, 0), 0).iterator().next());
+
+            Position everywhere = Position.with(0, 0);
+            assertEquals(5, mapped.databaseStateAtTime(0).nearby(everywhere, 0).size());
+            assertEquals(8, mapped.databaseStateAtTime(3).nearby(everywhere, 0).size());
+            assertEquals(
+                names(mapped.nearby(everywhere, 0)),
+                names(mapped.snapshot().nearby(everywhere, 0))
+            );
+            assertEquals(7, mapped.snapshot().nearby(everywhere, 0).size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParallelReplayFromMappedBase() throws IOException {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Random random = new Random(6);
+        for(int i = 0; i < 2; i++) {
+            db.insert(randomBuilding(random, i));
+        }
+
+        Path file = Files.createTempFile("snapshot", ".pdb");
+        try {
+            MappedProximityDB.snapshot(db, BITS, hashFactory, new BuildingCodec(), file);
+            ProximityStreamDB<Building> mapped = new NaiveProximityStreamDB<>(
+                MappedProximityDB.open(file, hashFactory, new BuildingCodec()),
+                new BuildingAttributesStrategy(),
+                new ParallelReplayHistory<>(hashFactory, BITS, 2)
+            );
+            for(int i = 2; i < 12; i++) {
+                mapped.insert(randomBuilding(random, i));
+            }
+
+            Position everywhere = Position.with(0, 0);
+            assertEquals(2, mapped.databaseStateAtTime(0).nearby(everywhere, 0).size());
+            assertEquals(3, mapped.databaseStateAtTime(1).nearby(everywhere, 0).size());
+            assertEquals(
+                names(mapped.nearby(everywhere, 0)),
+                names(mapped.databaseStateAtTime(10).nearby(everywhere, 0))
+            );
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCopyIsIndependent() throws IOException {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Random random = new Random(4);
+        for(int i = 0; i < 20; i++) {
+            db.insert(randomBuilding(random, i));
+        }
+
+        Path file = Files.createTempFile("snapshot", ".pdb");
+        try {
+            MappedProximityDB.snapshot(db, BITS, hashFactory, new BuildingCodec(), file);
+            MappedProximityDB<Building> mapped =
+                MappedProximityDB.open(file, hashFactory, new BuildingCodec());
+            Position first = db.nearby(Position.with(0, 0), 0).iterator().next();
+            mapped.delete(first);
+            mapped.insert(randomBuilding(random, 20));
+
+            ProximityDB<Building> copy = mapped.copy();
+            assertEquals(
+                names(mapped.nearby(Position.with(0, 0), 0)),
+                names(copy.nearby(Position.with(0, 0), 0))
+            );
+            copy.delete(Position.with(0, 0), 0);
+            copy.insert(randomBuilding(random, 21));
+            assertEquals(20, mapped.nearby(Position.with(0, 0), 0).size());
+            assertEquals(1, copy.nearby(Position.with(0, 0), 0).size());
+            assertEquals(20, mapped.baseClone().nearby(Position.with(0, 0), 0).size());
+            assertTrue(mapped.emptyClone().nearby(Position.with(0, 0), 0).isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmptySnapshot() throws IOException {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Path file = Files.createTempFile("snapshot", ".pdb");
+        try {
+            MappedProximityDB.snapshot(db, BITS, hashFactory, new BuildingCodec(), file);
+            MappedProximityDB<Building> mapped =
+                MappedProximityDB.open(file, hashFactory, new BuildingCodec());
+
+            assertFalse(mapped.contains(Position.with(0, 0), 0));
+            mapped.insert(DataAndPosition.with(1, 1, new Building("a", 1, 1)));
+            assertTrue(mapped.contains(Position.with(1, 1), BITS));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = Files.createTempFile("snapshot", ".pdb");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3 });
+            assertThrows(
+                IOException.class,
+                () -> MappedProximityDB.open(file, hashFactory, new BuildingCodec())
+            );
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.OptionalDouble;
+import java.util.Random;
+
+public class MaterializedViewsTest {
+    private static final int BITS = 16;
+    private static final int VIEW_BITS = 4;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private final AttributeMatcher<Double> size =
+        AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+    private final Position center = Position.with(10, 20);
+
+    private void assertMatchesQueries(
+        ProximityStreamDB<Building> db,
+        MaterializedAggregate<Building> view
+    ) {
+        assertEquals(
+            db.streamNearby(size, center, VIEW_BITS).count(), view.getCount()
+        );
+        assertEquals(db.minNearby(size, center, VIEW_BITS), view.getMin());
+        assertEquals(db.maxNearby(size, center, VIEW_BITS), view.getMax());
+        OptionalDouble average = db.averageNearby(size, center, VIEW_BITS);
+        assertEquals(average.isPresent(), view.getAverage().isPresent());
+        if (average.isPresent()) {
+            assertEquals(average.getAsDouble(), view.getAverage().getAsDouble(), 1e-6);
+        }
+    }
+
+    private static void insert(
+        ProximityStreamDB<Building> db,
+        Position pos,
+        Building building
+    ) {
+        db.insert(DataAndPosition.with(pos.getLatitude(), pos.getLongitude(), building));
+    }
+
+    private static Position randomPosition(Random random) {
+        return Position.with(random.nextInt(40) - 10, random.nextInt(80) - 20);
+    }
+
+    @Test
+    public void testViewsFollowUpdates() {
+        ProximityStreamDB<Building> db =
+            factory.createMaterialized(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Random random = new Random(45);
+        for(int i = 0; i < 100; i++) {
+            Position pos = randomPosition(random);
+            Building building = new Building("b" + i, random.nextInt(50), 1);
+            insert(db, pos, building);
+        }
+        MaterializedAggregate<Building> view =
+            db.materialize("size", size, center, VIEW_BITS);
+        assertTrue(view.getCount() > 0);
+        assertMatchesQueries(db, view);
+        assertSame(view, db.materialize("size", size, center, VIEW_BITS));
+        assertSame(view, db.materialized("size", center, VIEW_BITS).get());
+        assertFalse(db.materialized("area", center, VIEW_BITS).isPresent());
+
+        for(int i = 0; i < 300; i++) {
+            Position pos = randomPosition(random);
+            switch(random.nextInt(5)) {
+            case 0:
+                db.delete(pos);
+                break;
+            case 1:
+                db.delete(pos, BITS / 2);
+                break;
+            case 2:
+                db.undo();
+                break;
+            default:
+                Building building = new Building("c" + i, random.nextInt(50), 1);
+                insert(db, pos, building);
+            }
+            assertMatchesQueries(db, view);
+        }
+    }
+
+    @Test
+    public void testNestedAndSiblingViews() {
+        ProximityStreamDB<Building> db =
+            factory.createMaterialized(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Position[] centers = { center, Position.with(-5, 50), Position.with(25, -10) };
+        int[] precisions = { 1, VIEW_BITS, 2 * VIEW_BITS };
+        for(Position pos : centers) {
+            for(int bits : precisions) {
+                db.materialize("size", size, pos, bits);
+            }
+        }
+
+        Random random = new Random(46);
+        for(int i = 0; i < 200; i++) {
+            Position pos = randomPosition(random);
+            insert(db, pos, new Building("b" + i, random.nextInt(50), 1));
+            if (random.nextInt(4) == 0) {
+                db.delete(randomPosition(random), BITS / 4);
+            }
+        }
+        for(Position pos : centers) {
+            for(int bits : precisions) {
+                assertEquals(
+                    db.streamNearby(size, pos, bits).count(),
+                    db.materialized("size", pos, bits).get().getCount()
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testViewsSurviveClones() {
+        ProximityStreamDB<Building> db =
+            factory.createMaterialized(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db.materialize("size", size, center, VIEW_BITS);
+        Random random = new Random(46);
+        for(int i = 0; i < 200; i++) {
+            Position pos = randomPosition(random);
+            if (i % 4 == 3) {
+                db.delete(pos, BITS / 2);
+            } else {
+                Building building = new Building("b" + i, random.nextInt(50), 1);
+                insert(db, pos, building);
+            }
+        }
+
+        for(int n : new int[] { 0, 1, 57, 150, 200 }) {
+            ProximityStreamDB<Building> past = db.databaseStateAtTime(n);
+            MaterializedAggregate<Building> view =
+                past.materialized("size", center, VIEW_BITS).get();
+            assertMatchesQueries(past, view);
+
+            past.insert(DataAndPosition.with(10, 20, new Building("new", 1000, 1)));
+            assertMatchesQueries(past, view);
+            assertEquals(1000, view.getMax().getAsDouble());
+        }
+        assertMatchesQueries(db, db.materialized("size", center, VIEW_BITS).get());
+
+        ProximityStreamDB<Building> empty = (ProximityStreamDB<Building>)db.emptyClone();
+        assertEquals(0, empty.materialized("size", center, VIEW_BITS).get().getCount());
+    }
+
+    @Test
+    public void testViewsRequireSupport() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        assertThrows(
+            UnsupportedOperationException.class,
+            () -> db.materialize("size", size, center, VIEW_BITS)
+        );
+        assertFalse(db.materialized("size", center, VIEW_BITS).isPresent());
+    }
+}
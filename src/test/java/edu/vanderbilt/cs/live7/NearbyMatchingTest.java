@@ -0,0 +1,148 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+public class NearbyMatchingTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+    private final Position origin = Position.with(0, 0);
+
+    /**
+     * Counts how often all of the attributes of an item are built.
+     */
+    private static class CountingStrategy extends BuildingAttributesStrategy {
+        private int fullExtractions = 0;
+
+        @Override
+        public Collection<Attribute> getAttributes(Building data) {
+            fullExtractions++;
+            return super.getAttributes(data);
+        }
+    }
+
+    private static boolean hasValue(
+        Collection<Attribute> attributes,
+        String name,
+        double min
+    ) {
+        return attributes
+            .stream()
+            .anyMatch(
+                attr -> attr.getName().equals(name) && (Double)attr.getValue() >= min
+            );
+    }
+
+    private static List<String> names(Collection<DataAndPosition<Building>> items) {
+        return items
+            .stream()
+            .map(dpos -> dpos.getData().getName())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private ProximityStreamDB<Building> insertBuildings(CountingStrategy strategy) {
+        ProximityStreamDB<Building> db = factory.create(strategy, hashFactory, BITS);
+        for(int i = 0; i < 1000; i++) {
+            Building building = new Building("b" + i, i, i % 10);
+            db.insert(DataAndPosition.with(i % 31, i % 37, building));
+        }
+        return db;
+    }
+
+    @Test
+    public void testNearbyMatching() {
+        CountingStrategy strategy = new CountingStrategy();
+        ProximityStreamDB<Building> db = insertBuildings(strategy);
+        Predicate<Collection<Attribute>> large =
+            attributes -> hasValue(attributes, BuildingAttributesStrategy.CLASSROOMS, 8);
+
+        List<DataAndPosition<Building>> expected = db
+            .nearby(origin, 0)
+            .stream()
+            .filter(dpos -> large.test(strategy.getAttributes(dpos.getData())))
+            .collect(Collectors.toList());
+        assertEquals(200, expected.size());
+        assertEquals(
+            names(expected),
+            names(db.nearbyMatching(origin, 0, large).collect(Collectors.toList()))
+        );
+
+        strategy.fullExtractions = 0;
+        assertEquals(5, db.nearbyMatching(origin, 0, large).limit(5).count());
+        assertTrue(
+            strategy.fullExtractions < 100, strategy.fullExtractions + " extractions"
+        );
+    }
+
+    @Test
+    public void testNearbyMatchingAll() {
+        CountingStrategy strategy = new CountingStrategy();
+        ProximityStreamDB<Building> db = insertBuildings(strategy);
+        AttributeMatcher<Double> large =
+            attr -> attr.getName().equals(BuildingAttributesStrategy.CLASSROOMS)
+                && attr.getValue() >= 8;
+        AttributeMatcher<Double> small =
+            attr -> attr.getName().equals(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET)
+                && attr.getValue() < 500;
+
+        List<DataAndPosition<Building>> matched =
+            db.nearbyMatchingAll(origin, 0, large, small).collect(Collectors.toList());
+        assertEquals(100, matched.size());
+        matched
+            .forEach(
+                dpos -> assertTrue(
+                    dpos.getData().getClassRooms() >= 8
+                        && dpos.getData().getSizeInSquareFeet() < 500
+                )
+            );
+
+        strategy.fullExtractions = 0;
+        AttributeMatcher<Object> name =
+            AttributeMatcher.named(BuildingAttributesStrategy.NAME);
+        AttributeMatcher<Object> floors = AttributeMatcher.named("floors");
+        assertEquals(1000, db.nearbyMatchingAll(origin, 0, name).count());
+        assertEquals(0, db.nearbyMatchingAll(origin, 0, name, floors).count());
+        assertEquals(0, strategy.fullExtractions);
+        assertEquals(1000, db.nearbyMatchingAll(origin, 0).count());
+
+        DatabaseSnapshot<Building> snapshot = db.snapshot();
+        List<DataAndPosition<Building>> snapshotMatched = snapshot
+            .nearbyMatchingAll(origin, 0, large, small)
+            .collect(Collectors.toList());
+        assertEquals(names(matched), names(snapshotMatched));
+    }
+
+    @Test
+    public void testNamedMatcherSubclassIsTested() {
+        ProximityStreamDB<Building> db = insertBuildings(new CountingStrategy());
+        AttributeMatcher<Double> large =
+            new NamedAttributeMatcher<Double>(BuildingAttributesStrategy.CLASSROOMS) {
+                @Override
+                public boolean matches(Attribute<Double> attr) {
+                    return super.matches(attr) && attr.getValue() >= 8;
+                }
+            };
+
+        List<DataAndPosition<Building>> matched =
+            db.nearbyMatchingAll(origin, 0, large).collect(Collectors.toList());
+        assertEquals(200, matched.size());
+        matched.forEach(dpos -> assertTrue(dpos.getData().getClassRooms() >= 8));
+    }
+}
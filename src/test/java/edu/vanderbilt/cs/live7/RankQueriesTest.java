@@ -0,0 +1,119 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class RankQueriesTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private final AttributeMatcher<Double> size =
+        AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+
+    private static double[] insertBuildings(ProximityStreamDB<Building> db, int count) {
+        Random random = new Random(53);
+        double[] sizes = new double[count];
+        for(int i = 0; i < count; i++) {
+            sizes[i] = random.nextInt(count / 4);
+            Building building = new Building("b" + i, sizes[i], 1);
+            db.insert(DataAndPosition.with(i % 7, i % 11, building));
+        }
+        Arrays.sort(sizes);
+        return sizes;
+    }
+
+    private void testPercentiles(ProximityStreamDB<Building> db) {
+        double[] sizes = insertBuildings(db, 2001);
+        Position origin = Position.with(0, 0);
+        for(double p : new double[] { 0, 1, 10, 25, 50, 75, 90, 99.9, 100 }) {
+            int rank = Math.max(0, (int)Math.ceil(p / 100 * sizes.length) - 1);
+            assertEquals(
+                sizes[rank], db.percentileNearby(size, origin, 0, p).getAsDouble()
+            );
+        }
+        Position empty = Position.with(-45, -45);
+        assertFalse(db.percentileNearby(size, empty, BITS, 50).isPresent());
+        assertThrows(
+            IllegalArgumentException.class, () -> db.percentileNearby(size, origin, 0, 101)
+        );
+    }
+
+    @Test
+    public void testPercentileNearby() {
+        testPercentiles(
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS)
+        );
+    }
+
+    @Test
+    public void testColumnarPercentileNearby() {
+        testPercentiles(
+            factory
+                .createColumnar(
+                    new BuildingAttributesStrategy(), hashFactory, BITS,
+                    BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET
+                )
+        );
+    }
+
+    @Test
+    public void testTopKNearby() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        double[] sizes = insertBuildings(db, 1000);
+        List<Double> expected = Arrays
+            .stream(sizes)
+            .boxed()
+            .sorted(Comparator.reverseOrder())
+            .collect(Collectors.toList());
+
+        assertEquals(
+            expected.subList(0, 20),
+            db.topKNearby(size, Position.with(0, 0), 0, 20, Comparator.naturalOrder())
+        );
+        assertEquals(
+            expected,
+            db.topKNearby(size, Position.with(0, 0), 0, 5000, Comparator.naturalOrder())
+        );
+        assertEquals(
+            List.of(sizes[0], sizes[1]),
+            db.topKNearby(size, Position.with(0, 0), 0, 2, Comparator.reverseOrder())
+        );
+        assertEquals(
+            List.of(), db.topKNearby(size, Position.with(0, 0), 0, 0, Double::compare)
+        );
+    }
+
+    @Test
+    public void testSelection() {
+        Random random = new Random(59);
+        for(int trial = 0; trial < 50; trial++) {
+            double[] values = random
+                .doubles(1 + random.nextInt(300))
+                .map(x -> (int)(x * 20))
+                .toArray();
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            int rank = random.nextInt(values.length);
+            assertEquals(sorted[rank], Selection.select(values, rank));
+        }
+    }
+}
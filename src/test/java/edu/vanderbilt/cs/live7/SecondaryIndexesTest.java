@@ -0,0 +1,96 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class SecondaryIndexesTest {
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+
+    @Test
+    public void testIndexedMatchesScan() {
+        int bits = 20;
+        Random random = new Random(7);
+        BuildingAttributesStrategy strategy = new BuildingAttributesStrategy();
+        ProximityStreamDB<Building> plain =
+            new ProximityStreamDBFactory().create(strategy, hashFactory, bits);
+        ProximityStreamDB<Building> indexed = new ProximityStreamDBFactory()
+            .createIndexed(
+                strategy, hashFactory, bits,
+                new SecondaryIndexes<>(hashFactory, bits, strategy)
+                    .hashIndex(BuildingAttributesStrategy.NAME)
+                    .sortedIndex(BuildingAttributesStrategy.CLASSROOMS, Double.class)
+            );
+
+        List<Position> positions = new ArrayList<>();
+        for(int i = 0; i < 400; i++) {
+            Position pos = Position
+                .with(random.nextDouble() * 10, random.nextDouble() * 10);
+            Building b = new Building("b" + (i % 40), 1000, i % 30);
+            positions.add(pos);
+            plain.insert(DataAndPosition.with(pos.getLatitude(), pos.getLongitude(), b));
+            indexed.insert(DataAndPosition.with(pos.getLatitude(), pos.getLongitude(), b));
+        }
+        for(int i = 0; i < 40; i++) {
+            plain.delete(positions.get(i));
+            indexed.delete(positions.get(i));
+        }
+        plain.delete(positions.get(50), 6);
+        indexed.delete(positions.get(50), 6);
+
+        List<ValuePredicate<?>> classroomPredicates = new ArrayList<>();
+        classroomPredicates.add(ValuePredicate.greaterThan(20.0));
+        classroomPredicates.add(ValuePredicate.atMost(3.0));
+        classroomPredicates.add(ValuePredicate.between(10.0, 12.0));
+        classroomPredicates.add(ValuePredicate.equalTo(5.0));
+        classroomPredicates.add(ValuePredicate.<Double>of(v -> v > 25));
+
+        for(int i = 0; i < positions.size(); i += 9) {
+            for(int precision : new int[] { 0, 3, 6, 10, bits }) {
+                Position pos = positions.get(i);
+                assertEquals(
+                    names(plain, pos, precision, BuildingAttributesStrategy.NAME,
+                        ValuePredicate.equalTo("b7")),
+                    names(indexed, pos, precision, BuildingAttributesStrategy.NAME,
+                        ValuePredicate.equalTo("b7"))
+                );
+                for(ValuePredicate<?> predicate : classroomPredicates) {
+                    assertEquals(
+                        names(plain, pos, precision,
+                            BuildingAttributesStrategy.CLASSROOMS, predicate),
+                        names(indexed, pos, precision,
+                            BuildingAttributesStrategy.CLASSROOMS, predicate)
+                    );
+                }
+            }
+        }
+    }
+
+    private static List<String> names(
+        ProximityStreamDB<Building> db,
+        Position pos,
+        int bits,
+        String attributeName,
+        ValuePredicate<?> predicate
+    ) {
+        return db
+            .nearbyWhere(pos, bits, attributeName, predicate)
+            .stream()
+            .map(dpos -> dpos.getData().getName() + "@" + dpos.getLatitude())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+}
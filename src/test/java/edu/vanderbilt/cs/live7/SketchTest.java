@@ -0,0 +1,159 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class SketchTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private static void assertWithinRelativeError(long expected, long actual, double error) {
+        assertTrue(
+            Math.abs(actual - expected) <= error * expected,
+            "expected " + expected + " but estimated " + actual
+        );
+    }
+
+    /**
+     * Checks that the estimate's rank in the sorted values is within the error of q.
+     */
+    private static void assertRankWithin(
+        double[] sorted,
+        double q,
+        double estimate,
+        double rankError
+    ) {
+        int low = lowerBound(sorted, estimate);
+        int high = lowerBound(sorted, Math.nextUp(estimate));
+        double target = q * sorted.length;
+        double slack = rankError * sorted.length;
+        assertTrue(
+            low - slack <= target && target <= high + slack,
+            "q=" + q + " estimated " + estimate + " with ranks " + low + "-" + high
+        );
+    }
+
+    private static int lowerBound(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while(index > 0 && sorted[index - 1] == value) {
+            index--;
+        }
+        return index;
+    }
+
+    @Test
+    public void testHyperLogLogAccuracy() {
+        for(int distinct : new int[] { 10, 1000, 200000 }) {
+            HyperLogLog sketch = HyperLogLog.withRelativeError(0.01);
+            for(int i = 0; i < distinct; i++) {
+                sketch.add("name-" + i);
+                sketch.add("name-" + (i / 2));
+            }
+            assertWithinRelativeError(
+                distinct, sketch.estimate(), 3 * sketch.getRelativeError()
+            );
+        }
+    }
+
+    @Test
+    public void testHyperLogLogRejectsUnreachableError() {
+        HyperLogLog finest = HyperLogLog.withRelativeError(0.0021);
+        assertEquals(HyperLogLog.MAX_PRECISION, finest.getPrecision());
+        assertThrows(
+            IllegalArgumentException.class, () -> HyperLogLog.withRelativeError(0.001)
+        );
+    }
+
+    @Test
+    public void testHyperLogLogMerge() {
+        HyperLogLog left = new HyperLogLog(14);
+        HyperLogLog right = new HyperLogLog(14);
+        for(int i = 0; i < 60000; i++) {
+            left.add(i);
+            right.add(i + 30000);
+        }
+        HyperLogLog union = left.merge(right);
+        assertWithinRelativeError(90000, union.estimate(), 3 * union.getRelativeError());
+        assertThrows(IllegalArgumentException.class, () -> left.merge(new HyperLogLog(12)));
+    }
+
+    @Test
+    public void testKllAccuracyAndMerge() {
+        Random random = new Random(43);
+        double[] values = new double[200000];
+        KllSketch whole = new KllSketch(200, new Random(1));
+        KllSketch first = new KllSketch(200, new Random(2));
+        KllSketch second = new KllSketch(200, new Random(3));
+        for(int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 1000;
+            whole.add(values[i]);
+            (i % 2 == 0 ? first : second).add(values[i]);
+        }
+        KllSketch merged = first.merge(second);
+        Arrays.sort(values);
+
+        assertEquals(values.length, merged.getCount());
+        assertEquals(values[0], whole.quantile(0));
+        assertEquals(values[values.length - 1], merged.quantile(1));
+        for(double q : new double[] { 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99 }) {
+            assertRankWithin(values, q, whole.quantile(q), whole.getRankError());
+            assertRankWithin(values, q, merged.quantile(q), merged.getRankError());
+        }
+    }
+
+    @Test
+    public void testSketchesNearby() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db.useSketchCoins(new Random(53));
+        Random random = new Random(47);
+        double[] sizes = new double[20000];
+        for(int i = 0; i < sizes.length; i++) {
+            sizes[i] = random.nextInt(100000);
+            db
+                .insert(
+                    DataAndPosition
+                        .with(i % 50, i % 30, new Building("b" + (i % 15000), sizes[i], 1))
+                );
+        }
+        Arrays.sort(sizes);
+
+        HyperLogLog names = db
+            .approxDistinctNearby(
+                AttributeMatcher.named(BuildingAttributesStrategy.NAME),
+                Position.with(0, 0), 0, 0.02
+            );
+        assertTrue(names.getRelativeError() <= 0.02);
+        assertWithinRelativeError(15000, names.estimate(), 3 * names.getRelativeError());
+
+        KllSketch quantiles = db
+            .approxQuantilesNearby(
+                AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET),
+                Position.with(0, 0), 0, 0.01
+            );
+        assertEquals(sizes.length, quantiles.getCount());
+        assertTrue(quantiles.getRankError() <= 0.01);
+        double[] estimates = quantiles.quantiles(0.05, 0.5, 0.95);
+        assertRankWithin(sizes, 0.05, estimates[0], quantiles.getRankError());
+        assertRankWithin(sizes, 0.5, estimates[1], quantiles.getRankError());
+        assertRankWithin(sizes, 0.95, estimates[2], quantiles.getRankError());
+    }
+}
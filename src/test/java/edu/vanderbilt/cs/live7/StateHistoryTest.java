@@ -0,0 +1,315 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.ArrayListPrecisionTreeFactory;
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live6.ProximityDB;
+import edu.vanderbilt.cs.live6.ProximityDbTree;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class StateHistoryTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    /**
+     * Applies the same random sequence of inserts and deletes to every database.
+     */
+    private List<Position> applyRandomOperations(
+        long seed,
+        int count,
+        List<ProximityStreamDB<Building>> dbs
+    ) {
+        Random random = new Random(seed);
+        List<Position> positions = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            double roll = random.nextDouble();
+            if (roll < 0.7 || positions.isEmpty()) {
+                Position pos = Position
+                    .with(random.nextDouble() * 20, random.nextDouble() * 20);
+                positions.add(pos);
+                Building b = new Building("b" + i, i, i % 5);
+                DataAndPosition<Building> item =
+                    DataAndPosition.with(pos.getLatitude(), pos.getLongitude(), b);
+                dbs.forEach(db -> db.insert(item));
+            } else if (roll < 0.9) {
+                Position pos = positions.get(random.nextInt(positions.size()));
+                dbs.forEach(db -> db.delete(pos));
+            } else {
+                Position pos = positions.get(random.nextInt(positions.size()));
+                int bits = 4 + random.nextInt(BITS - 4);
+                dbs.forEach(db -> db.delete(pos, bits));
+            }
+        }
+        return positions;
+    }
+
+    private static List<String> contents(ProximityStreamDB<Building> db) {
+        return db
+            .nearby(Position.with(0, 0), 0)
+            .stream()
+            .map(dpos -> dpos.getData().getName())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private void assertSameHistory(
+        ProximityStreamDB<Building> expected,
+        ProximityStreamDB<Building> actual,
+        int operations
+    ) {
+        for(int n = 0; n <= operations; n++) {
+            assertEquals(
+                contents(expected.databaseStateAtTime(n)),
+                contents(actual.databaseStateAtTime(n))
+            );
+        }
+        assertEquals(contents(expected), contents(actual));
+    }
+
+    @Test
+    public void testPersistentHistory() {
+        ProximityStreamDB<Building> replay =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        ProximityStreamDB<Building> persistent =
+            factory.createPersistent(new BuildingAttributesStrategy(), hashFactory, BITS);
+
+        List<ProximityStreamDB<Building>> dbs = new ArrayList<>();
+        dbs.add(replay);
+        dbs.add(persistent);
+        List<Position> positions = applyRandomOperations(11, 300, dbs);
+
+        assertSameHistory(replay, persistent, 300);
+        for(Position pos : positions) {
+            for(int bits = 0; bits <= BITS; bits += 4) {
+                assertEquals(replay.contains(pos, bits), persistent.contains(pos, bits));
+                assertEquals(
+                    replay.nearby(pos, bits).size(),
+                    persistent.nearby(pos, bits).size()
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testUndoingTheTailMatchesReplay() {
+        ProximityStreamDB<Building> replay =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        List<ProximityStreamDB<Building>> dbs = new ArrayList<>();
+        dbs.add(replay);
+        applyRandomOperations(7, 300, dbs);
+
+        // A snapshot always replays forward from the base state, while the database
+        // itself undoes the tail of the log for states closer to the current one.
+        DatabaseSnapshot<Building> snapshot = replay.snapshot();
+        for(int n = 0; n <= 300; n++) {
+            assertEquals(
+                contents(snapshot.databaseStateAtTime(n)),
+                contents(replay.databaseStateAtTime(n))
+            );
+        }
+        assertEquals(contents(snapshot), contents(replay));
+    }
+
+    @Test
+    public void testParallelReplayHistory() {
+        ProximityStreamDB<Building> replay =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        ProximityStreamDB<Building> parallel = factory
+            .createParallelReplay(new BuildingAttributesStrategy(), hashFactory, BITS, 6);
+
+        List<ProximityStreamDB<Building>> dbs = new ArrayList<>();
+        dbs.add(replay);
+        dbs.add(parallel);
+        applyRandomOperations(37, 200, dbs);
+        dbs.forEach(db -> db.delete(Position.with(5, 5), 2));
+        applyRandomOperations(41, 100, dbs);
+        ((NaiveProximityStreamDB<Building>)parallel).compact(150);
+
+        DatabaseSnapshot<Building> snapshot = parallel.snapshot();
+        for(int n = 150; n <= 301; n++) {
+            assertEquals(
+                contents(replay.databaseStateAtTime(n)),
+                contents(snapshot.databaseStateAtTime(n))
+            );
+        }
+        ProximityStreamDB<Building> past = snapshot.databaseStateAtTime(250);
+        for(int bits = 0; bits <= BITS; bits += 3) {
+            Position pos = Position.with(7, 3);
+            assertEquals(
+                replay.databaseStateAtTime(250).nearby(pos, bits).size(),
+                past.nearby(pos, bits).size()
+            );
+        }
+    }
+
+    @Test
+    public void testHistoricalStateIsIsolated() {
+        ProximityStreamDB<Building> persistent =
+            factory.createPersistent(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Position pos = Position.with(1, 1);
+        persistent.insert(DataAndPosition.with(1, 1, new Building("a", 1, 1)));
+
+        ProximityStreamDB<Building> past = persistent.databaseStateAtTime(0);
+        past.insert(DataAndPosition.with(1, 1, new Building("b", 1, 1)));
+        persistent.delete(pos);
+
+        assertTrue(past.contains(pos, BITS));
+        assertFalse(persistent.contains(pos, BITS));
+        assertTrue(persistent.databaseStateAtTime(1).contains(pos, BITS));
+        assertFalse(persistent.databaseStateAtTime(0).contains(pos, BITS));
+    }
+
+    @Test
+    public void testCheckpointHistory() {
+        CheckpointHistory<Building> history = new CheckpointHistory<>(16, 100000);
+        ProximityStreamDB<Building> replay =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        ProximityStreamDB<Building> checkpointed = factory
+            .createCheckpointed(new BuildingAttributesStrategy(), hashFactory, BITS, history);
+
+        List<ProximityStreamDB<Building>> dbs = new ArrayList<>();
+        dbs.add(replay);
+        dbs.add(checkpointed);
+        applyRandomOperations(13, 300, dbs);
+
+        assertEquals(300 / 16, history.getCheckpointCount());
+        assertSameHistory(replay, checkpointed, 300);
+    }
+
+    @Test
+    public void testCheckpointBudget() {
+        CheckpointHistory<Building> history = new CheckpointHistory<>(4, 200);
+        ProximityStreamDB<Building> replay =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        ProximityStreamDB<Building> checkpointed = factory
+            .createCheckpointed(new BuildingAttributesStrategy(), hashFactory, BITS, history);
+
+        List<ProximityStreamDB<Building>> dbs = new ArrayList<>();
+        dbs.add(replay);
+        dbs.add(checkpointed);
+        applyRandomOperations(17, 200, dbs);
+
+        assertTrue(history.getCheckpointedItems() <= 200);
+        assertTrue(history.getInterval() > 4);
+        assertSameHistory(replay, checkpointed, 200);
+    }
+
+    private void assertSameHistorySince(
+        ProximityStreamDB<Building> expected,
+        ProximityStreamDB<Building> actual,
+        int horizon,
+        int operations
+    ) {
+        for(int n = horizon; n <= operations; n++) {
+            assertEquals(
+                contents(expected.databaseStateAtTime(n)),
+                contents(actual.databaseStateAtTime(n))
+            );
+        }
+        assertEquals(contents(expected), contents(actual));
+    }
+
+    @Test
+    public void testCompaction() {
+        ProximityStreamDB<Building> replay =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        List<ProximityStreamDB<Building>> compacted = new ArrayList<>();
+        compacted.add(factory.create(new BuildingAttributesStrategy(), hashFactory, BITS));
+        compacted
+            .add(factory.createPersistent(new BuildingAttributesStrategy(), hashFactory, BITS));
+        compacted
+            .add(
+                factory
+                    .createCheckpointed(
+                        new BuildingAttributesStrategy(), hashFactory, BITS,
+                        new CheckpointHistory<>(16, 100000)
+                    )
+            );
+
+        List<ProximityStreamDB<Building>> dbs = new ArrayList<>(compacted);
+        dbs.add(replay);
+        applyRandomOperations(19, 200, dbs);
+        compacted.forEach(db -> ((NaiveProximityStreamDB<Building>)db).compact(120));
+        applyRandomOperations(23, 100, dbs);
+
+        for(ProximityStreamDB<Building> db : compacted) {
+            assertSameHistorySince(replay, db, 120, 300);
+            assertThrows(IllegalArgumentException.class, () -> db.databaseStateAtTime(119));
+        }
+    }
+
+    @Test
+    public void testRetentionBoundsOperations() {
+        ProximityStreamDB<Building> replay =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        ProximityStreamDB<Building> retaining =
+            factory.createRetaining(new BuildingAttributesStrategy(), hashFactory, BITS, 50);
+
+        List<ProximityStreamDB<Building>> dbs = new ArrayList<>();
+        dbs.add(replay);
+        dbs.add(retaining);
+        applyRandomOperations(29, 1000, dbs);
+
+        int horizon = ((NaiveProximityStreamDB<Building>)retaining).getRetentionHorizon();
+        assertTrue(horizon <= 1000 - 50);
+        assertTrue(horizon >= 1000 - 100);
+        assertSameHistorySince(replay, retaining, horizon, 1000);
+    }
+
+    /**
+     * A tree that counts how often it is copied.
+     */
+    private static class CountingCopies<T> extends ProximityDbTree<T> {
+        int copies;
+
+        CountingCopies(GeoHashFactory hashFactory, int bits) {
+            super(new ArrayListPrecisionTreeFactory<>(), hashFactory, bits);
+        }
+
+        @Override
+        public ProximityDB<T> copy() {
+            copies++;
+            return super.copy();
+        }
+    }
+
+    @Test
+    public void testUndoIsNotChosenWhenCopyingCostsMore() {
+        CountingCopies<Building> tree = new CountingCopies<>(hashFactory, BITS);
+        ProximityStreamDB<Building> db =
+            new NaiveProximityStreamDB<>(tree, new BuildingAttributesStrategy());
+        for(int i = 0; i < 1000; i++) {
+            Building building = new Building("b" + i, i, 1);
+            db.insert(DataAndPosition.with(i * 0.05, i * 0.1, building));
+        }
+
+        // Undoing one insert is cheaper than replaying 999, but copying the 1000 items
+        // the undo starts from is not.
+        assertEquals(999, contents(db.databaseStateAtTime(999)).size());
+        assertEquals(0, tree.copies);
+
+        // Once the deletes have emptied the database, copying it is cheap again.
+        for(int i = 0; i < 1000; i++) {
+            db.delete(Position.with(i * 0.05, i * 0.1));
+        }
+        assertEquals(1, contents(db.databaseStateAtTime(1999)).size());
+        assertEquals(1, tree.copies);
+    }
+}
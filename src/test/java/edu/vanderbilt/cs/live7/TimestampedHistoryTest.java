@@ -0,0 +1,142 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+public class TimestampedHistoryTest {
+    private static final int BITS = 16;
+    private static final Instant NINE = Instant.parse("2024-05-01T09:00:00Z");
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private static class ManualClock extends Clock {
+        private Instant now = NINE;
+
+        private void advanceMinutes(long minutes) {
+            now = now.plusSeconds(60 * minutes);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static Instant minutesAfterNine(long minutes) {
+        return NINE.plusSeconds(60 * minutes);
+    }
+
+    /**
+     * Inserts one building a minute, starting at 09:00.
+     */
+    private static void insertEveryMinute(
+        ProximityStreamDB<Building> db,
+        ManualClock clock,
+        int count
+    ) {
+        for(int i = 0; i < count; i++) {
+            db.insert(DataAndPosition.with(i % 10, i % 10, new Building("b" + i, i, 1)));
+            clock.advanceMinutes(1);
+        }
+    }
+
+    @Test
+    public void testStateAtInstant() {
+        ManualClock clock = new ManualClock();
+        ProximityStreamDB<Building> db = factory
+            .createTimestamped(new BuildingAttributesStrategy(), hashFactory, BITS, clock);
+        insertEveryMinute(db, clock, 60);
+
+        Position origin = Position.with(0, 0);
+        assertEquals(0, db.databaseStateAt(NINE.minusMillis(1)).nearby(origin, 0).size());
+        assertEquals(1, db.databaseStateAt(NINE).nearby(origin, 0).size());
+        assertEquals(31, db.databaseStateAt(minutesAfterNine(30)).nearby(origin, 0).size());
+        assertEquals(
+            31, db.snapshot().databaseStateAt(minutesAfterNine(30)).nearby(origin, 0).size()
+        );
+        assertEquals(60, db.databaseStateAt(minutesAfterNine(600)).nearby(origin, 0).size());
+    }
+
+    @Test
+    public void testOperationsBetween() {
+        ManualClock clock = new ManualClock();
+        ProximityStreamDB<Building> db = factory
+            .createTimestamped(new BuildingAttributesStrategy(), hashFactory, BITS, clock);
+        insertEveryMinute(db, clock, 60);
+
+        List<UpdateCommand<Building>> window =
+            db.operationsBetween(minutesAfterNine(10), minutesAfterNine(15));
+        assertEquals(5, window.size());
+        assertEquals(
+            "b10",
+            ((InsertCommand<Building>)window.get(0)).getDataAndPosition().getData().getName()
+        );
+        assertTrue(db.operationsBetween(minutesAfterNine(15), minutesAfterNine(10)).isEmpty());
+    }
+
+    @Test
+    public void testClockGoingBackwardsKeepsTimestampsOrdered() {
+        ManualClock clock = new ManualClock();
+        ProximityStreamDB<Building> db = factory
+            .createTimestamped(new BuildingAttributesStrategy(), hashFactory, BITS, clock);
+        insertEveryMinute(db, clock, 10);
+        clock.advanceMinutes(-30);
+        insertEveryMinute(db, clock, 2);
+
+        assertEquals(
+            9, db.databaseStateAt(minutesAfterNine(8)).nearby(Position.with(0, 0), 0).size()
+        );
+        assertEquals(
+            12, db.databaseStateAt(minutesAfterNine(9)).nearby(Position.with(0, 0), 0).size()
+        );
+    }
+
+    @Test
+    public void testCompactedTimesAreRejected() {
+        ManualClock clock = new ManualClock();
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .createTimestamped(new BuildingAttributesStrategy(), hashFactory, BITS, clock);
+        insertEveryMinute(db, clock, 60);
+        db.compact(30);
+
+        assertThrows(
+            IllegalArgumentException.class, () -> db.databaseStateAt(minutesAfterNine(20))
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> db.operationsBetween(minutesAfterNine(29), minutesAfterNine(40))
+        );
+        assertEquals(10, db.operationsBetween(minutesAfterNine(30), minutesAfterNine(40)).size());
+        assertEquals(
+            31,
+            db.databaseStateAt(minutesAfterNine(30)).nearby(Position.with(0, 0), 0).size()
+        );
+    }
+}
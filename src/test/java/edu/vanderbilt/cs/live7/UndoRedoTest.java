@@ -0,0 +1,161 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class UndoRedoTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private static List<String> contents(ProximityStreamDB<Building> db) {
+        return db
+            .nearby(Position.with(0, 0), 0)
+            .stream()
+            .map(dpos -> dpos.getData().getName())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private static DataAndPosition<Building> building(String name, double lat, double lon) {
+        return DataAndPosition.with(lat, lon, new Building(name, 100, 1));
+    }
+
+    @Test
+    public void testUndoAndRedo() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db.insert(building("a", 1, 1));
+        db.insert(building("b", 1, 1));
+        db.insert(building("c", 5, 5));
+        db.delete(Position.with(0, 0), 1);
+
+        assertEquals(List.of(), contents(db));
+        assertTrue(db.undo());
+        assertEquals(List.of("a", "b", "c"), contents(db));
+        assertTrue(db.undo());
+        assertEquals(List.of("a", "b"), contents(db));
+        assertTrue(db.undo());
+        assertEquals(List.of("a"), contents(db));
+        assertTrue(db.contains(Position.with(1, 1), BITS));
+
+        assertTrue(db.redo());
+        assertEquals(List.of("a", "b"), contents(db));
+        assertTrue(db.undo());
+        assertTrue(db.undo());
+        assertFalse(db.undo());
+        assertEquals(List.of(), contents(db));
+
+        assertTrue(db.redo());
+        db.insert(building("d", 2, 2));
+        assertFalse(db.redo());
+        assertEquals(List.of("a", "d"), contents(db));
+    }
+
+    @Test
+    public void testUndoIsRecordedAsAnOperation() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db.insert(building("a", 1, 1));
+        db.insert(building("b", 1, 1));
+        db
+            .apply(
+                List
+                    .of(
+                        new DeleteCommand<>(Position.with(1, 1)),
+                        new InsertCommand<>(building("c", 1, 1))
+                    )
+            );
+        db.undo();
+        db.undo();
+
+        assertEquals(List.of("a"), contents(db));
+        assertEquals(List.of("a", "b"), contents(db.databaseStateAtTime(2)));
+        assertEquals(List.of("c"), contents(db.databaseStateAtTime(3)));
+        assertEquals(List.of("a", "b"), contents(db.databaseStateAtTime(4)));
+        assertEquals(contents(db), contents(db.snapshot().databaseStateAtTime(5)));
+    }
+
+    @Test
+    public void testUndoKeepsObserversConsistent() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db
+            .useColumns(
+                new AttributeColumns<>(
+                    hashFactory, BITS, new BuildingAttributesStrategy(),
+                    Set.of(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET)
+                )
+            );
+        db.insert(DataAndPosition.with(1, 1, new Building("a", 100, 1)));
+        db.insert(DataAndPosition.with(1, 1, new Building("b", 300, 1)));
+        db.undo();
+
+        AttributeMatcher<Double> size =
+            AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+        assertEquals(OptionalDouble.of(100), db.averageNearby(size, Position.with(1, 1), 8));
+    }
+
+    @Test
+    public void testUndoOnlyReportsRestoredItems() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        Position location = Position.with(1, 1);
+        List<String> seen = new ArrayList<>();
+        db
+            .registerStandingQuery(
+                location, 8, data -> seen.add(data.getData().getName()), Runnable::run
+            );
+        AttributeMatcher<Double> size =
+            AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+        WindowedAggregate<Building> window = db.windowNearby(size, location, 8, 100);
+
+        db.insert(DataAndPosition.with(1, 1, new Building("a", 100, 1)));
+        db.insert(DataAndPosition.with(1, 1, new Building("b", 300, 1)));
+        db.insert(DataAndPosition.with(1, 1, new Building("c", 500, 1)));
+        db.undo();
+        assertEquals(List.of("a", "b", "c"), seen);
+        assertEquals(3, window.getCount());
+        assertEquals(900, window.getSum());
+
+        db.delete(Position.with(1, 1), 0);
+        db.undo();
+        assertEquals(5, seen.size());
+        assertEquals(Set.of("a", "b"), Set.copyOf(seen.subList(3, 5)));
+        assertEquals(5, window.getCount());
+        assertEquals(List.of("a", "b"), contents(db));
+        assertEquals(List.of("a", "b", "c"), contents(db.databaseStateAtTime(3)));
+        assertEquals(List.of("a", "b"), contents(db.databaseStateAtTime(4)));
+        assertEquals(contents(db), contents(db.databaseStateAtTime(6)));
+    }
+
+    @Test
+    public void testCompactedOperationsCannotBeUndone() {
+        NaiveProximityStreamDB<Building> db = (NaiveProximityStreamDB<Building>)factory
+            .create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db.insert(building("a", 1, 1));
+        db.insert(building("b", 2, 2));
+        db.compact(1);
+
+        assertTrue(db.undo());
+        assertFalse(db.undo());
+        assertEquals(List.of("a"), contents(db));
+    }
+}
@@ -0,0 +1,153 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.LocationCode;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class WindowedAggregateTest {
+    private static final int BITS = 16;
+    private static final int WINDOW_BITS = 4;
+    private static final Instant NINE = Instant.parse("2024-05-01T09:00:00Z");
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private final AttributeMatcher<Double> size =
+        AttributeMatcher.named(BuildingAttributesStrategy.SIZE_IN_SQUARE_FEET);
+    private final Position center = Position.with(10, 20);
+
+    private static class ManualClock extends Clock {
+        private Instant now = NINE;
+
+        private void advanceSeconds(long seconds) {
+            now = now.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    /**
+     * Compares the window with the inserts, as { tick, value } pairs, in the sub-windows
+     * that end at the current tick.
+     */
+    private static void assertWindow(
+        WindowedAggregate<Building> window,
+        List<double[]> inserts,
+        long currentTick
+    ) {
+        long width = window.getSubWindowWidth();
+        long newest = Math.floorDiv(currentTick, width);
+        long start = (newest - WindowedAggregate.SUB_WINDOWS + 1) * width;
+        long count = 0;
+        double sum = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        for(double[] insert : inserts) {
+            if (insert[0] >= start) {
+                count++;
+                sum += insert[1];
+                max = Math.max(max, insert[1]);
+            }
+        }
+        assertEquals(count, window.getCount());
+        assertEquals(sum, window.getSum(), 1e-6);
+        assertEquals(count > 0, window.getMax().isPresent());
+        if (count > 0) {
+            assertEquals(max, window.getMax().getAsDouble());
+        }
+    }
+
+    private boolean inWindow(Position pos) {
+        return LocationCode
+            .of(hashFactory, pos, WINDOW_BITS)
+            .equals(LocationCode.of(hashFactory, center, WINDOW_BITS));
+    }
+
+    @Test
+    public void testWindowOverOperations() {
+        ProximityStreamDB<Building> db =
+            factory.create(new BuildingAttributesStrategy(), hashFactory, BITS);
+        db.insert(DataAndPosition.with(10, 20, new Building("before", 7, 1)));
+        WindowedAggregate<Building> window =
+            db.windowNearby(size, center, WINDOW_BITS, 320);
+        assertEquals(10, window.getSubWindowWidth());
+        assertFalse(window.getAverage().isPresent());
+
+        Random random = new Random(47);
+        List<double[]> inserts = new ArrayList<>();
+        for(int i = 1; i < 1000; i++) {
+            Position pos = Position.with(random.nextInt(40) - 10, random.nextInt(80) - 20);
+            if (random.nextInt(4) == 0) {
+                db.delete(pos, BITS / 2);
+            } else {
+                double value = random.nextInt(1000);
+                Building building = new Building("b" + i, value, 1);
+                db.insert(DataAndPosition.with(pos.getLatitude(), pos.getLongitude(), building));
+                if (inWindow(pos)) {
+                    inserts.add(new double[] { i, value });
+                }
+            }
+            assertWindow(window, inserts, i);
+        }
+        assertTrue(window.getCount() > 0);
+
+        window.cancel();
+        db.insert(DataAndPosition.with(10, 20, new Building("after", 5000, 1)));
+        assertWindow(window, inserts, 1000);
+    }
+
+    @Test
+    public void testWindowOverTime() {
+        ManualClock clock = new ManualClock();
+        ProximityStreamDB<Building> db = factory
+            .createTimestamped(new BuildingAttributesStrategy(), hashFactory, BITS, clock);
+        WindowedAggregate<Building> window =
+            db.windowNearby(size, center, WINDOW_BITS, Duration.ofMinutes(32));
+        assertEquals(60000, window.getSubWindowWidth());
+
+        List<double[]> inserts = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            double value = i % 17;
+            db.insert(DataAndPosition.with(10, 20, new Building("b" + i, value, 1)));
+            inserts.add(new double[] { clock.millis(), value });
+            clock.advanceSeconds(20);
+            assertWindow(window, inserts, clock.millis());
+        }
+
+        clock.advanceSeconds(31 * 60);
+        assertWindow(window, inserts, clock.millis());
+        clock.advanceSeconds(60);
+        assertEquals(0, window.getCount());
+    }
+}
@@ -0,0 +1,104 @@
+package edu.vanderbilt.cs.live7;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+import edu.vanderbilt.cs.live7.example.BuildingCodec;
+
+/**
+ * Compares the time to insert the same buildings into an in-memory database and into
+ * durable databases under each SyncPolicy. Group commit every 10 ms is expected to stay
+ * within 2x of the in-memory time. Timing is too noisy to assert on in a unit test, so
+ * this is run by hand:
+ *
+ * java -cp <classes> edu.vanderbilt.cs.live7.WriteAheadLogBenchmark
+ */
+public class WriteAheadLogBenchmark {
+    private static final int BITS = 16;
+    private static final int INSERTS = 100000;
+    private static final int PASSES = 5;
+
+    private static final GeoHashFactory HASH_FACTORY = new GeoHashFactoryImpl();
+    private static final ProximityStreamDBFactory FACTORY = new ProximityStreamDBFactory();
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(31);
+        @SuppressWarnings("unchecked")
+        DataAndPosition<Building>[] items = new DataAndPosition[INSERTS];
+        for(int i = 0; i < items.length; i++) {
+            items[i] = DataAndPosition
+                .with(
+                    random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+                    new Building("b" + i, i, i % 7)
+                );
+        }
+
+        long inMemory = best(items, null);
+        report("in-memory", inMemory, inMemory);
+        report("every 10 ms", best(items, SyncPolicy.every(10)), inMemory);
+        report("os-managed", best(items, SyncPolicy.osManaged()), inMemory);
+    }
+
+    /**
+     * @param policy - null for an in-memory database
+     * @Return the fastest of several passes, in nanoseconds, including closing the log
+     */
+    private static long best(DataAndPosition<Building>[] items, SyncPolicy policy)
+        throws IOException {
+        long best = Long.MAX_VALUE;
+        for(int pass = 0; pass < PASSES; pass++) {
+            if (policy == null) {
+                long start = System.nanoTime();
+                insertAll(
+                    FACTORY.create(new BuildingAttributesStrategy(), HASH_FACTORY, BITS),
+                    items
+                );
+                best = Math.min(best, System.nanoTime() - start);
+                continue;
+            }
+
+            Path file = Files.createTempFile("wal", ".log");
+            try {
+                long start = System.nanoTime();
+                try(WriteAheadLog<Building> log =
+                    new WriteAheadLog<>(file, new BuildingCodec(), policy)) {
+                    insertAll(
+                        FACTORY
+                            .createDurable(
+                                new BuildingAttributesStrategy(), HASH_FACTORY, BITS, log
+                            ),
+                        items
+                    );
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            } finally {
+                Files.delete(file);
+            }
+        }
+        return best;
+    }
+
+    private static void insertAll(
+        ProximityStreamDB<Building> db,
+        DataAndPosition<Building>[] items
+    ) {
+        for(DataAndPosition<Building> item : items) {
+            db.insert(item);
+        }
+    }
+
+    private static void report(String label, long nanos, long inMemoryNanos) {
+        System.out
+            .printf(
+                "%s: %.0f ns/insert (%.2fx in-memory)%n", label, (double)nanos / INSERTS,
+                (double)nanos / inMemoryNanos
+            );
+    }
+}
@@ -0,0 +1,363 @@
+package edu.vanderbilt.cs.live7;
+
+import edu.vanderbilt.cs.live6.DataAndPosition;
+import edu.vanderbilt.cs.live6.GeoHashFactory;
+import edu.vanderbilt.cs.live6.GeoHashFactoryImpl;
+import edu.vanderbilt.cs.live6.Position;
+import edu.vanderbilt.cs.live7.example.Building;
+import edu.vanderbilt.cs.live7.example.BuildingAttributesStrategy;
+import edu.vanderbilt.cs.live7.example.BuildingCodec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class WriteAheadLogTest {
+    private static final int BITS = 16;
+
+    private final GeoHashFactory hashFactory = new GeoHashFactoryImpl();
+    private final ProximityStreamDBFactory factory = new ProximityStreamDBFactory();
+
+    private ProximityStreamDB<Building> open(WriteAheadLog<Building> log)
+        throws IOException {
+        return factory
+            .createDurable(new BuildingAttributesStrategy(), hashFactory, BITS, log);
+    }
+
+    private static List<String> names(ProximityStreamDB<Building> db) {
+        return db
+            .nearby(Position.with(0, 0), 0)
+            .stream()
+            .map(dpos -> dpos.getData().getName())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    private static int sizeAt(ProximityStreamDB<Building> db, Instant time) {
+        return db.databaseStateAt(time).nearby(Position.with(0, 0), 0).size();
+    }
+
+    private void testRecovery(SyncPolicy policy) throws IOException {
+        Path file = Files.createTempFile("wal", ".log");
+        try {
+            List<String> expected;
+            try(WriteAheadLog<Building> log =
+                new WriteAheadLog<>(file, new BuildingCodec(), policy)) {
+                ProximityStreamDB<Building> db = open(log);
+                for(int i = 0; i < 100; i++) {
+                    db.insert(DataAndPosition.with(i % 10, i, new Building("b" + i, i, 1)));
+                }
+                db.delete(Position.with(3, 3));
+                db.delete(Position.with(5, 5), 4);
+                expected = names(db);
+            }
+
+            try(WriteAheadLog<Building> log =
+                new WriteAheadLog<>(file, new BuildingCodec(), policy)) {
+                ProximityStreamDB<Building> recovered = open(log);
+                assertEquals(expected, names(recovered));
+                assertTrue(
+                    recovered.databaseStateAtTime(4).contains(Position.with(3, 3), BITS)
+                );
+                assertFalse(recovered.contains(Position.with(3, 3), BITS));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRecoveryEveryOperation() throws IOException {
+        testRecovery(SyncPolicy.everyOperation());
+    }
+
+    @Test
+    public void testRecoveryGrouped() throws IOException {
+        testRecovery(SyncPolicy.every(10));
+    }
+
+    @Test
+    public void testRecoveryOsManaged() throws IOException {
+        testRecovery(SyncPolicy.osManaged());
+    }
+
+    @Test
+    public void testRecoveredOperationsKeepTheirTimes() throws IOException {
+        Instant nine = Instant.parse("2024-05-01T09:00:00Z");
+        Path file = Files.createTempFile("wal", ".log");
+        try {
+            try(WriteAheadLog<Building> log =
+                new WriteAheadLog<>(file, new BuildingCodec(), SyncPolicy.osManaged())) {
+                NaiveProximityStreamDB<Building> db =
+                    (NaiveProximityStreamDB<Building>)open(log);
+                for(int i = 0; i < 10; i++) {
+                    db.useClock(Clock.fixed(nine.plusSeconds(60 * i), ZoneOffset.UTC));
+                    db.insert(DataAndPosition.with(i, i, new Building("b" + i, i, 1)));
+                }
+            }
+
+            try(WriteAheadLog<Building> log =
+                new WriteAheadLog<>(file, new BuildingCodec(), SyncPolicy.osManaged())) {
+                ProximityStreamDB<Building> recovered = open(log);
+                recovered.insert(DataAndPosition.with(10, 10, new Building("c", 10, 1)));
+
+                assertEquals(0, sizeAt(recovered, nine.minusMillis(1)));
+                assertEquals(5, sizeAt(recovered, nine.plusSeconds(240)));
+                assertEquals(
+                    3,
+                    recovered
+                        .operationsBetween(nine.plusSeconds(60), nine.plusSeconds(240))
+                        .size()
+                );
+                assertEquals(10, sizeAt(recovered, nine.plusSeconds(3600)));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTornRecordIsTruncated() throws IOException {
+        Path file = Files.createTempFile("wal", ".log");
+        try {
+            try(WriteAheadLog<Building> log =
+                new WriteAheadLog<>(file, new BuildingCodec(), SyncPolicy.osManaged())) {
+                ProximityStreamDB<Building> db = open(log);
+                db.insert(DataAndPosition.with(1, 1, new Building("a", 1, 1)));
+                db.insert(DataAndPosition.with(2, 2, new Building("b", 1, 1)));
+            }
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+
+            try(WriteAheadLog<Building> log =
+                new WriteAheadLog<>(file, new BuildingCodec(), SyncPolicy.osManaged())) {
+                ProximityStreamDB<Building> db = open(log);
+                assertEquals(1, names(db).size());
+                db.insert(DataAndPosition.with(3, 3, new Building("c", 1, 1)));
+            }
+            try(WriteAheadLog<Building> log =
+                new WriteAheadLog<>(file, new BuildingCodec(), SyncPolicy.osManaged())) {
+                assertEquals(2, names(open(log)).size());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testGroupCommitFailureReachesWriter() throws Exception {
+        Path file = Files.createTempFile("wal", ".log");
+        try {
+            FailingChannel channel = new FailingChannel(
+                FileChannel
+                    .open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            );
+            WriteAheadLog<Building> log =
+                new WriteAheadLog<>(channel, new BuildingCodec(), SyncPolicy.every(10));
+            ProximityStreamDB<Building> db = open(log);
+            db.insert(DataAndPosition.with(1, 1, new Building("a", 1, 1)));
+
+            assertTrue(channel.failed.await(10, TimeUnit.SECONDS));
+            assertThrows(IOException.class, log::sync);
+            assertThrows(
+                UncheckedIOException.class,
+                () -> db.insert(DataAndPosition.with(2, 2, new Building("b", 1, 1)))
+            );
+            assertThrows(IOException.class, log::close);
+            assertFalse(channel.isOpen());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUpdateIsLoggedBeforeItIsApplied() throws IOException {
+        Path file = Files.createTempFile("wal", ".log");
+        try {
+            FailingChannel channel = new FailingChannel(
+                FileChannel
+                    .open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            );
+            WriteAheadLog<Building> log = new WriteAheadLog<>(
+                channel, new BuildingCodec(), SyncPolicy.everyOperation()
+            );
+            ProximityStreamDB<Building> db = open(log);
+            assertThrows(
+                UncheckedIOException.class,
+                () -> db.insert(DataAndPosition.with(1, 1, new Building("a", 1, 1)))
+            );
+            assertTrue(names(db).isEmpty());
+            assertTrue(
+                db.operationsBetween(Instant.EPOCH, Instant.now().plusSeconds(60)).isEmpty()
+            );
+            assertThrows(IOException.class, log::close);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testUndoIsRecovered() throws IOException {
+        Path file = Files.createTempFile("wal", ".log");
+        try {
+            List<String> expected;
+            try(WriteAheadLog<Building> log = new WriteAheadLog<>(
+                file, new BuildingCodec(), SyncPolicy.everyOperation()
+            )) {
+                ProximityStreamDB<Building> db = open(log);
+                for(int i = 0; i < 6; i++) {
+                    Building building = new Building("b" + i, i, 1);
+                    db.insert(DataAndPosition.with(i % 2, i % 2, building));
+                }
+                db.delete(Position.with(0, 0));
+                db.undo();
+                db.undo();
+                db.redo();
+                expected = names(db);
+            }
+
+            try(WriteAheadLog<Building> log = new WriteAheadLog<>(
+                file, new BuildingCodec(), SyncPolicy.everyOperation()
+            )) {
+                ProximityStreamDB<Building> recovered = open(log);
+                assertEquals(expected, names(recovered));
+                assertFalse(recovered.undo());
+                assertFalse(recovered.redo());
+                assertEquals(expected, names(recovered));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Delegates to a real channel, except that the first write fails.
+     */
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final CountDownLatch failed = new CountDownLatch(1);
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failed.getCount() > 0) {
+                failed.countDown();
+                throw new IOException("Simulated write failure");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target)
+            throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count)
+            throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size)
+            throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared)
+            throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared)
+            throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}